@@ -0,0 +1,203 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.arrow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.activeviam.fwk.ActiveViamRuntimeException;
+import com.av.csv.CSVFormat;
+import com.av.csv.ColumnSelector;
+
+/**
+ * 
+ * Discover the format of an Arrow IPC file from the schema
+ * stored in the file metadata. No data is sampled, the column
+ * types are mapped from the Arrow types.
+ * <p>
+ * The discovered format is a {@link CSVFormat}, so that the
+ * AutoPivot generator works the same with CSV and Arrow files.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class ArrowDiscovery {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(ArrowDiscovery.class.getName());
+
+	/** Magic bytes at the start of an Arrow IPC file */
+	public static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+
+	/** Type of the date columns */
+	public static final String DATE_TYPE = "LocalDate[yyyy-MM-dd]";
+
+	/** Selection of the discovered columns */
+	protected ColumnSelector columnSelector = ColumnSelector.ALL;
+
+	/**
+	 * Only discover the selected columns, the other columns
+	 * of the file are not read.
+	 * 
+	 * @param columnSelector selection of the columns
+	 */
+	public void setColumnSelector(ColumnSelector columnSelector) {
+		this.columnSelector = columnSelector;
+	}
+
+	/**
+	 * @param fileName name of a file
+	 * @return true if the file is a file of the file system in the Arrow IPC file format
+	 */
+	public static boolean isArrowFile(String fileName) {
+		Path path = Paths.get(fileName);
+		if(!Files.isRegularFile(path)) {
+			return false;
+		}
+		byte[] header = new byte[MAGIC.length];
+		try(InputStream is = Files.newInputStream(path)) {
+			int n = 0;
+			int read;
+			while(n < header.length && (read = is.read(header, n, header.length - n)) > 0) {
+				n += read;
+			}
+			for(int i = 0; i < MAGIC.length; i++) {
+				if(n <= i || header[i] != MAGIC[i]) {
+					return false;
+				}
+			}
+			return true;
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Discover the format of an Arrow IPC file.
+	 * 
+	 * @param fileName name of the file
+	 * @return format of the file
+	 * @throws IOException
+	 */
+	public CSVFormat discoverFile(String fileName) throws IOException {
+		try(BufferAllocator allocator = new RootAllocator();
+			FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+			return discover(reader.getVectorSchemaRoot().getSchema(), reader.getDictionaryVectors(), fileName);
+		}
+	}
+
+	/**
+	 * Convert an Arrow schema into a format.
+	 * 
+	 * @param schema Arrow schema
+	 * @param dictionaries dictionaries of the dictionary encoded fields
+	 * @param fileName name of the file, for the messages
+	 * @return format
+	 */
+	public CSVFormat discover(Schema schema, Map<Long, Dictionary> dictionaries, String fileName) {
+		List<Field> fields = schema.getFields();
+		List<String> names = new ArrayList<>();
+		List<String> types = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		for(int c = 0; c < fields.size(); c++) {
+			Field field = fields.get(c);
+			String name = field.getName().replaceAll(" ", "_").replaceAll("/", "_");
+			if(!columnSelector.isSelected(name)) {
+				continue;
+			}
+			String type = toType(valueField(field, dictionaries));
+			if(type == null) {
+				LOGGER.warning("Column " + name + " of " + fileName + " is ignored, Arrow type " + field.getType() + " is not supported.");
+				continue;
+			}
+			names.add(name);
+			types.add(type);
+			indexes.add(c);
+		}
+		if(names.isEmpty()) {
+			throw new ActiveViamRuntimeException("No column of " + fileName + " can be loaded (" + columnSelector + ")");
+		}
+
+		LOGGER.info("Column names: " + names);
+		LOGGER.info("Column types: " + types);
+		return new CSVFormat(",", names, types, false).withSourceColumns(indexes, fields.size());
+	}
+
+	/**
+	 * @param field Arrow field
+	 * @param dictionaries dictionaries of the dictionary encoded fields
+	 * @return the field of the dictionary values for a dictionary encoded field, the field itself otherwise
+	 */
+	public static Field valueField(Field field, Map<Long, Dictionary> dictionaries) {
+		DictionaryEncoding encoding = field.getDictionary();
+		if(encoding == null) {
+			return field;
+		}
+		return dictionaries.get(encoding.getId()).getVector().getField();
+	}
+
+	/**
+	 * Map an Arrow field to an AutoPivot type.
+	 * 
+	 * @param field Arrow field
+	 * @return type, or null if the Arrow type is not supported
+	 */
+	public static String toType(Field field) {
+		ArrowType type = field.getType();
+		switch(type.getTypeID()) {
+		case Utf8:
+		case LargeUtf8:
+			return "String";
+		case Bool:
+			return "boolean";
+		case Int:
+			return ((ArrowType.Int) type).getBitWidth() <= 32 ? "int" : "long";
+		case FloatingPoint:
+			return ((ArrowType.FloatingPoint) type).getPrecision() == FloatingPointPrecision.DOUBLE ? "double" : "float";
+		case Decimal:
+			return "double";
+		case Date:
+			return DATE_TYPE;
+		default:
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,333 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.arrow;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.LargeVarCharVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+
+import com.av.csv.CSVFormat;
+import com.av.csv.load.CSVLoader;
+import com.av.csv.load.CSVRowParser;
+import com.av.csv.load.ITupleWriter;
+import com.av.csv.load.LoadProgress;
+import com.av.csv.load.TupleComparator;
+import com.av.csv.load.TupleRollup;
+
+/**
+ * 
+ * Load an Arrow IPC file into the datastore. The values are read
+ * from the Arrow vectors, there is no text parsing.
+ * <p>
+ * The record batches of the file are distributed among parallel tasks,
+ * each task has its own reader and converts its batches into tuples.
+ * Only the columns of the format are converted, and the values
+ * of dictionary encoded columns are decoded once per batch.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class ArrowLoader {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(ArrowLoader.class.getName());
+
+	/** Number of milliseconds in a day */
+	protected static final long MILLIS_PER_DAY = 86_400_000L;
+
+	/** Row parser, maps the columns to the store fields and derives the calculated fields */
+	protected final CSVRowParser parser;
+
+	/** Destination of the tuples */
+	protected final ITupleWriter writer;
+
+	/** Executor running the loading tasks */
+	protected final ExecutorService executor;
+
+	/** Number of loading tasks */
+	protected final int parallelism;
+
+	/** Loading progress, optional */
+	protected LoadProgress progress;
+
+	/** Number of rows written in one transaction by a loading task */
+	protected int commitSize = CSVLoader.DEFAULT_COMMIT_SIZE;
+
+	/** Pre-aggregation of the rows, optional */
+	protected TupleRollup rollup;
+
+	/** Order of the rows within a transaction, optional */
+	protected TupleComparator clustering;
+
+	/** Number of bytes of the record batches loaded so far */
+	protected final AtomicLong bytesRead = new AtomicLong();
+
+	/** Read the value of a column at a row of the current batch */
+	@FunctionalInterface
+	protected interface ColumnReader {
+		Object get(int row);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parser row parser of the format of the file
+	 * @param writer destination of the tuples
+	 * @param executor executor running the loading tasks
+	 * @param parallelism number of loading tasks
+	 */
+	public ArrowLoader(CSVRowParser parser, ITupleWriter writer, ExecutorService executor, int parallelism) {
+		this.parser = parser;
+		this.writer = writer;
+		this.executor = executor;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public void setProgress(LoadProgress progress) { this.progress = progress; }
+
+	public void setCommitSize(int commitSize) { this.commitSize = commitSize; }
+
+	/** @param rollup pre-aggregation of the rows of each transaction, null to load the rows as they are */
+	public void setRollup(TupleRollup rollup) { this.rollup = rollup; }
+
+	/** @param clustering order of the rows within a transaction, null to keep the order of the file */
+	public void setClustering(TupleComparator clustering) { this.clustering = clustering; }
+
+	/**
+	 * Load an Arrow IPC file.
+	 * 
+	 * @param path Arrow file
+	 * @return number of loaded rows
+	 * @throws IOException
+	 */
+	public long load(Path path) throws IOException {
+		int blockCount;
+		try(BufferAllocator allocator = new RootAllocator();
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+			blockCount = reader.getRecordBlocks().size();
+		}
+		LOGGER.info("Loading " + blockCount + " record batches of " + path);
+
+		int tasks = Math.max(1, Math.min(parallelism, blockCount));
+		List<Future<Long>> futures = new ArrayList<>(tasks);
+		for(int t = 0; t < tasks; t++) {
+			final int first = t;
+			futures.add(executor.submit(() -> loadBatches(path, first, tasks)));
+		}
+
+		long rows = 0L;
+		try {
+			for(Future<Long> future : futures) {
+				rows += future.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Arrow loading interrupted");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Arrow loading failed", e.getCause());
+		} finally {
+			futures.forEach(f -> f.cancel(true));
+		}
+		return rows;
+	}
+
+	/**
+	 * Load every step-th record batch of the file, in a loading task.
+	 * 
+	 * @param path Arrow file
+	 * @param first index of the first batch
+	 * @param step distance between two batches of the task
+	 * @return number of loaded rows
+	 * @throws IOException
+	 */
+	protected long loadBatches(Path path, int first, int step) throws IOException {
+		try(BufferAllocator allocator = new RootAllocator();
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			List<ArrowBlock> blocks = reader.getRecordBlocks();
+			List<Object[]> tuples = new ArrayList<>();
+			long rows = 0L;
+			for(int b = first; b < blocks.size(); b += step) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new InterruptedIOException("Arrow loading interrupted");
+				}
+				ArrowBlock block = blocks.get(b);
+				reader.loadRecordBatch(block);
+				convert(root, reader.getDictionaryVectors(), tuples);
+				if(progress != null) {
+					progress.setBytesRead(bytesRead.addAndGet(block.getMetadataLength() + block.getBodyLength()));
+				}
+				if(tuples.size() >= commitSize) {
+					rows += commit(tuples);
+					tuples = new ArrayList<>();
+				}
+			}
+			return rows + commit(tuples);
+		}
+	}
+
+	/**
+	 * Convert the rows of the current record batch into tuples.
+	 * 
+	 * @param root vectors of the current batch
+	 * @param dictionaries dictionaries of the dictionary encoded columns
+	 * @param tuples list receiving the tuples
+	 */
+	protected void convert(VectorSchemaRoot root, Map<Long, Dictionary> dictionaries, List<Object[]> tuples) {
+		CSVFormat format = parser.getFormat();
+		ColumnReader[] readers = new ColumnReader[format.getColumnCount()];
+		for(int c = 0; c < readers.length; c++) {
+			readers[c] = createReader(root.getVector(format.getSourceColumnIndex(c)), dictionaries);
+		}
+		int rowCount = root.getRowCount();
+		for(int row = 0; row < rowCount; row++) {
+			Object[] values = new Object[readers.length];
+			for(int c = 0; c < readers.length; c++) {
+				values[c] = readers[c].get(row);
+			}
+			tuples.add(parser.toTuple(values));
+		}
+	}
+
+	/**
+	 * Write tuples, the transactions of the loading tasks are serialized.
+	 * 
+	 * @param tuples tuples
+	 * @return number of loaded rows
+	 */
+	protected long commit(List<Object[]> tuples) {
+		if(tuples.isEmpty()) {
+			return 0L;
+		}
+		List<Object[]> written = rollup == null ? tuples : rollup.rollup(tuples);
+		if(clustering != null) {
+			written = clustering.sort(written);
+		}
+		synchronized(writer) {
+			writer.write(written);
+			if(progress != null) {
+				progress.committed(written.size());
+			}
+		}
+		return tuples.size();
+	}
+
+	/**
+	 * Create the reader of a column, converting the Arrow
+	 * values into the values of the AutoPivot type of the column.
+	 * 
+	 * @param vector column vector
+	 * @param dictionaries dictionaries of the dictionary encoded columns
+	 * @return column reader
+	 */
+	protected ColumnReader createReader(FieldVector vector, Map<Long, Dictionary> dictionaries) {
+		DictionaryEncoding encoding = vector.getField().getDictionary();
+		if(encoding != null) {
+			// Decode each dictionary value once, rows share the decoded values
+			BaseIntVector indexes = (BaseIntVector) vector;
+			FieldVector values = dictionaries.get(encoding.getId()).getVector();
+			ColumnReader valueReader = createReader(values, dictionaries);
+			Object[] decoded = new Object[values.getValueCount()];
+			return row -> {
+				if(vector.isNull(row)) {
+					return null;
+				}
+				int index = (int) indexes.getValueAsLong(row);
+				Object value = decoded[index];
+				if(value == null) {
+					value = valueReader.get(index);
+					decoded[index] = value;
+				}
+				return value;
+			};
+		}
+
+		if(vector instanceof VarCharVector) {
+			VarCharVector v = (VarCharVector) vector;
+			return row -> v.isNull(row) ? null : new String(v.get(row), StandardCharsets.UTF_8);
+		} else if(vector instanceof LargeVarCharVector) {
+			LargeVarCharVector v = (LargeVarCharVector) vector;
+			return row -> v.isNull(row) ? null : new String(v.get(row), StandardCharsets.UTF_8);
+		} else if(vector instanceof BitVector) {
+			BitVector v = (BitVector) vector;
+			return row -> v.isNull(row) ? null : v.get(row) != 0;
+		} else if(vector instanceof BaseIntVector) {
+			BaseIntVector v = (BaseIntVector) vector;
+			if("long".equals(ArrowDiscovery.toType(vector.getField()))) {
+				return row -> vector.isNull(row) ? null : v.getValueAsLong(row);
+			}
+			return row -> vector.isNull(row) ? null : (int) v.getValueAsLong(row);
+		} else if(vector instanceof Float8Vector) {
+			Float8Vector v = (Float8Vector) vector;
+			return row -> v.isNull(row) ? null : v.get(row);
+		} else if(vector instanceof Float4Vector) {
+			Float4Vector v = (Float4Vector) vector;
+			return row -> v.isNull(row) ? null : v.get(row);
+		} else if(vector instanceof DecimalVector) {
+			DecimalVector v = (DecimalVector) vector;
+			return row -> v.isNull(row) ? null : v.getObject(row).doubleValue();
+		} else if(vector instanceof DateDayVector) {
+			DateDayVector v = (DateDayVector) vector;
+			return row -> v.isNull(row) ? null : LocalDate.ofEpochDay(v.get(row));
+		} else if(vector instanceof DateMilliVector) {
+			DateMilliVector v = (DateMilliVector) vector;
+			return row -> v.isNull(row) ? null : LocalDate.ofEpochDay(Math.floorDiv(v.get(row), MILLIS_PER_DAY));
+		}
+		throw new IllegalArgumentException("Unsupported Arrow vector " + vector.getClass().getSimpleName() + " for column " + vector.getName());
+	}
+
+}
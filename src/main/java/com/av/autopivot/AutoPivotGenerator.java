@@ -20,13 +20,23 @@ package com.av.autopivot;
 
 import static com.av.csv.discover.CSVDiscovery.isDate;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.activeviam.database.api.query.AliasedField;
 import com.qfs.chunk.impl.Chunks;
@@ -34,16 +44,31 @@ import com.qfs.desc.*;
 import com.qfs.pivot.cube.provider.multi.IMultipleAggregateProvider;
 import com.qfs.store.part.INumaSelectorDescription;
 import com.quartetfs.biz.pivot.definitions.*;
+import com.quartetfs.biz.pivot.postprocessing.IPostProcessor;
 import com.quartetfs.biz.pivot.postprocessing.IPostProcessorConstants;
 import org.springframework.core.env.Environment;
 
+import com.av.autopivot.MaterializationAdvisor.Proposal;
+import com.av.autopivot.postprocessing.AveragePostProcessor;
+import com.av.autopivot.postprocessing.StandardDeviationPostProcessor;
 import com.av.csv.CSVFormat;
+import com.av.csv.discover.ColumnClassifier;
+import com.av.csv.discover.ColumnClassifier.Classification;
+import com.av.csv.discover.ColumnClassifier.Role;
+import com.av.csv.discover.ColumnStatistics;
+import com.av.csv.discover.FunctionalDependencies;
+import com.av.csv.discover.PartitioningAdvisor;
+import com.av.csv.discover.PartitioningAdvisor.Choice;
+import com.av.csv.load.TupleRollup;
+import com.av.csv.load.TupleRollup.Aggregation;
 import com.qfs.desc.impl.FieldDescription;
+import com.qfs.desc.IOptimizationDescription.Optimization;
 import com.qfs.desc.impl.OptimizationDescription;
 import com.qfs.desc.impl.StoreDescription;
 import com.qfs.platform.IPlatform;
 import com.qfs.store.part.IPartitioningDescription;
 import com.qfs.store.part.impl.ModuloFunctionDescription;
+import com.qfs.store.part.impl.NumaSelectorDescription;
 import com.qfs.store.part.impl.PartitioningDescriptionBuilder;
 import com.qfs.util.impl.QfsArrays;
 import com.quartetfs.biz.pivot.cube.dimension.IDimension.DimensionType;
@@ -63,6 +88,7 @@ import com.quartetfs.biz.pivot.definitions.impl.AxisHierarchyDescription;
 import com.quartetfs.biz.pivot.definitions.impl.AxisLevelDescription;
 import com.quartetfs.biz.pivot.definitions.impl.CatalogDescription;
 import com.quartetfs.biz.pivot.definitions.impl.MeasuresDescription;
+import com.quartetfs.biz.pivot.definitions.impl.PartialProviderDefinition;
 import com.quartetfs.biz.pivot.definitions.impl.NativeMeasureDescription;
 import com.quartetfs.biz.pivot.definitions.impl.PostProcessorDescription;
 import com.quartetfs.biz.pivot.definitions.impl.SelectionDescription;
@@ -95,6 +121,129 @@ public class AutoPivotGenerator {
 	/** Default format for time levels */
 	public static final String TIME_FORMAT = "DATE[HH:mm:ss]";	
 
+	/** Key fields of the base store, comma separated, or 'auto' for the discovered candidate key */
+	public static final String KEY_FIELDS_PROPERTY = "datastore.keyFields";
+
+	/** Field hash partitioned with a modulo function */
+	public static final String PARTITIONING_FIELD_PROPERTY = "datastore.partitioningField";
+
+	/** Field partitioned on its values, one partition per value, usually a date */
+	public static final String VALUE_PARTITIONING_FIELD_PROPERTY = "datastore.partitioningByValue";
+
+	/** Number of distinct values above which a value partitioning creates too many partitions */
+	public static final int MAX_VALUE_PARTITIONS = 1000;
+
+	/** Place the partitions of the base store on the NUMA nodes of the machine */
+	public static final String NUMA_PROPERTY = "datastore.numa";
+
+	/** Plugin key of the NUMA selector assigning the partitions to the nodes */
+	public static final String NUMA_SELECTOR_PROPERTY = "datastore.numa.selector";
+
+	/** Default NUMA selector, partition i on node i modulo the number of nodes */
+	public static final String DEFAULT_NUMA_SELECTOR = "partitionIdModulo";
+
+	/** Classify the columns as hierarchies, measures or drillthrough fields from their statistics */
+	public static final String CLASSIFICATION_PROPERTY = "pivot.classification";
+
+	/** Maximum number of members of a hierarchy in the sample */
+	public static final String CLASSIFICATION_MAX_MEMBERS_PROPERTY = "pivot.classification.maxMembers";
+
+	/** Share of distinct values above which a column is an identifier */
+	public static final String CLASSIFICATION_IDENTIFIER_UNIQUENESS_PROPERTY = "pivot.classification.identifierUniqueness";
+
+	/** Number of distinct values below which a column always is a hierarchy */
+	public static final String CLASSIFICATION_MIN_IDENTIFIER_VALUES_PROPERTY = "pivot.classification.minIdentifierValues";
+
+	/** Average length of the values above which a column is free text */
+	public static final String CLASSIFICATION_MAX_TEXT_LENGTH_PROPERTY = "pivot.classification.maxTextLength";
+
+	/** Generate a partial aggregate provider over the levels with few members */
+	public static final String PARTIAL_PROVIDER_PROPERTY = "pivot.partialProvider";
+
+	/** Type of the partial aggregate provider, BITMAP or LEAF */
+	public static final String PARTIAL_PROVIDER_TYPE_PROPERTY = "pivot.partialProvider.type";
+
+	/** Memory budget of the partial aggregate provider, in bytes */
+	public static final String PARTIAL_PROVIDER_MEMORY_PROPERTY = "pivot.partialProvider.memory";
+
+	/** Hierarchies of the partial aggregate provider, overrides the choice from the statistics */
+	public static final String PARTIAL_PROVIDER_HIERARCHIES_PROPERTY = "pivot.partialProvider.hierarchies";
+
+	/** Measures of the partial aggregate provider, overrides the SUM and count measures */
+	public static final String PARTIAL_PROVIDER_MEASURES_PROPERTY = "pivot.partialProvider.measures";
+
+	/** File of the log of the query patterns, that chooses the partial aggregate providers when it is not empty */
+	public static final String QUERY_LOG_FILE_PROPERTY = "pivot.queryLog.file";
+
+	/** Maximum number of partial aggregate providers chosen from the query log */
+	public static final String QUERY_LOG_MAX_PROVIDERS_PROPERTY = "pivot.queryLog.maxProviders";
+
+	/** Default maximum number of partial aggregate providers chosen from the query log */
+	public static final int DEFAULT_QUERY_LOG_MAX_PROVIDERS = 3;
+
+	/** Default type of the partial aggregate provider */
+	public static final String DEFAULT_PARTIAL_PROVIDER_TYPE = "BITMAP";
+
+	/** Default share of the maximum heap size given to the partial aggregate provider */
+	public static final int DEFAULT_PARTIAL_PROVIDER_HEAP_SHARE = 20;
+
+	/** Build multi-level hierarchies from the functional dependencies between the columns */
+	public static final String MULTI_LEVEL_HIERARCHIES_PROPERTY = "pivot.multiLevelHierarchies";
+
+	/** Columns that always are hierarchies */
+	public static final String HIERARCHIES_PROPERTY = "pivot.hierarchies";
+
+	/** Generate the optimizations of the fields of the base store from the column statistics */
+	public static final String OPTIMIZATIONS_PROPERTY = "datastore.optimizations";
+
+	/** Fields of the base store that are indexed, overrides the choice from the statistics */
+	public static final String INDEX_FIELDS_PROPERTY = "datastore.optimizations.index";
+
+	/** Minimum estimated number of distinct values of the integer fields that are not levels to store them compressed */
+	public static final String COMPRESS_MIN_CARDINALITY_PROPERTY = "datastore.optimizations.compressMinCardinality";
+
+	/** Default minimum estimated number of distinct values of the integer fields that are not levels to store them compressed */
+	public static final long DEFAULT_COMPRESS_MIN_CARDINALITY = 65536L;
+
+	/** Number of records of the chunks of the base store, overrides the size chosen from the estimated number of rows */
+	public static final String CHUNK_SIZE_PROPERTY = "datastore.chunkSize";
+
+	/** Smallest chunk size chosen from the estimated number of rows */
+	public static final int MIN_CHUNK_SIZE = 1 << 10;
+
+	/** Largest chunk size chosen from the estimated number of rows */
+	public static final int MAX_CHUNK_SIZE = 1 << 20;
+
+	/** Number of chunks of a partition targeted when choosing the chunk size */
+	public static final int CHUNKS_PER_PARTITION = 16;
+
+	/** Combine the rows that have the same values on all the level fields when they are loaded */
+	public static final String ROLLUP_PROPERTY = "datastore.rollup";
+
+	/** Field of the rolled up store holding the number of rows of each group */
+	public static final String ROLLUP_COUNT_FIELD = "ROWS";
+
+	/** Types of the fields that get SUM, MIN, MAX measures */
+	protected static final Set<String> NUMERICS = QfsArrays.mutableSet("double", "float", "int", "long");
+
+	/** Integer types */
+	protected static final Set<String> INTEGERS = QfsArrays.mutableSet("int", "long");
+
+	/** Floating point types */
+	protected static final Set<String> DECIMALS = QfsArrays.mutableSet("double", "float");
+
+	/** Types of the fields that are not used as levels */
+	protected static final Set<String> NUMERICS_ONLY = QfsArrays.mutableSet("double", "float", "long");
+
+	/** Suffix of the name of the YEAR-MONTH-DAY hierarchy of a date dimension */
+	public static final String YMD_HIERARCHY_SUFFIX = "_YMD";
+
+	/** Levels of the YEAR-MONTH-DAY hierarchy of a date dimension */
+	public static final List<String> YMD_LEVELS = Collections.unmodifiableList(Arrays.asList("Year", "Month", "Day"));
+
+	/** NUMA topology of the machine, read from the sysfs once on first use */
+	protected volatile NumaTopology numaTopology;
+
 	/**
 	 * 
 	 * Generate a store description based on the discovery of the input data.
@@ -104,6 +253,251 @@ public class AutoPivotGenerator {
 	 */
 	public IStoreDescription createStoreDescription(CSVFormat format, Environment env) {
 
+		List<IFieldDescription> fields = createFieldDescriptions(format, env);
+
+		// Partitioning
+		IPartitioningDescription partitioning = createPartitioningDescription(format, env);
+
+		StoreDescription desc = new StoreDescription(BASE_STORE,
+					getKeyFields(format, env),
+					fields,
+					partitioning,
+					createOptimizations(format, env),
+					false,
+					getChunkSize(format, env),
+					(IDuplicateKeyHandler)null,
+					(IStoreDescriptionBuilder.IRemoveUnknownKeyListener)null,
+					(Properties)null,
+					createNumaSelectorDescription(env),
+					false);
+
+		return desc;
+	}
+
+	/**
+	 * 
+	 * NUMA topology of the machine when NUMA placement is enabled.
+	 * The topology is detected on the first call and kept for
+	 * the following ones.
+	 * 
+	 * @return topology, null when NUMA placement is disabled
+	 */
+	public NumaTopology getNumaTopology(Environment env) {
+		if(!env.getProperty(NUMA_PROPERTY, Boolean.class, false)) {
+			return null;
+		}
+		NumaTopology topology = numaTopology;
+		if(topology == null) {
+			synchronized(this) {
+				topology = numaTopology;
+				if(topology == null) {
+					topology = NumaTopology.detect();
+					numaTopology = topology;
+				}
+			}
+		}
+		return topology;
+	}
+
+	/**
+	 * 
+	 * The NUMA selector of the base store. The partitions are assigned to
+	 * the nodes in turn, so with a number of partitions that is a multiple
+	 * of the number of nodes each node holds the same number of partitions,
+	 * and the chunks of a partition are allocated and scanned on its node.
+	 * The CSV parser threads are not bound to the nodes, they write the
+	 * records of all the partitions.
+	 * 
+	 * @return NUMA selector description, null on a single node machine or when NUMA placement is disabled
+	 */
+	public INumaSelectorDescription createNumaSelectorDescription(Environment env) {
+		NumaTopology topology = getNumaTopology(env);
+		if(topology == null || topology.getNodeCount() < 2) {
+			return null;
+		}
+		String selector = env.getProperty(NUMA_SELECTOR_PROPERTY, DEFAULT_NUMA_SELECTOR);
+		LOGGER.info("Placing the partitions on " + topology + " with NUMA selector '" + selector + "'");
+		if(System.getProperty("qfs.pool.nodes") == null) {
+			LOGGER.info("The query worker pools are not bound to the NUMA nodes, start the JVM with -Dqfs.pool.nodes="
+					+ IntStream.range(0, topology.getNodeCount()).mapToObj(String::valueOf).collect(Collectors.joining(","))
+					+ " so that each partition is queried by the workers of its node.");
+		}
+		return new NumaSelectorDescription(selector, new Properties());
+	}
+
+	/**
+	 * 
+	 * @param partitionCount number of partitions chosen for the machine
+	 * @return number of partitions, rounded up to a multiple of the number of NUMA nodes when NUMA placement is enabled
+	 */
+	protected int alignPartitionCount(int partitionCount, Environment env) {
+		NumaTopology topology = getNumaTopology(env);
+		return topology == null ? partitionCount : topology.alignToNodes(partitionCount);
+	}
+
+	/**
+	 * 
+	 * Size of the chunks of the base store. Without an estimate of the number
+	 * of rows of the input, the default chunk size. Otherwise a power of two,
+	 * so that each partition holds about {@link #CHUNKS_PER_PARTITION} chunks:
+	 * small inputs do not allocate mostly empty chunks, and large inputs
+	 * allocate fewer chunks while they are loaded.
+	 * 
+	 * @param format
+	 * @return number of records of the chunks
+	 */
+	public int getChunkSize(CSVFormat format, Environment env) {
+		Integer chunkSize = env.getProperty(CHUNK_SIZE_PROPERTY, Integer.class);
+		if(chunkSize != null) {
+			return chunkSize;
+		}
+		long rowCount = format.getEstimatedRowCount();
+		if(rowCount < 0L) {
+			return Chunks.DEFAULT_CHUNK_SIZE;
+		}
+		long partitionCount = estimatePartitionCount(format, env);
+		long rowsPerPartition = rowCount / partitionCount;
+		long size = Long.highestOneBit(Math.max(1L, rowsPerPartition / CHUNKS_PER_PARTITION));
+		chunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+
+		Map<String, Long> cardinalities = new LinkedHashMap<>();
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			cardinalities.put(format.getColumnName(c), format.getEstimatedCardinality(c));
+		}
+		LOGGER.info("Estimated " + rowCount + " rows in " + partitionCount + " partitions, chunk size " + chunkSize
+				+ ", estimated distinct values " + cardinalities);
+		return chunkSize;
+	}
+
+	/**
+	 * @param format
+	 * @return estimated number of partitions of the base store
+	 */
+	protected long estimatePartitionCount(CSVFormat format, Environment env) {
+		int partitionCount = IPlatform.CURRENT_PLATFORM.getProcessorCount() / 2;
+		String valueField = getValuePartitioningField(format, env);
+		if(valueField != null) {
+			long values = Math.max(1L, format.getEstimatedCardinality(format.getColumnNames().indexOf(valueField)));
+			if(partitionCount > 1 && env.containsProperty(PARTITIONING_FIELD_PROPERTY)) {
+				Choice choice = choosePartitioning(format, env, partitionCount);
+				return choice == null ? values : values * alignPartitionCount(choice.partitionCount, env);
+			}
+			return values;
+		}
+		if(partitionCount > 1) {
+			Choice choice = choosePartitioning(format, env, partitionCount);
+			return choice == null ? 1L : alignPartitionCount(choice.partitionCount, env);
+		}
+		return 1L;
+	}
+
+	/**
+	 * 
+	 * Optimizations of the fields of the base store, from the column statistics:
+	 * <ul>
+	 * <li>the level fields and the identifiers are indexed, to speed up the
+	 * drillthrough filters and the lookups of a record,
+	 * <li>the integer fields that are not levels and have many distinct values
+	 * in the whole input, amounts and counters, are stored compressed without
+	 * dictionary, a dictionary of their values would be as large as the field,
+	 * <li>the decimal fields that are not levels keep their plain storage
+	 * without dictionary.
+	 * </ul>
+	 * Key fields are already indexed and dictionarized, and the value partitioning
+	 * field holds a single value per partition, they are not optimized.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return optimizations of the fields of the base store, empty unless enabled
+	 */
+	public List<IOptimizationDescription> createOptimizations(CSVFormat format, Environment env) {
+		if(!env.getProperty(OPTIMIZATIONS_PROPERTY, Boolean.class, false)) {
+			return Collections.emptyList();
+		}
+		List<String> storeFields = getStoreFieldNames(format, env);
+		List<String> keyFields = getKeyFields(format, env);
+		String valueField = getValuePartitioningField(format, env);
+		List<Role> roles = getColumnRoles(format, env);
+		Set<String> levels = new HashSet<>();
+		getHierarchyLevels(format, env, roles).values().forEach(levels::addAll);
+		long compressMinCardinality = env.getProperty(COMPRESS_MIN_CARDINALITY_PROPERTY, Long.class, DEFAULT_COMPRESS_MIN_CARDINALITY);
+		double identifierUniqueness = env.getProperty(CLASSIFICATION_IDENTIFIER_UNIQUENESS_PROPERTY, Double.class, ColumnClassifier.DEFAULT_IDENTIFIER_UNIQUENESS);
+		List<String> indexed = getListProperty(env, INDEX_FIELDS_PROPERTY);
+
+		List<IOptimizationDescription> optimizations = new ArrayList<>();
+		List<String> indexes = new ArrayList<>();
+		List<String> compressed = new ArrayList<>();
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			String fieldName = format.getColumnName(c);
+			if(!storeFields.contains(fieldName)) {
+				continue;
+			}
+			boolean level = levels.contains(fieldName);
+			ColumnStatistics statistics = format.getColumnStatistics(c);
+			int cardinality = format.getSampleCardinality(c);
+
+			boolean index;
+			if(!indexed.isEmpty()) {
+				index = indexed.stream().anyMatch(fieldName::equalsIgnoreCase);
+			} else {
+				boolean identifier = roles.get(c) == Role.DRILLTHROUGH && statistics != null && statistics.getUniqueness() >= identifierUniqueness;
+				index = (level && cardinality != 1) || identifier;
+				index &= !fieldName.equals(valueField) && !(keyFields.size() == 1 && keyFields.contains(fieldName));
+			}
+			if(index) {
+				optimizations.add(new OptimizationDescription(fieldName, Optimization.INDEX));
+				indexes.add(fieldName);
+			}
+			boolean key = keyFields.contains(fieldName) || fieldName.equals(valueField);
+			if(!level && !key && INTEGERS.contains(format.getColumnType(c))
+					&& format.getEstimatedCardinality(c) >= compressMinCardinality) {
+				optimizations.add(new OptimizationDescription(fieldName, Optimization.COMPRESSED));
+				compressed.add(fieldName);
+			}
+		}
+		if(!optimizations.isEmpty()) {
+			LOGGER.info("Field optimizations: indexes on " + indexes + ", compressed fields " + compressed);
+		}
+		return optimizations;
+	}
+
+	/**
+	 * 
+	 * Generate the fields of the base store, in order.
+	 * 
+	 * @param format
+	 * @return field descriptions
+	 */
+	public List<IFieldDescription> createFieldDescriptions(CSVFormat format, Environment env) {
+		List<IFieldDescription> rowFields = createRowFieldDescriptions(format);
+		if(!isRollup(env)) {
+			return rowFields;
+		}
+
+		// Level fields, then the aggregates, then the number of rows
+		List<IFieldDescription> fields = new ArrayList<>();
+		for(IFieldDescription field : rowFields) {
+			if(!NUMERICS_ONLY.contains(field.getDataType())) {
+				fields.add(field);
+			}
+		}
+		for(RollupAggregate aggregate : createRollupAggregates(format)) {
+			fields.add(new FieldDescription(aggregate.fieldName, aggregate.type));
+		}
+		fields.add(new FieldDescription(ROLLUP_COUNT_FIELD, "long"));
+		return fields;
+	}
+
+	/**
+	 * 
+	 * Generate the fields of the parsed rows, in order. Without rollup
+	 * they are the fields of the base store.
+	 * 
+	 * @param format
+	 * @return field descriptions
+	 */
+	public List<IFieldDescription> createRowFieldDescriptions(CSVFormat format) {
+
 		List<IFieldDescription> fields = new ArrayList<>();
 
 		for(int c = 0; c < format.getColumnCount(); c++) {
@@ -125,33 +519,187 @@ public class AutoPivotGenerator {
 			fields.add(desc);
 		}
 
-		// Partitioning
-		IPartitioningDescription partitioning = createPartitioningDescription(format, env);
+		return fields;
+	}
 
-			@SuppressWarnings("unchecked")
-		StoreDescription desc = new StoreDescription(BASE_STORE,
-					Collections.EMPTY_LIST,
-					fields,
-					partitioning,
-					Collections.emptyList(),
-					false,
-					Chunks.DEFAULT_CHUNK_SIZE,
-					(IDuplicateKeyHandler)null,
-					(IStoreDescriptionBuilder.IRemoveUnknownKeyListener)null,
-					(Properties)null,
-					(INumaSelectorDescription) null,
-					false);
+	/**
+	 * 
+	 * Key fields of the base store. By default the base store has no key,
+	 * all the rows of the file are kept. With keys, a row replaces the
+	 * row with the same key, which allows differential reloads.
+	 * 
+	 * @param format
+	 * @return key fields, empty if the store has no key
+	 */
+	public List<String> getKeyFields(CSVFormat format, Environment env) {
+		String keyFields = env.getProperty(KEY_FIELDS_PROPERTY, "").trim();
+		if(keyFields.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if(isRollup(env)) {
+			throw new IllegalArgumentException("Key fields cannot be combined with rollup, the rows of a group are replaced by one record. "
+					+ "Remove the " + KEY_FIELDS_PROPERTY + " or the " + ROLLUP_PROPERTY + " property.");
+		}
+		if("auto".equalsIgnoreCase(keyFields)) {
+			if(format.getCandidateKey().isEmpty()) {
+				LOGGER.warning("No candidate key was discovered, the base store has no key fields.");
+			}
+			return format.getCandidateKey();
+		}
 
-		return desc;
+		List<String> keys = new ArrayList<>();
+		for(String keyField : keyFields.split(",")) {
+			String key = format.getColumnNames().stream()
+					.filter(name -> name.equalsIgnoreCase(keyField.trim()))
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException("Configured key field '" + keyField.trim() + "' does not exist in input file format."));
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	/**
+	 * 
+	 * @param format
+	 * @return names of the fields of the base store, in order
+	 */
+	public List<String> getStoreFieldNames(CSVFormat format, Environment env) {
+		return createFieldDescriptions(format, env).stream()
+				.map(IFieldDescription::getName)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 
+	 * @param format
+	 * @return names of the fields of the parsed rows, in order
+	 */
+	public List<String> getRowFieldNames(CSVFormat format) {
+		return createRowFieldDescriptions(format).stream()
+				.map(IFieldDescription::getName)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * With rollup, the rows that have the same values on all the level fields
+	 * are combined when they are loaded and stored as one record, that holds
+	 * the SUM, MIN, MAX (and SQ_SUM for floating point values) of the measure
+	 * fields and the number of combined rows. Numerical fields that are neither
+	 * levels nor measures, identifiers for instance, are not stored.
+	 * 
+	 * @param env spring environment
+	 * @return true if the rows are rolled up when they are loaded
+	 */
+	public boolean isRollup(Environment env) {
+		return env.getProperty(ROLLUP_PROPERTY, Boolean.class, false);
+	}
+
+	/**
+	 * 
+	 * Create the pre-aggregation of the parsed rows into the records of the base store.
+	 * 
+	 * @param format
+	 * @return rollup of the parsed rows, null when rollup is disabled
+	 */
+	public TupleRollup createRollup(CSVFormat format, Environment env) {
+		if(!isRollup(env)) {
+			return null;
+		}
+		List<IFieldDescription> rowFields = createRowFieldDescriptions(format);
+		List<String> rowFieldNames = getRowFieldNames(format);
+		int[] groupFields = IntStream.range(0, rowFields.size())
+				.filter(f -> !NUMERICS_ONLY.contains(rowFields.get(f).getDataType()))
+				.toArray();
+
+		List<RollupAggregate> aggregates = createRollupAggregates(format);
+		int[] measureFields = new int[aggregates.size()];
+		Aggregation[] aggregations = new Aggregation[aggregates.size()];
+		String[] types = new String[aggregates.size()];
+		for(int a = 0; a < aggregates.size(); a++) {
+			measureFields[a] = rowFieldNames.indexOf(aggregates.get(a).sourceField);
+			aggregations[a] = aggregates.get(a).aggregation;
+			types[a] = aggregates.get(a).type;
+		}
+		return new TupleRollup(groupFields, measureFields, aggregations, types);
+	}
+
+	/**
+	 * The aggregates stored for each measure field of a rolled up store.
+	 * The SUM of a field that is not a level is stored in the field itself.
+	 * Integer fields are also levels, their MIN and MAX are their level values,
+	 * only their SUM is stored in an additional field.
+	 * 
+	 * @param format
+	 * @return aggregates, in the order of the fields of the store
+	 */
+	protected List<RollupAggregate> createRollupAggregates(CSVFormat format) {
+		List<RollupAggregate> aggregates = new ArrayList<>();
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			String fieldName = format.getColumnName(c);
+			String fieldType = format.getColumnType(c);
+			if(!isMeasureField(fieldName.trim(), fieldType)) {
+				continue;
+			}
+			if(NUMERICS_ONLY.contains(fieldType)) {
+				aggregates.add(new RollupAggregate(fieldName, fieldType, fieldName, Aggregation.SUM));
+				aggregates.add(new RollupAggregate(fieldName + "_MIN", fieldType, fieldName, Aggregation.MIN));
+				aggregates.add(new RollupAggregate(fieldName + "_MAX", fieldType, fieldName, Aggregation.MAX));
+				if(DECIMALS.contains(fieldType)) {
+					aggregates.add(new RollupAggregate(fieldName + "_SQ_SUM", "double", fieldName, Aggregation.SQ_SUM));
+				}
+			} else {
+				aggregates.add(new RollupAggregate(fieldName + "_SUM", "long", fieldName, Aggregation.SUM));
+			}
+		}
+		return aggregates;
+	}
+
+	/**
+	 * @param fieldName name of the field
+	 * @param fieldType type of the field
+	 * @return true if the field gets SUM, MIN, MAX measures
+	 */
+	protected boolean isMeasureField(String fieldName, String fieldType) {
+		return NUMERICS.contains(fieldType) && !fieldName.endsWith("id") && !fieldName.endsWith("ID");
+	}
+
+	/** Aggregate of a measure field, stored in a rolled up store */
+	protected static class RollupAggregate {
+
+		/** Name of the store field */
+		protected final String fieldName;
+
+		/** Type of the store field */
+		protected final String type;
+
+		/** Aggregated field of the parsed rows */
+		protected final String sourceField;
+
+		protected final Aggregation aggregation;
+
+		protected RollupAggregate(String fieldName, String type, String sourceField, Aggregation aggregation) {
+			this.fieldName = fieldName;
+			this.type = type;
+			this.sourceField = sourceField;
+			this.aggregation = aggregation;
+		}
 	}
 	
 	
 	/**
 	 * 
 	 * Automatically configure the partitioning of the datastore.
-	 * The first non floating point field is used as the partitioning
-	 * field, and the number of partitions is half the number
-	 * of cores.
+	 * The partitioning field and the number of partitions, up to half
+	 * the number of cores, are chosen from the column statistics,
+	 * see {@link #choosePartitioning(CSVFormat, Environment, int)}.
+	 * <p>
+	 * With a value partitioning field, there is one partition per value
+	 * of that field, sub-partitioned with a modulo on the configured
+	 * partitioning field if any.
+	 * <p>
+	 * With NUMA placement, the number of modulo partitions is rounded up
+	 * to a multiple of the number of NUMA nodes so that the nodes hold
+	 * the same number of partitions.
 	 * 
 	 * @param format
 	 * @return partitioning description
@@ -160,42 +708,175 @@ public class AutoPivotGenerator {
 		
 		int processorCount = IPlatform.CURRENT_PLATFORM.getProcessorCount();
 		int partitionCount = processorCount/2;
-		if(partitionCount > 1) {
 
-			String partitioningField = env.getProperty("datastore.partitioningField");
-			if(partitioningField != null) {
-				
-				for(int c = 0; c < format.getColumnCount(); c++) {
-					String fieldName = format.getColumnName(c);
-					if(fieldName.equalsIgnoreCase(partitioningField)) {
-						return new PartitioningDescriptionBuilder()
-						.addSubPartitioning(fieldName, new ModuloFunctionDescription(partitionCount))
-						.build();
-					}
+		String valueField = getValuePartitioningField(format, env);
+		if(valueField != null) {
+			PartitioningDescriptionBuilder builder = new PartitioningDescriptionBuilder().partitionOnValuesOf(valueField);
+			String message = "Applying value partitioning policy: one partition per value of '" + valueField + "'";
+			if(partitionCount > 1 && env.containsProperty(PARTITIONING_FIELD_PROPERTY)) {
+				Choice choice = choosePartitioning(format, env, partitionCount);
+				if(choice != null && !choice.field.equals(valueField)) {
+					int count = alignPartitionCount(choice.partitionCount, env);
+					builder.addSubPartitioning(choice.field, new ModuloFunctionDescription(count));
+					message += ", sub-partitioned in " + count + " partitions on '" + choice.field + "'";
 				}
-				
-				LOGGER.warning("Configured partitioning field '" + partitioningField + "' does not exist in input file format. Default partitioning will be used.");
-				
 			}
+			LOGGER.info(message);
+			return builder.build();
+		}
+
+		if(partitionCount > 1) {
+			Choice choice = choosePartitioning(format, env, partitionCount);
+			if(choice != null) {
+				int count = alignPartitionCount(choice.partitionCount, env);
+				LOGGER.info("Applying partitioning policy: " + count + " partitions with partitioning field '"
+						+ choice.field + "', " + choice.reason);
+				return new PartitioningDescriptionBuilder()
+				.addSubPartitioning(choice.field, new ModuloFunctionDescription(count))
+				.build();
+			}
+		}
+		
+		return null;
+	}
+
+	/**
+	 * 
+	 * The field partitioned on its values. Removing the records of one value
+	 * drops a whole partition, and queries filtered on that field only visit
+	 * the partitions of the filtered values.
+	 * 
+	 * @param format
+	 * @return name of the value partitioning field, null if there is none
+	 */
+	public String getValuePartitioningField(CSVFormat format, Environment env) {
+		String property = env.getProperty(VALUE_PARTITIONING_FIELD_PROPERTY);
+		if(property == null || property.trim().isEmpty()) {
+			return null;
+		}
+		int column = format.getColumnNames().stream()
+				.filter(property.trim()::equalsIgnoreCase)
+				.findFirst()
+				.map(format.getColumnNames()::indexOf)
+				.orElse(-1);
+		if(column < 0) {
+			LOGGER.warning("Configured value partitioning field '" + property + "' does not exist in input file format. It is ignored.");
+			return null;
+		}
+		String fieldName = format.getColumnName(column);
+		List<String> keyFields = getKeyFields(format, env);
+		if(!keyFields.isEmpty() && !keyFields.contains(fieldName)) {
+			LOGGER.warning("Configured value partitioning field '" + fieldName + "' is not a key field. It is ignored.");
+			return null;
+		}
+		if(format.getEstimatedCardinality(column) > MAX_VALUE_PARTITIONS) {
+			LOGGER.warning("Value partitioning field '" + fieldName + "' has about " + format.getEstimatedCardinality(column)
+					+ " distinct values in the input, each value creates a partition.");
+		}
+		return fieldName;
+	}
+
+	/**
+	 * 
+	 * @param format
+	 * @return name of the partitioning field, the value partitioning field if any, null if no field qualifies
+	 */
+	public String getPartitioningField(CSVFormat format, Environment env) {
+		String valueField = getValuePartitioningField(format, env);
+		if(valueField != null) {
+			return valueField;
+		}
+		int partitionCount = Math.max(2, IPlatform.CURRENT_PLATFORM.getProcessorCount() / 2);
+		Choice choice = choosePartitioning(format, env, partitionCount);
+		return choice == null ? null : choice.field;
+	}
+
+	/**
+	 * 
+	 * Choose the partitioning field: the configured partitioning field,
+	 * or the field whose values spread the rows the most evenly
+	 * while remaining useful to prune partitions, see {@link PartitioningAdvisor}.
+	 * Without column statistics, the first field that is not numerical.
+	 * 
+	 * @param format
+	 * @param maxPartitions maximum number of partitions
+	 * @return partitioning choice, null if no field qualifies
+	 */
+	public Choice choosePartitioning(CSVFormat format, Environment env, int maxPartitions) {
+
+		// In a store with keys, the records with the same key
+		// must belong to the same partition
+		List<String> keyFields = getKeyFields(format, env);
+
+		String partitioningField = env.getProperty(PARTITIONING_FIELD_PROPERTY);
+		if(partitioningField != null) {
 			
-			// Default partitioning, partition on the first field
-			// that is not numerical
-				
-			for(int c = 0; c < format.getColumnCount(); c++) {
-				String fieldName = format.getColumnName(c);
-				String fieldType = format.getColumnType(c);
-					
-				if(!"float".equalsIgnoreCase(fieldType) && !"double".equalsIgnoreCase(fieldType) && !"long".equalsIgnoreCase(fieldType)) {
-					LOGGER.info("Applying default partitioning policy: " + partitionCount + " partitions with partitioning field '" + fieldName + "'");
-					return new PartitioningDescriptionBuilder()
-					.addSubPartitioning(fieldName, new ModuloFunctionDescription(partitionCount))
-					.build();
-				}
+			String fieldName = format.getColumnNames().stream()
+					.filter(partitioningField::equalsIgnoreCase)
+					.findFirst().orElse(null);
+			if(fieldName == null) {
+				LOGGER.warning("Configured partitioning field '" + partitioningField + "' does not exist in input file format. Default partitioning will be used.");
+			} else if(!keyFields.isEmpty() && !keyFields.contains(fieldName)) {
+				LOGGER.warning("Configured partitioning field '" + partitioningField + "' is not a key field. Default partitioning will be used.");
+			} else {
+				return new Choice(fieldName, maxPartitions, "configured partitioning field");
 			}
 			
 		}
 		
-		return null;
+		// Candidates are the fields that are not numerical
+		List<String> candidates = new ArrayList<>();
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			String fieldName = format.getColumnName(c);
+			String fieldType = format.getColumnType(c);
+			if(!keyFields.isEmpty() && !keyFields.contains(fieldName)) {
+				continue;
+			}
+				
+			if(!"float".equalsIgnoreCase(fieldType) && !"double".equalsIgnoreCase(fieldType) && !"long".equalsIgnoreCase(fieldType)) {
+				candidates.add(fieldName);
+			}
+		}
+		if(candidates.isEmpty()) {
+			return null;
+		}
+
+		Choice choice = new PartitioningAdvisor().choose(format, candidates, Math.max(2, maxPartitions));
+		if(choice == null) {
+			// Default partitioning, partition on the first field that is not numerical
+			return new Choice(candidates.get(0), maxPartitions, "first field that is not numerical, no column statistics");
+		}
+		return choice;
+	}
+
+	/**
+	 * 
+	 * Fields the rows are sorted on before they are committed, so that
+	 * the rows sharing the same members are stored in the same chunks:
+	 * the partitioning field, then the level fields with the fewest
+	 * distinct values estimated for the whole input.
+	 * 
+	 * @param format
+	 * @param maxFields maximum number of level fields after the partitioning field
+	 * @return names of the clustering fields, by priority
+	 */
+	public List<String> getClusteringFields(CSVFormat format, Environment env, int maxFields) {
+		List<String> fields = new ArrayList<>();
+		String partitioningField = getPartitioningField(format, env);
+		if(partitioningField != null) {
+			fields.add(partitioningField);
+		}
+
+		// Level fields that have more than one value, fewest values first
+		IntStream.range(0, format.getColumnCount())
+			.filter(c -> !NUMERICS_ONLY.contains(format.getColumnType(c)))
+			.filter(c -> !format.getColumnName(c).equals(partitioningField))
+			.filter(c -> format.getEstimatedCardinality(c) != 0L && format.getEstimatedCardinality(c) != 1L)
+			.boxed()
+			.sorted(Comparator.comparingLong(c -> format.getEstimatedCardinality(c) < 0L ? Long.MAX_VALUE : format.getEstimatedCardinality(c)))
+			.limit(maxFields)
+			.forEach(c -> fields.add(format.getColumnName(c)));
+		return fields;
 	}
 	
 	
@@ -219,17 +900,36 @@ public class AutoPivotGenerator {
 		// Hierarchies and dimensions
 		AxisDimensionsDescription dimensions = new AxisDimensionsDescription();
 		
-		Set<String> numerics = QfsArrays.mutableSet("double", "float", "int", "long");
-		Set<String> integers = QfsArrays.mutableSet("int", "long");
-		Set<String> decimals = QfsArrays.mutableSet("double", "float");
-		Set<String> numericsOnly = QfsArrays.mutableSet("double", "float", "long");
+		boolean rollup = isRollup(env);
+		List<Role> roles = getColumnRoles(format, env);
+
+		// Levels of each hierarchy with members that are columns of the input
+		Map<String, List<String>> hierarchyLevels = getHierarchyLevels(format, env, roles);
+
+		// Multi-level hierarchies, named after their leaf level
+		Map<String, String> hierarchyOf = new HashMap<>();
+		for(Map.Entry<String, List<String>> hierarchy : hierarchyLevels.entrySet()) {
+			if(hierarchy.getValue().size() < 2) {
+				continue;
+			}
+			String hierarchyName = hierarchy.getKey();
+			List<String> levels = hierarchy.getValue();
+			AxisDimensionDescription dimension = new AxisDimensionDescription(hierarchyName);
+			IAxisHierarchyDescription h = new AxisHierarchyDescription(hierarchyName);
+			for(String level : levels) {
+				h.getLevels().add(new AxisLevelDescription(level, level));
+				hierarchyOf.put(level, hierarchyName);
+			}
+			dimension.getHierarchies().add(h);
+			dimensions.addValues(Arrays.asList(dimension));
+		}
 
 		for(int f = 0; f < format.getColumnCount(); f++) {
 			String fieldName = format.getColumnName(f);
 			String fieldType = format.getColumnType(f);
 			
 
-			if(!numericsOnly.contains(fieldType)) {
+			if(roles.get(f) == Role.HIERARCHY && !hierarchyOf.containsKey(fieldName)) {
 				AxisDimensionDescription dimension = new AxisDimensionDescription(fieldName);
 				IAxisHierarchyDescription h = new AxisHierarchyDescription(fieldName);
 				IAxisLevelDescription l = new AxisLevelDescription(fieldName, fieldName);
@@ -249,11 +949,11 @@ public class AutoPivotGenerator {
 					hierarchy.setLevels(Arrays.asList(dateLevel));
 					hierarchies.add(hierarchy);
 					
-					IAxisHierarchyDescription ymd = new AxisHierarchyDescription(fieldName + "_YMD");
+					IAxisHierarchyDescription ymd = new AxisHierarchyDescription(fieldName + YMD_HIERARCHY_SUFFIX);
 					List<IAxisLevelDescription> levels = new ArrayList<>();
-					levels.add(new AxisLevelDescription("Year", fieldName + ".YEAR"));
-					levels.add(new AxisLevelDescription("Month", fieldName + ".MONTH"));
-					levels.add(new AxisLevelDescription("Day", fieldName + ".DAY"));
+					levels.add(new AxisLevelDescription(YMD_LEVELS.get(0), fieldName + ".YEAR"));
+					levels.add(new AxisLevelDescription(YMD_LEVELS.get(1), fieldName + ".MONTH"));
+					levels.add(new AxisLevelDescription(YMD_LEVELS.get(2), fieldName + ".DAY"));
 					ymd.setLevels(levels);
 					hierarchies.add(ymd);
 					
@@ -269,11 +969,12 @@ public class AutoPivotGenerator {
 		MeasuresDescription measureDesc = new MeasuresDescription();
 		List<IAggregatedMeasureDescription> measures = new ArrayList<>();
 		List<IPostProcessorDescription> postProcessors = new ArrayList<>();
+		List<String> sumMeasures = new ArrayList<>();
 		
 		for(int f = 0; f < format.getColumnCount(); f++) {
 			String fieldName = format.getColumnName(f).trim();
 			String fieldType = format.getColumnType(f);
-			if(numerics.contains(fieldType) && !fieldName.endsWith("id") && !fieldName.endsWith("ID")) {
+			if(isMeasureField(fieldName, fieldType) && roles.get(f) != Role.DRILLTHROUGH) {
 				
 				// For each numerical input value, create aggregations for SUM, MIN, MAX
 				AggregatedMeasureDescription sum = new AggregatedMeasureDescription(fieldName, "SUM");
@@ -281,23 +982,34 @@ public class AutoPivotGenerator {
 				AggregatedMeasureDescription max = new AggregatedMeasureDescription(fieldName, "MAX");
 				AggregatedMeasureDescription sq_sum = new AggregatedMeasureDescription(fieldName, "SQ_SUM");
 				sq_sum.setVisible(false);
+
+				// With rollup the measures aggregate the aggregates stored
+				// for each group, under the same measure names
+				if(rollup && NUMERICS_ONLY.contains(fieldType)) {
+					min = new AggregatedMeasureDescription(fieldName + "_MIN", "MIN");
+					min.setName(fieldName + ".MIN");
+					max = new AggregatedMeasureDescription(fieldName + "_MAX", "MAX");
+					max.setName(fieldName + ".MAX");
+					sq_sum = new AggregatedMeasureDescription(fieldName + "_SQ_SUM", "SUM");
+					sq_sum.setName(fieldName + ".SQ_SUM");
+					sq_sum.setVisible(false);
+				} else if(rollup) {
+					sum = new AggregatedMeasureDescription(fieldName + "_SUM", "SUM");
+					sum.setName(fieldName + ".SUM");
+				}
 				
-				// Shared formula expressions
-				String sumExpression = "aggregatedValue[" + fieldName + ".SUM]";
-				String squareSumExpression = "aggregatedValue[" + fieldName + ".SQ_SUM]";
-				String countExpression = "aggregatedValue[contributors.COUNT]";
-				String avgExpression = "aggregatedValue[" + fieldName + ".avg]";
+				// Shared underlying measures
+				String sumMeasure = fieldName + ".SUM";
+				String squareSumMeasure = fieldName + ".SQ_SUM";
+				String countMeasure = rollup ? ROLLUP_COUNT_FIELD + ".SUM" : IMeasureHierarchy.COUNT_ID;
 				
-				// Define a formula post processor to compute the average
-				PostProcessorDescription avg = new PostProcessorDescription(fieldName + ".avg", "FORMULA", new Properties());
-				String formula = sumExpression + ", " + countExpression + ", /";
-				avg.getProperties().setProperty("formula", formula);
+				// Define a post processor to compute the average
+				PostProcessorDescription avg = new PostProcessorDescription(fieldName + ".avg", AveragePostProcessor.PLUGIN_KEY, new Properties());
+				avg.getProperties().setProperty(IPostProcessor.UNDERLYING_MEASURES, sumMeasure + "," + countMeasure);
 				
-				// Define a formula post processor to compute the standard deviation
-				PostProcessorDescription std = new PostProcessorDescription(fieldName + ".STD", "FORMULA", new Properties());
-				String stdFormula = "(" + squareSumExpression + ", " + countExpression + ", /)";
-				stdFormula += ", (" + avgExpression + ", " + avgExpression + ", *), -, SQRT";
-				std.getProperties().setProperty("formula", stdFormula);
+				// Define a post processor to compute the standard deviation
+				PostProcessorDescription std = new PostProcessorDescription(fieldName + ".STD", StandardDeviationPostProcessor.PLUGIN_KEY, new Properties());
+				std.getProperties().setProperty(IPostProcessor.UNDERLYING_MEASURES, squareSumMeasure + "," + sumMeasure + "," + countMeasure);
 
 				// Put the measures for that field in one folder
 				sum.setFolder(fieldName);
@@ -308,7 +1020,7 @@ public class AutoPivotGenerator {
 				max.setFolder(fieldName);
 				
 				// Setup measure formatters
-				String formatter = integers.contains(fieldType) ? INTEGER_FORMAT : DOUBLE_FORMAT;
+				String formatter = INTEGERS.contains(fieldType) ? INTEGER_FORMAT : DOUBLE_FORMAT;
 				sum.setFormatter(formatter);
 				sq_sum.setFormatter(formatter);
 				min.setFormatter(formatter);
@@ -317,13 +1029,14 @@ public class AutoPivotGenerator {
 				std.setFormatter(DOUBLE_FORMAT);
 				
 				measures.add(sum);
+				sumMeasures.add(fieldName + ".SUM");
 				measures.add(min);
 				measures.add(max);
 				
 				postProcessors.add(avg);
 				
 				// Add standard deviation only for floating point inputs
-				if(decimals.contains(fieldType)) {
+				if(DECIMALS.contains(fieldType)) {
 					measures.add(sq_sum);
 					postProcessors.add(std);
 				}
@@ -332,15 +1045,21 @@ public class AutoPivotGenerator {
 		}
 
 
+		// With rollup, a record holds several rows, the count of rows is weighted
+		if(rollup) {
+			AggregatedMeasureDescription rows = new AggregatedMeasureDescription(ROLLUP_COUNT_FIELD, "SUM");
+			rows.setFormatter(INTEGER_FORMAT);
+			measures.add(rows);
+		}
+
 		// Add distinct count calculation for each level field
 		for(int f = 0; f < format.getColumnCount(); f++) {
 			String fieldName = format.getColumnName(f).trim();
-			String fieldType = format.getColumnType(f);
 
-			if(!numericsOnly.contains(fieldType)) {
+			if(roles.get(f) == Role.HIERARCHY) {
 				
 				PostProcessorDescription dc = new PostProcessorDescription(fieldName + ".COUNT", IPostProcessorConstants.LEAF_COUNT_PLUGIN_KEY, new Properties());
-				String leafExpression = fieldName + "@" + fieldName;
+				String leafExpression = fieldName + "@" + hierarchyOf.getOrDefault(fieldName, fieldName);
 				dc.getProperties().setProperty(IPostProcessorConstants.LEAF_COUNT_PARAM_LEAF_LEVELS, leafExpression);
 				dc.setFolder("Distinct Count");
 				postProcessors.add(dc);
@@ -348,6 +1067,10 @@ public class AutoPivotGenerator {
 		}
 		
 		
+		// Partial aggregate provider for the queries over the levels with few members
+		sumMeasures.add(rollup ? ROLLUP_COUNT_FIELD + ".SUM" : IMeasureHierarchy.COUNT_ID);
+		apd.setPartialProviders(createPartialProviders(format, env, hierarchyLevels, sumMeasures));
+
 		measureDesc.setAggregatedMeasuresDescription(measures);
 		measureDesc.setPostProcessorsDescription(postProcessors);
 
@@ -377,6 +1100,313 @@ public class AutoPivotGenerator {
 		return desc;
 	}
 	
+	/**
+	 * 
+	 * Role of each column in the cube. By default the columns that are
+	 * not floating point or long values are hierarchies. When the classification
+	 * is enabled and the column statistics are known, identifiers, free text and
+	 * columns with too many members are only stored for drillthrough, and
+	 * integer amounts are only measures, see {@link ColumnClassifier}.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return role of each column
+	 */
+	public List<Role> getColumnRoles(CSVFormat format, Environment env) {
+		boolean classification = env.getProperty(CLASSIFICATION_PROPERTY, Boolean.class, false);
+		ColumnClassifier classifier = new ColumnClassifier(
+				env.getProperty(CLASSIFICATION_MAX_MEMBERS_PROPERTY, Long.class, ColumnClassifier.DEFAULT_MAX_MEMBERS),
+				env.getProperty(CLASSIFICATION_IDENTIFIER_UNIQUENESS_PROPERTY, Double.class, ColumnClassifier.DEFAULT_IDENTIFIER_UNIQUENESS),
+				env.getProperty(CLASSIFICATION_MIN_IDENTIFIER_VALUES_PROPERTY, Long.class, ColumnClassifier.DEFAULT_MIN_IDENTIFIER_VALUES),
+				env.getProperty(CLASSIFICATION_MAX_TEXT_LENGTH_PROPERTY, Double.class, ColumnClassifier.DEFAULT_MAX_TEXT_LENGTH));
+		List<String> hierarchies = getListProperty(env, HIERARCHIES_PROPERTY);
+
+		List<Role> roles = new ArrayList<>();
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			String fieldName = format.getColumnName(c);
+			String fieldType = format.getColumnType(c);
+			ColumnStatistics statistics = format.getColumnStatistics(c);
+			if(NUMERICS_ONLY.contains(fieldType)) {
+				roles.add(Role.MEASURE);
+			} else if(!classification || statistics == null || hierarchies.stream().anyMatch(fieldName.trim()::equalsIgnoreCase)) {
+				roles.add(Role.HIERARCHY);
+			} else {
+				Classification choice = classifier.classify(fieldType, statistics);
+				if(choice.role != Role.HIERARCHY) {
+					LOGGER.info("Column '" + fieldName + "' is not a hierarchy, " + choice);
+				}
+				roles.add(choice.role);
+			}
+		}
+		return roles;
+	}
+
+	/**
+	 * 
+	 * Create a partial aggregate provider, that pre-aggregates the SUM and
+	 * count measures over the levels with few members, dates, books or regions,
+	 * so that the queries over these levels do not scan the whole store.
+	 * The levels are chosen from the numbers of distinct values estimated for the input
+	 * to fit in a memory budget, by default a share of the maximum heap size,
+	 * see {@link PartialProviderPlanner}.
+	 * <p>
+	 * The partial providers are only created when enabled. When a query log was
+	 * saved, they are instead the ones that answer the most query time of the log
+	 * within the budget.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @param hierarchies levels of each hierarchy, from the top level down to the leaf level
+	 * @param defaultMeasures measures included by default
+	 * @return partial provider definitions, empty when disabled or when no level fits in the budget
+	 */
+	public List<IPartialProviderDefinition> createPartialProviders(CSVFormat format, Environment env,
+			Map<String, List<String>> hierarchies, List<String> defaultMeasures) {
+		if(!isPartialProvider(env)) {
+			return Collections.emptyList();
+		}
+		List<String> measures = getListProperty(env, PARTIAL_PROVIDER_MEASURES_PROPERTY);
+		if(measures.isEmpty()) {
+			measures = defaultMeasures;
+		}
+		long memory = getPartialProviderMemory(env);
+		String type = env.getProperty(PARTIAL_PROVIDER_TYPE_PROPERTY, DEFAULT_PARTIAL_PROVIDER_TYPE).toUpperCase();
+
+		String queryLogFile = env.getProperty(QUERY_LOG_FILE_PROPERTY);
+		if(queryLogFile != null) {
+			try {
+				QueryLog log = QueryLog.load(Paths.get(queryLogFile));
+				List<Proposal> proposals = adviseMaterialization(log, format, env);
+				if(!proposals.isEmpty()) {
+					List<IPartialProviderDefinition> partials = new ArrayList<>();
+					for(Proposal proposal : proposals) {
+						LOGGER.info("Configuring " + type + " partial aggregate provider from the query log over " + proposal);
+						partials.add(new PartialProviderDefinition("QueryPartial" + partials.size(), type, new Properties(),
+								proposal.scope.getLevels(), new ArrayList<>(proposal.scope.getMeasures())));
+					}
+					return partials;
+				}
+			} catch(IOException e) {
+				LOGGER.log(Level.WARNING, "Could not read the query log " + queryLogFile, e);
+			}
+		}
+
+		List<String> included = getListProperty(env, PARTIAL_PROVIDER_HIERARCHIES_PROPERTY);
+		List<PartialProviderPlanner.Candidate> candidates = new ArrayList<>();
+		for(Map.Entry<String, List<String>> hierarchy : hierarchies.entrySet()) {
+			if(!included.isEmpty() && included.stream().noneMatch(hierarchy.getKey()::equalsIgnoreCase)) {
+				continue;
+			}
+			long[] cardinalities = hierarchy.getValue().stream()
+					.mapToLong(level -> format.getEstimatedCardinality(format.getColumnNames().indexOf(level)))
+					.toArray();
+			candidates.add(new PartialProviderPlanner.Candidate(hierarchy.getKey(), hierarchy.getValue(), cardinalities));
+		}
+
+		PartialProviderPlanner.Plan plan = new PartialProviderPlanner(memory, measures.size()).plan(candidates);
+		if(plan == null) {
+			LOGGER.info("No partial aggregate provider, no level fits in " + (memory >> 20) + "MB");
+			return Collections.emptyList();
+		}
+		LOGGER.info("Configuring " + type + " partial aggregate provider over " + plan + " with measures " + measures);
+		IPartialProviderDefinition partial = new PartialProviderDefinition("AutoPartial", type, new Properties(), plan.levels, measures);
+		return Arrays.asList(partial);
+	}
+
+	/**
+	 * @param env spring environment
+	 * @return true if partial aggregate providers are created, from the query log or the column statistics
+	 */
+	public boolean isPartialProvider(Environment env) {
+		return env.getProperty(PARTIAL_PROVIDER_PROPERTY, Boolean.class, false);
+	}
+
+	/**
+	 * @param env spring environment
+	 * @return memory budget of the partial aggregate providers, in bytes
+	 */
+	protected long getPartialProviderMemory(Environment env) {
+		return env.getProperty(PARTIAL_PROVIDER_MEMORY_PROPERTY, Long.class,
+				Runtime.getRuntime().maxMemory() / DEFAULT_PARTIAL_PROVIDER_HEAP_SHARE);
+	}
+
+	/**
+	 * 
+	 * Choose the partial aggregate providers that answer the most
+	 * query time of a query log within the memory budget.
+	 * 
+	 * @param log log of the query patterns
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return chosen partial providers, the most useful first
+	 */
+	public List<Proposal> adviseMaterialization(QueryLog log, CSVFormat format, Environment env) {
+		Map<String, List<String>> hierarchies = new LinkedHashMap<>();
+		getQueryDimensions(format, env).values().forEach(hierarchies::putAll);
+		MaterializationAdvisor advisor = new MaterializationAdvisor(
+				getPartialProviderMemory(env),
+				env.getProperty(QUERY_LOG_MAX_PROVIDERS_PROPERTY, Integer.class, DEFAULT_QUERY_LOG_MAX_PROVIDERS),
+				hierarchies,
+				(hierarchy, level) -> getLevelCardinality(format, hierarchy, level),
+				getMeasureDependencies(format, env));
+		return advisor.advise(log.getEntries());
+	}
+
+	/**
+	 * 
+	 * Hierarchies of the cube the queries can be recorded on, by dimension:
+	 * the hierarchies with members that are columns of the input, and the
+	 * YEAR-MONTH-DAY hierarchies of the date dimensions.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return levels of each hierarchy by dimension, from the top level down to the leaf level
+	 */
+	public Map<String, Map<String, List<String>>> getQueryDimensions(CSVFormat format, Environment env) {
+		Map<String, Map<String, List<String>>> dimensions = new LinkedHashMap<>();
+		for(Map.Entry<String, List<String>> hierarchy : getHierarchyLevels(format, env).entrySet()) {
+			Map<String, List<String>> hierarchies = new LinkedHashMap<>();
+			hierarchies.put(hierarchy.getKey(), hierarchy.getValue());
+			int column = format.getColumnNames().indexOf(hierarchy.getKey());
+			if(hierarchy.getValue().size() == 1 && column >= 0 && isDate(format.getColumnType(column))) {
+				hierarchies.put(hierarchy.getKey() + YMD_HIERARCHY_SUFFIX, YMD_LEVELS);
+			}
+			dimensions.put(hierarchy.getKey(), hierarchies);
+		}
+		return dimensions;
+	}
+
+	/**
+	 * @param format format of the CSV file
+	 * @param hierarchy name of a hierarchy
+	 * @param level name of a level of the hierarchy
+	 * @return estimated number of distinct values of the level in the whole input, -1 when unknown
+	 */
+	protected long getLevelCardinality(CSVFormat format, String hierarchy, String level) {
+		int column = format.getColumnNames().indexOf(level);
+		if(column < 0 && hierarchy.endsWith(YMD_HIERARCHY_SUFFIX)) {
+			// There are at most as many years, months or days as dates
+			column = format.getColumnNames().indexOf(hierarchy.substring(0, hierarchy.length() - YMD_HIERARCHY_SUFFIX.length()));
+		}
+		return column < 0 ? -1L : format.getEstimatedCardinality(column);
+	}
+
+	/**
+	 * @param env spring environment
+	 * @param property name of a property holding a comma separated list
+	 * @return values of the list, empty when the property is not set
+	 */
+	protected List<String> getListProperty(Environment env, String property) {
+		return Arrays.stream(env.getProperty(property, "").split(","))
+				.map(String::trim)
+				.filter(value -> !value.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return levels of each hierarchy with members that are columns of the input, from the top level down to the leaf level
+	 */
+	public Map<String, List<String>> getHierarchyLevels(CSVFormat format, Environment env) {
+		return getHierarchyLevels(format, env, getColumnRoles(format, env));
+	}
+
+	/**
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @param roles role of each column
+	 * @return levels of each hierarchy with members that are columns of the input,
+	 * the multi-level hierarchies first, named after their leaf level
+	 */
+	protected Map<String, List<String>> getHierarchyLevels(CSVFormat format, Environment env, List<Role> roles) {
+		Map<String, List<String>> hierarchyLevels = new LinkedHashMap<>();
+		Set<String> chained = new HashSet<>();
+		for(List<String> levels : getMultiLevelHierarchies(format, env, roles)) {
+			hierarchyLevels.put(levels.get(levels.size() - 1), levels);
+			chained.addAll(levels);
+		}
+		for(int f = 0; f < format.getColumnCount(); f++) {
+			String fieldName = format.getColumnName(f);
+			if(roles.get(f) == Role.HIERARCHY && !chained.contains(fieldName)) {
+				hierarchyLevels.put(fieldName, Arrays.asList(fieldName));
+			}
+		}
+		return hierarchyLevels;
+	}
+
+	/**
+	 * 
+	 * Aggregated measures each measure of the cube is computed from,
+	 * the aggregated measures depend on themselves. The distinct counts
+	 * of the levels are not included, they depend on the leaf levels.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @return aggregated measures of each measure
+	 */
+	public Map<String, List<String>> getMeasureDependencies(CSVFormat format, Environment env) {
+		List<Role> roles = getColumnRoles(format, env);
+		String count = isRollup(env) ? ROLLUP_COUNT_FIELD + ".SUM" : IMeasureHierarchy.COUNT_ID;
+		Map<String, List<String>> dependencies = new LinkedHashMap<>();
+		dependencies.put(count, Arrays.asList(count));
+		for(int f = 0; f < format.getColumnCount(); f++) {
+			String fieldName = format.getColumnName(f).trim();
+			String fieldType = format.getColumnType(f);
+			if(!isMeasureField(fieldName, fieldType) || roles.get(f) == Role.DRILLTHROUGH) {
+				continue;
+			}
+			String sum = fieldName + ".SUM";
+			dependencies.put(sum, Arrays.asList(sum));
+			dependencies.put(fieldName + ".MIN", Arrays.asList(fieldName + ".MIN"));
+			dependencies.put(fieldName + ".MAX", Arrays.asList(fieldName + ".MAX"));
+			dependencies.put(fieldName + ".avg", Arrays.asList(sum, count));
+			if(DECIMALS.contains(fieldType)) {
+				String squareSum = fieldName + ".SQ_SUM";
+				dependencies.put(squareSum, Arrays.asList(squareSum));
+				dependencies.put(fieldName + ".STD", Arrays.asList(squareSum, sum, count));
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * 
+	 * Multi-level hierarchies built from the functional dependencies
+	 * between the columns found in the sample, for instance Country and City
+	 * when each city belongs to one country, when they are enabled. Only the columns that are
+	 * hierarchies and not dates are chained, see {@link FunctionalDependencies}.
+	 * 
+	 * @param format format of the CSV file
+	 * @param env spring environment
+	 * @param roles role of each column
+	 * @return levels of each hierarchy, from the top level down to the leaf level
+	 */
+	public List<List<String>> getMultiLevelHierarchies(CSVFormat format, Environment env, List<Role> roles) {
+		FunctionalDependencies dependencies = format.getDependencies();
+		if(dependencies == null || !env.getProperty(MULTI_LEVEL_HIERARCHIES_PROPERTY, Boolean.class, false)) {
+			return Collections.emptyList();
+		}
+		List<ColumnStatistics> statistics = IntStream.range(0, format.getColumnCount())
+				.mapToObj(format::getColumnStatistics)
+				.collect(Collectors.toList());
+		List<List<String>> hierarchies = new ArrayList<>();
+		for(List<Integer> columns : dependencies.getHierarchies(statistics)) {
+			// Removing a level from a chain of dependencies leaves a chain of dependencies
+			List<String> levels = columns.stream()
+					.filter(c -> roles.get(c) == Role.HIERARCHY && !isDate(format.getColumnType(c)))
+					.map(format::getColumnName)
+					.collect(Collectors.toList());
+			if(levels.size() > 1 && !hierarchies.contains(levels)) {
+				LOGGER.info("Detected multi-level hierarchy " + String.join(" > ", levels));
+				hierarchies.add(levels);
+			}
+		}
+		return hierarchies;
+	}
+
 	/**
 	 * 
 	 * @param format format of the CSV file
@@ -388,16 +1418,8 @@ public class AutoPivotGenerator {
 
 		// Datastore selection
 		List<AliasedField> fields = new ArrayList<>();
-		for(int f = 0; f < format.getColumnCount(); f++) {
-			String fieldName = format.getColumnName(f);
-			String fieldType = format.getColumnType(f);
+		for(String fieldName : getStoreFieldNames(format, env)) {
 			fields.add(AliasedField.fromFieldName(fieldName));
-			
-			if(isDate(fieldType)) {
-				fields.add(AliasedField.fromFieldName((fieldName + ".YEAR")));
-				fields.add(AliasedField.fromFieldName((fieldName + ".MONTH")));
-				fields.add(AliasedField.fromFieldName((fieldName + ".DAY")));
-			}
 		}
 		SelectionDescription selection = new SelectionDescription(BASE_STORE, fields);
 		
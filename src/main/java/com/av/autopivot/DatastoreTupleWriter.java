@@ -0,0 +1,140 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.activeviam.database.api.IDatabase;
+import com.activeviam.database.api.query.AliasedField;
+import com.activeviam.database.api.query.ListQuery;
+import com.av.csv.load.IKeyedTupleWriter;
+import com.av.csv.load.ITupleWriter;
+import com.qfs.condition.ICondition;
+import com.qfs.condition.impl.BaseConditions;
+import com.qfs.multiversion.IEpoch;
+import com.qfs.store.query.ICursor;
+import com.qfs.store.record.IRecordReader;
+
+/**
+ * 
+ * Write tuples into a store of the database,
+ * one transaction per batch of tuples.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class DatastoreTupleWriter implements IKeyedTupleWriter {
+
+	/** Target database */
+	protected final IDatabase database;
+
+	/** Name of the target store */
+	protected final String storeName;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param database target database
+	 * @param storeName name of the target store
+	 */
+	public DatastoreTupleWriter(IDatabase database, String storeName) {
+		this.database = database;
+		this.storeName = storeName;
+	}
+
+	@Override
+	public void write(List<Object[]> tuples) {
+		database.edit(transaction -> transaction.addAll(storeName, tuples));
+	}
+
+	@Override
+	public void remove(List<Object[]> keys) {
+		database.edit(transaction -> transaction.removeAll(storeName, keys));
+	}
+
+	/**
+	 * Remove the records matching a condition, in one transaction.
+	 * 
+	 * @param condition condition on the fields of the store
+	 */
+	public void removeWhere(ICondition condition) {
+		database.edit(transaction -> transaction.removeWhere(storeName, condition));
+	}
+
+	/**
+	 * @param condition condition on the fields of the store
+	 * @param field any field of the store
+	 * @return number of records matching the condition
+	 */
+	public long count(ICondition condition, String field) {
+		ListQuery query = database.getQueryManager().listQuery()
+				.forTable(storeName)
+				.withCondition(condition)
+				.withAliasedFields(AliasedField.fromFieldName(field))
+				.toQuery();
+
+		long count = 0L;
+		try(ICursor cursor = database.getHead(IEpoch.MASTER_BRANCH_NAME).getQueryRunner().listQuery(query).run()) {
+			for(@SuppressWarnings("unused") IRecordReader record : cursor) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Replace all the records of the store in one transaction: queries
+	 * see the previous records until the new records are all written.
+	 * 
+	 * @param loading writes the new records, into the transaction
+	 */
+	public void replaceAll(Consumer<ITupleWriter> loading) {
+		database.edit(transaction -> {
+			transaction.removeWhere(storeName, BaseConditions.TRUE);
+			loading.accept(tuples -> transaction.addAll(storeName, tuples));
+		});
+	}
+
+	/**
+	 * Read some fields of all the records of the store.
+	 * 
+	 * @param fields names of the read fields
+	 * @param consumer consumer of the values of the fields of each record
+	 */
+	public void scan(List<String> fields, Consumer<Object[]> consumer) {
+		ListQuery query = database.getQueryManager().listQuery()
+				.forTable(storeName)
+				.withoutCondition()
+				.withAliasedFields(fields.stream().map(AliasedField::fromFieldName).collect(Collectors.toList()))
+				.toQuery();
+
+		try(ICursor cursor = database.getHead(IEpoch.MASTER_BRANCH_NAME).getQueryRunner().listQuery(query).run()) {
+			for(IRecordReader record : cursor) {
+				Object[] values = new Object[fields.size()];
+				for(int f = 0; f < values.length; f++) {
+					values[f] = record.read(f);
+				}
+				consumer.accept(values);
+			}
+		}
+	}
+
+}
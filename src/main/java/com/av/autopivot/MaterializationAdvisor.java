@@ -0,0 +1,214 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToLongBiFunction;
+
+import com.av.autopivot.QueryLog.Entry;
+
+/**
+ * 
+ * Choice of the partial aggregate providers that save the most query
+ * time within a memory budget, from a log of the queries of the cube.
+ * <p>
+ * Each recorded pattern is a candidate provider. The measures of the
+ * patterns are replaced by the aggregated measures they are computed
+ * from, so that a provider holding PnL.SUM and the count also answers
+ * the queries on the average of PnL. The candidates are chosen greedily,
+ * the one that answers the most remaining query time per byte first,
+ * see {@link PartialProviderPlanner} for the estimate of their size.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class MaterializationAdvisor {
+
+	/** Chosen partial provider */
+	public static class Proposal {
+
+		/** Levels and measures of the provider */
+		public final QueryPattern scope;
+
+		/** Estimated number of points */
+		public final long points;
+
+		/** Estimated memory, in bytes */
+		public final long bytes;
+
+		/** Number of recorded queries the provider answers */
+		public final long queries;
+
+		/** Total time of the recorded queries the provider answers, in milliseconds */
+		public final long time;
+
+		public Proposal(QueryPattern scope, long points, long bytes, long queries, long time) {
+			this.scope = scope;
+			this.points = points;
+			this.bytes = bytes;
+			this.queries = queries;
+			this.time = time;
+		}
+
+		@Override
+		public String toString() {
+			return scope + ", " + points + " points, " + (bytes >> 20) + "MB, answers " + queries + " queries taking " + time + "ms";
+		}
+	}
+
+	/** Memory budget of all the partial providers, in bytes */
+	protected final long memoryBudget;
+
+	/** Maximum number of partial providers */
+	protected final int maxProviders;
+
+	/** Levels of each hierarchy, from the top level down to the leaf level */
+	protected final Map<String, List<String>> hierarchies;
+
+	/** Number of members of a level of a hierarchy, 0 or less when unknown */
+	protected final ToLongBiFunction<String, String> cardinality;
+
+	/** Aggregated measures each measure is computed from */
+	protected final Map<String, List<String>> measureDependencies;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param memoryBudget memory budget of all the partial providers, in bytes
+	 * @param maxProviders maximum number of partial providers
+	 * @param hierarchies levels of each hierarchy, from the top level down to the leaf level
+	 * @param cardinality number of members of a level of a hierarchy, 0 or less when unknown
+	 * @param measureDependencies aggregated measures each measure is computed from
+	 */
+	public MaterializationAdvisor(long memoryBudget, int maxProviders, Map<String, List<String>> hierarchies,
+			ToLongBiFunction<String, String> cardinality, Map<String, List<String>> measureDependencies) {
+		this.memoryBudget = memoryBudget;
+		this.maxProviders = maxProviders;
+		this.hierarchies = hierarchies;
+		this.cardinality = cardinality;
+		this.measureDependencies = measureDependencies;
+	}
+
+	/**
+	 * @param entries recorded query patterns
+	 * @return chosen partial providers, the most useful first
+	 */
+	public List<Proposal> advise(List<Entry> entries) {
+		// Patterns expressed on aggregated measures, with their queries and time
+		Map<QueryPattern, long[]> patterns = new LinkedHashMap<>();
+		for(Entry entry : entries) {
+			QueryPattern pattern = toAggregatedMeasures(entry.pattern);
+			if(pattern != null) {
+				long[] statistics = patterns.computeIfAbsent(pattern, p -> new long[2]);
+				statistics[0] += entry.getCount();
+				statistics[1] += entry.getTotalTime();
+			}
+		}
+
+		List<Proposal> proposals = new ArrayList<>();
+		Set<QueryPattern> answered = new HashSet<>();
+		long remaining = memoryBudget;
+		while(proposals.size() < maxProviders) {
+			Proposal best = null;
+			for(QueryPattern candidate : patterns.keySet()) {
+				long points = estimatePoints(candidate);
+				if(points <= 0L) {
+					continue;
+				}
+				long bytes = points * pointSize(candidate);
+				if(bytes > remaining) {
+					continue;
+				}
+				long queries = 0L, time = 0L;
+				for(Map.Entry<QueryPattern, long[]> pattern : patterns.entrySet()) {
+					if(!answered.contains(pattern.getKey()) && candidate.covers(pattern.getKey(), hierarchies)) {
+						queries += pattern.getValue()[0];
+						time += pattern.getValue()[1];
+					}
+				}
+				if(time > 0L && (best == null || (double) time / bytes > (double) best.time / best.bytes)) {
+					best = new Proposal(candidate, points, bytes, queries, time);
+				}
+			}
+			if(best == null) {
+				break;
+			}
+			proposals.add(best);
+			remaining -= best.bytes;
+			for(QueryPattern pattern : patterns.keySet()) {
+				if(best.scope.covers(pattern, hierarchies)) {
+					answered.add(pattern);
+				}
+			}
+		}
+		return proposals;
+	}
+
+	/**
+	 * @param pattern recorded pattern
+	 * @return the pattern on the aggregated measures, null if one of its measures is unknown
+	 */
+	protected QueryPattern toAggregatedMeasures(QueryPattern pattern) {
+		Set<String> measures = new TreeSet<>();
+		for(String measure : pattern.getMeasures()) {
+			List<String> dependencies = measureDependencies.get(measure);
+			if(dependencies == null) {
+				return null;
+			}
+			measures.addAll(dependencies);
+		}
+		return measures.isEmpty() ? null : new QueryPattern(pattern.getLevels(), measures);
+	}
+
+	/**
+	 * @param scope levels of a provider
+	 * @return estimated number of points of the provider, 0 or less when unknown or above the budget
+	 */
+	protected long estimatePoints(QueryPattern scope) {
+		long points = 1L;
+		for(Map.Entry<String, String> level : scope.getLevels().entrySet()) {
+			long members = cardinality.applyAsLong(level.getKey(), level.getValue());
+			if(members <= 0L || members > memoryBudget / points) {
+				return 0L;
+			}
+			points *= members;
+		}
+		return points;
+	}
+
+	/**
+	 * @param scope levels and measures of a provider
+	 * @return estimated size of a point of the provider
+	 */
+	protected long pointSize(QueryPattern scope) {
+		int levelCount = 0;
+		for(Map.Entry<String, String> level : scope.getLevels().entrySet()) {
+			levelCount += hierarchies.get(level.getKey()).indexOf(level.getValue()) + 1;
+		}
+		return PartialProviderPlanner.POINT_OVERHEAD + PartialProviderPlanner.LEVEL_SIZE * levelCount
+				+ PartialProviderPlanner.AGGREGATE_SIZE * scope.getMeasures().size();
+	}
+
+}
@@ -0,0 +1,137 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * NUMA topology of the machine: the memory nodes and the number of
+ * processors attached to each of them, read from the Linux sysfs.
+ * On other systems, or when it cannot be read, the machine is
+ * considered a single node.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class NumaTopology {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(NumaTopology.class.getName());
+
+	/** Directory of the NUMA nodes in the Linux sysfs */
+	public static final String NODES_DIRECTORY = "/sys/devices/system/node";
+
+	/** Number of processors of each node */
+	protected final List<Integer> cpuCounts;
+
+	/** @param cpuCounts number of processors of each node */
+	public NumaTopology(List<Integer> cpuCounts) {
+		this.cpuCounts = cpuCounts;
+	}
+
+	/** @return topology of this machine */
+	public static NumaTopology detect() {
+		return read(Paths.get(NODES_DIRECTORY));
+	}
+
+	/**
+	 * @param nodesDirectory directory holding a nodeN directory with a cpulist file for each node
+	 * @return topology, a single node if it cannot be read
+	 */
+	public static NumaTopology read(Path nodesDirectory) {
+		List<Integer> cpuCounts = new ArrayList<>();
+		if(Files.isDirectory(nodesDirectory)) {
+			try(DirectoryStream<Path> nodes = Files.newDirectoryStream(nodesDirectory, "node[0-9]*")) {
+				List<Path> sorted = new ArrayList<>();
+				nodes.forEach(sorted::add);
+				sorted.sort((n1, n2) -> Integer.compare(nodeId(n1), nodeId(n2)));
+				for(Path node : sorted) {
+					Path cpuList = node.resolve("cpulist");
+					int cpus = Files.isRegularFile(cpuList) ? countCpus(new String(Files.readAllBytes(cpuList)).trim()) : 0;
+					// Nodes without processors, memory only, do not run partitions
+					if(cpus > 0) {
+						cpuCounts.add(cpus);
+					}
+				}
+			} catch(IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Could not read the NUMA topology from " + nodesDirectory, e);
+				cpuCounts.clear();
+			}
+		}
+		if(cpuCounts.isEmpty()) {
+			cpuCounts.add(Runtime.getRuntime().availableProcessors());
+		}
+		return new NumaTopology(cpuCounts);
+	}
+
+	protected static int nodeId(Path node) {
+		return Integer.parseInt(node.getFileName().toString().substring("node".length()));
+	}
+
+	/**
+	 * @param cpuList list of processors, such as 0-15,32-47
+	 * @return number of processors of the list
+	 */
+	protected static int countCpus(String cpuList) {
+		int count = 0;
+		if(cpuList.isEmpty()) {
+			return count;
+		}
+		for(String range : cpuList.split(",")) {
+			int dash = range.indexOf('-');
+			count += dash < 0 ? 1 : Integer.parseInt(range.substring(dash + 1).trim()) - Integer.parseInt(range.substring(0, dash).trim()) + 1;
+		}
+		return count;
+	}
+
+	/** @return number of nodes with processors */
+	public int getNodeCount() {
+		return cpuCounts.size();
+	}
+
+	/** @return number of processors of each node */
+	public List<Integer> getCpuCounts() {
+		return Collections.unmodifiableList(cpuCounts);
+	}
+
+	/**
+	 * @param count a number of partitions or threads
+	 * @return the smallest multiple of the number of nodes that is not below the count
+	 */
+	public int alignToNodes(int count) {
+		int nodes = getNodeCount();
+		return ((Math.max(1, count) + nodes - 1) / nodes) * nodes;
+	}
+
+	@Override
+	public String toString() {
+		return getNodeCount() + " NUMA nodes, processors per node " + cpuCounts;
+	}
+
+}
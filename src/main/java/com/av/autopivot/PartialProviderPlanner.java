@@ -0,0 +1,156 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * Choice of the scope of a partial aggregate provider from the number
+ * of distinct values of the levels, so that it fits in a memory budget.
+ * <p>
+ * A partial provider stores one aggregate per combination of the
+ * members of its levels, at most the product of their numbers of
+ * members. The hierarchies are considered from the one whose top level
+ * has the fewest members (dates, books, regions), and for each hierarchy
+ * the deepest level that keeps the aggregates within the budget is
+ * included. Queries that only use the included levels are answered by
+ * the partial provider instead of a full scan of the store.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class PartialProviderPlanner {
+
+	/** Estimated size of a point in a partial provider, without its levels and measures */
+	public static final long POINT_OVERHEAD = 32L;
+
+	/** Estimated size of a level of a point */
+	public static final long LEVEL_SIZE = 4L;
+
+	/** Estimated size of an aggregate */
+	public static final long AGGREGATE_SIZE = 8L;
+
+	/** Hierarchy that can be included in the partial provider */
+	public static class Candidate {
+
+		/** Name of the hierarchy */
+		public final String hierarchy;
+
+		/** Names of the levels, from the top level down to the leaf level */
+		public final List<String> levels;
+
+		/** Number of members of each level */
+		public final long[] cardinalities;
+
+		public Candidate(String hierarchy, List<String> levels, long[] cardinalities) {
+			this.hierarchy = hierarchy;
+			this.levels = levels;
+			this.cardinalities = cardinalities;
+		}
+	}
+
+	/** Scope of a partial provider */
+	public static class Plan {
+
+		/** Deepest included level of each included hierarchy */
+		public final Map<String, String> levels;
+
+		/** Estimated number of points */
+		public final long points;
+
+		/** Estimated memory, in bytes */
+		public final long bytes;
+
+		public Plan(Map<String, String> levels, long points, long bytes) {
+			this.levels = levels;
+			this.points = points;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public String toString() {
+			return levels + ", " + points + " points, " + (bytes >> 20) + "MB";
+		}
+	}
+
+	/** Memory budget of the partial provider, in bytes */
+	protected final long memoryBudget;
+
+	/** Number of measures of the partial provider */
+	protected final int measureCount;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param memoryBudget memory budget of the partial provider, in bytes
+	 * @param measureCount number of measures of the partial provider
+	 */
+	public PartialProviderPlanner(long memoryBudget, int measureCount) {
+		this.memoryBudget = memoryBudget;
+		this.measureCount = measureCount;
+	}
+
+	/**
+	 * @param levelCount number of levels
+	 * @return estimated size of a point with that number of levels
+	 */
+	protected long pointSize(int levelCount) {
+		return POINT_OVERHEAD + LEVEL_SIZE * levelCount + AGGREGATE_SIZE * measureCount;
+	}
+
+	/**
+	 * @param candidates hierarchies that can be included
+	 * @return scope of the partial provider, null if no level fits in the budget
+	 */
+	public Plan plan(List<Candidate> candidates) {
+		List<Candidate> sorted = new ArrayList<>(candidates);
+		sorted.removeIf(c -> c.levels.isEmpty() || c.cardinalities[0] <= 0L);
+		sorted.sort(Comparator.comparingLong(c -> c.cardinalities[0]));
+
+		Map<String, String> levels = new LinkedHashMap<>();
+		long points = 1L;
+		int levelCount = 0;
+		for(Candidate candidate : sorted) {
+			int depth = -1;
+			for(int l = 0; l < candidate.levels.size(); l++) {
+				long cardinality = candidate.cardinalities[l];
+				if(cardinality <= 0L || cardinality > memoryBudget / points) {
+					break;
+				}
+				long combined = points * cardinality;
+				if(combined * pointSize(levelCount + l + 1) > memoryBudget) {
+					break;
+				}
+				depth = l;
+			}
+			if(depth >= 0) {
+				levels.put(candidate.hierarchy, candidate.levels.get(depth));
+				points *= candidate.cardinalities[depth];
+				levelCount += depth + 1;
+			}
+		}
+		return levels.isEmpty() ? null : new Plan(levels, points, points * pointSize(levelCount));
+	}
+
+}
@@ -0,0 +1,209 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * 
+ * Log of the patterns of the queries of the cube: for each combination
+ * of levels and measures, the number of queries and their total time.
+ * It is saved in a tab separated file, to choose the partial aggregate
+ * providers when the cube is created at the next start.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class QueryLog {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(QueryLog.class.getName());
+
+	/** Maximum number of distinct patterns recorded */
+	public static final int MAX_PATTERNS = 10_000;
+
+	/** Statistics of the queries of a pattern */
+	public static class Entry {
+
+		/** Pattern of the queries */
+		public final QueryPattern pattern;
+
+		/** Number of queries */
+		protected long count;
+
+		/** Total time of the queries, in milliseconds */
+		protected long totalTime;
+
+		public Entry(QueryPattern pattern, long count, long totalTime) {
+			this.pattern = pattern;
+			this.count = count;
+			this.totalTime = totalTime;
+		}
+
+		/** @return number of queries */
+		public synchronized long getCount() { return count; }
+
+		/** @return total time of the queries, in milliseconds */
+		public synchronized long getTotalTime() { return totalTime; }
+
+		protected synchronized void add(long count, long time) {
+			this.count += count;
+			this.totalTime += time;
+		}
+	}
+
+	/** Statistics of each pattern */
+	protected final Map<QueryPattern, Entry> entries = new ConcurrentHashMap<>();
+
+	/** Number of queries that were not recorded, because their pattern could not be extracted or the log is full */
+	protected volatile long ignored = 0L;
+
+	/**
+	 * Record a query.
+	 * 
+	 * @param pattern pattern of the query, null if it could not be extracted
+	 * @param time time of the query, in milliseconds
+	 */
+	public void record(QueryPattern pattern, long time) {
+		record(pattern, 1L, time);
+	}
+
+	protected void record(QueryPattern pattern, long count, long time) {
+		if(pattern == null || (entries.size() >= MAX_PATTERNS && !entries.containsKey(pattern))) {
+			synchronized(this) {
+				ignored += count;
+			}
+			return;
+		}
+		entries.computeIfAbsent(pattern, p -> new Entry(p, 0L, 0L)).add(count, time);
+	}
+
+	/** @return statistics of the patterns, the most time consuming first */
+	public List<Entry> getEntries() {
+		List<Entry> sorted = new ArrayList<>(entries.values());
+		sorted.sort(Comparator.comparingLong(Entry::getTotalTime).reversed());
+		return sorted;
+	}
+
+	/** @return true if no query was recorded */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/** Forget the recorded queries */
+	public synchronized void clear() {
+		entries.clear();
+		ignored = 0L;
+	}
+
+	/**
+	 * Save the log, one pattern per line: number of queries, total time,
+	 * hierarchy=level pairs and measures, separated by tabulations.
+	 * 
+	 * @param file destination file
+	 * @throws IOException
+	 */
+	public void save(Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try(BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			for(Entry entry : getEntries()) {
+				writer.write(entry.getCount() + "\t" + entry.getTotalTime() + "\t"
+						+ entry.pattern.getLevels().entrySet().stream().map(l -> l.getKey() + "=" + l.getValue()).collect(Collectors.joining("|")) + "\t"
+						+ String.join("|", entry.pattern.getMeasures()));
+				writer.newLine();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Load a log saved with {@link #save(Path)}, the malformed lines are ignored.
+	 * 
+	 * @param file saved log
+	 * @return loaded log, empty if the file does not exist
+	 * @throws IOException
+	 */
+	public static QueryLog load(Path file) throws IOException {
+		QueryLog log = new QueryLog();
+		if(!Files.isRegularFile(file)) {
+			return log;
+		}
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				try {
+					Map<String, String> levels = new TreeMap<>();
+					for(String level : split(fields[2])) {
+						int separator = level.lastIndexOf('=');
+						levels.put(level.substring(0, separator), level.substring(separator + 1));
+					}
+					QueryPattern pattern = new QueryPattern(levels, new TreeSet<>(split(fields[3])));
+					log.record(pattern, Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+				} catch(RuntimeException e) {
+					LOGGER.warning("Ignoring malformed line of query log " + file + ": " + line);
+				}
+			}
+		}
+		return log;
+	}
+
+	protected static List<String> split(String field) {
+		return field.isEmpty() ? Collections.emptyList() : Arrays.asList(field.split("\\|"));
+	}
+
+	/** @return statistics of the log */
+	public Map<String, Object> toMap() {
+		List<Entry> sorted = getEntries();
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("patterns", sorted.size());
+		map.put("queries", sorted.stream().mapToLong(Entry::getCount).sum());
+		map.put("ignored", ignored);
+		List<Map<String, Object>> top = new ArrayList<>();
+		for(Entry entry : sorted.subList(0, Math.min(10, sorted.size()))) {
+			Map<String, Object> pattern = new LinkedHashMap<>();
+			pattern.put("levels", entry.pattern.getLevels());
+			pattern.put("measures", entry.pattern.getMeasures());
+			pattern.put("count", entry.getCount());
+			pattern.put("totalTime", entry.getTotalTime());
+			top.add(pattern);
+		}
+		map.put("top", top);
+		return map;
+	}
+
+}
@@ -0,0 +1,131 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.quartetfs.biz.pivot.IActivePivotVersion;
+import com.quartetfs.biz.pivot.ILocation;
+import com.quartetfs.biz.pivot.cellset.ICellSet;
+import com.quartetfs.biz.pivot.cube.hierarchy.IHierarchy;
+import com.quartetfs.biz.pivot.cube.hierarchy.measures.IMeasureHierarchy;
+import com.quartetfs.biz.pivot.query.IGetAggregatesQuery;
+import com.quartetfs.biz.pivot.query.IQueryHandler;
+import com.quartetfs.biz.pivot.query.impl.GetAggregatesQuery;
+import com.quartetfs.biz.pivot.query.impl.GetAggregatesQueryHandler;
+import com.quartetfs.fwk.QuartetExtendedPluginValue;
+import com.quartetfs.fwk.query.QueryException;
+
+/**
+ * 
+ * Handler of the GetAggregates queries of the cube that records the levels
+ * and measures of each query in the query log, with its execution time.
+ * <p>
+ * The MDX queries, whether they come from the REST API, the websocket of
+ * ActiveUI or XMLA, are evaluated with GetAggregates queries on the cube,
+ * so the queries of all the paths are recorded, each retrieval of an MDX
+ * query with its own levels. The handler replaces the ActivePivot handler
+ * of the GetAggregates queries, and only records once a log is set with
+ * {@link #setLog(QueryLog, Map)}.
+ * 
+ * @author ActiveViam
+ *
+ */
+@QuartetExtendedPluginValue(intf = IQueryHandler.class, key = GetAggregatesQuery.PLUGIN_KEY)
+public class QueryLogHandler extends GetAggregatesQueryHandler {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(QueryLogHandler.class.getName());
+
+	/** Log of the query patterns, null when the queries are not recorded */
+	protected static volatile QueryLog log;
+
+	/** Levels of the hierarchies that can be materialized, by dimension and hierarchy */
+	protected static volatile Map<String, Map<String, List<String>>> dimensions;
+
+	/** Version of the cube the queries are executed on */
+	protected final IActivePivotVersion version;
+
+	public QueryLogHandler(IActivePivotVersion version) {
+		super(version);
+		this.version = version;
+	}
+
+	/**
+	 * Start recording the queries of the cubes.
+	 * 
+	 * @param queryLog log of the query patterns, null to stop recording
+	 * @param queryDimensions levels of the hierarchies that can be materialized, by dimension and hierarchy
+	 */
+	public static void setLog(QueryLog queryLog, Map<String, Map<String, List<String>>> queryDimensions) {
+		dimensions = queryDimensions;
+		log = queryLog;
+	}
+
+	@Override
+	public ICellSet execute(IGetAggregatesQuery query) throws QueryException {
+		long start = System.nanoTime();
+		ICellSet result = super.execute(query);
+		QueryLog queryLog = log;
+		if(queryLog != null) {
+			long time = (System.nanoTime() - start) / 1_000_000L;
+			try {
+				queryLog.record(toPattern(query), time);
+			} catch(RuntimeException e) {
+				LOGGER.log(Level.FINE, "Could not record the query " + query, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param query GetAggregates query
+	 * @return pattern of the query, null if it uses a hierarchy that cannot be materialized
+	 */
+	protected QueryPattern toPattern(IGetAggregatesQuery query) {
+		Map<String, Map<String, Integer>> depths = new TreeMap<>();
+		List<? extends IHierarchy> hierarchies = version.getHierarchies();
+		for(ILocation location : query.getLocations()) {
+			// The locations have no coordinate on the measures
+			int index = 0;
+			for(IHierarchy hierarchy : hierarchies) {
+				if(hierarchy instanceof IMeasureHierarchy) {
+					continue;
+				}
+				// Depth 1 is the all level of the hierarchies that are not slicing
+				int depth = location.getLevelDepth(index++) - (hierarchy.isSlicing() ? 1 : 2);
+				if(depth >= 0) {
+					String dimension = hierarchy.getHierarchyInfo().getDimensionInfo().getName();
+					depths.computeIfAbsent(dimension, d -> new TreeMap<>()).merge(hierarchy.getName(), depth, Math::max);
+				}
+			}
+		}
+		Set<String> measures = new TreeSet<>(query.getMeasureSelections());
+		return QueryPattern.fromDepths(depths, measures, dimensions);
+	}
+
+}
@@ -0,0 +1,185 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 
+ * Levels and measures a query is expressed on: the deepest level
+ * used in each hierarchy, and the measures. A partial aggregate
+ * provider can answer the query if it holds these measures and,
+ * in each of these hierarchies, a level at least as deep.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class QueryPattern {
+
+	/** Compound names of the MDX query, such as [Desk].[Desk].[AllMember].[Equity] or [Measures].[PnL.SUM] */
+	protected static final Pattern COMPOUND_NAME = Pattern.compile("&?\\[[^\\]]*\\](?:\\.&?\\[[^\\]]*\\])*");
+
+	/** Name of the dimension of the measures in MDX queries */
+	protected static final String MEASURES = "Measures";
+
+	/** Name of the all member in MDX queries */
+	protected static final String ALL_MEMBER = "AllMember";
+
+	/** Deepest level used in each hierarchy */
+	protected final Map<String, String> levels;
+
+	/** Measures of the query */
+	protected final Set<String> measures;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param levels deepest level used in each hierarchy
+	 * @param measures measures of the query
+	 */
+	public QueryPattern(Map<String, String> levels, Set<String> measures) {
+		this.levels = Collections.unmodifiableMap(new TreeMap<>(levels));
+		this.measures = Collections.unmodifiableSet(new TreeSet<>(measures));
+	}
+
+	/** @return deepest level used in each hierarchy */
+	public Map<String, String> getLevels() { return levels; }
+
+	/** @return measures of the query */
+	public Set<String> getMeasures() { return measures; }
+
+	/**
+	 * Extract the pattern of an MDX query. The hierarchies are designated
+	 * by their unique name, [dimension].[hierarchy], and a member by its path
+	 * below the all member or by its level.
+	 * 
+	 * @param mdx MDX query
+	 * @param dimensions levels of the hierarchies that can be materialized, by dimension
+	 * and hierarchy, from the top level down to the leaf level
+	 * @return pattern of the query, null if it uses a hierarchy that cannot be materialized
+	 */
+	public static QueryPattern fromMdx(String mdx, Map<String, Map<String, List<String>>> dimensions) {
+		Map<String, Map<String, Integer>> depths = new TreeMap<>();
+		Set<String> measures = new TreeSet<>();
+		Matcher matcher = COMPOUND_NAME.matcher(mdx);
+		while(matcher.find()) {
+			String[] parts = matcher.group().split("\\.(?=&?\\[)");
+			for(int p = 0; p < parts.length; p++) {
+				parts[p] = parts[p].substring(parts[p].indexOf('[') + 1, parts[p].length() - 1);
+			}
+			if(MEASURES.equalsIgnoreCase(parts[0])) {
+				if(parts.length > 1) {
+					measures.add(parts[1]);
+				}
+				continue;
+			}
+			if(parts.length < 2) {
+				continue;
+			}
+			List<String> hierarchyLevels = dimensions.getOrDefault(parts[0], Collections.emptyMap()).get(parts[1]);
+			int depth;
+			if(parts.length == 2) {
+				depth = 0;
+			} else if(hierarchyLevels != null && hierarchyLevels.contains(parts[2])) {
+				depth = hierarchyLevels.indexOf(parts[2]);
+			} else if(ALL_MEMBER.equals(parts[2])) {
+				depth = parts.length - 4;
+			} else {
+				depth = parts.length - 3;
+			}
+			if(depth >= 0) {
+				depths.computeIfAbsent(parts[0], d -> new TreeMap<>()).merge(parts[1], depth, Math::max);
+			}
+		}
+		return fromDepths(depths, measures, dimensions);
+	}
+
+	/**
+	 * Build the pattern of a query from the depth of the deepest level
+	 * it uses in each hierarchy.
+	 * 
+	 * @param depths depth of the deepest level used in each hierarchy, by dimension and hierarchy,
+	 * 0 for the top level below the all member
+	 * @param measures measures of the query
+	 * @param dimensions levels of the hierarchies that can be materialized, by dimension
+	 * and hierarchy, from the top level down to the leaf level
+	 * @return pattern of the query, null if it uses a hierarchy that cannot be materialized
+	 */
+	public static QueryPattern fromDepths(Map<String, Map<String, Integer>> depths, Set<String> measures,
+			Map<String, Map<String, List<String>>> dimensions) {
+		Map<String, String> levels = new TreeMap<>();
+		for(Map.Entry<String, Map<String, Integer>> dimension : depths.entrySet()) {
+			for(Map.Entry<String, Integer> depth : dimension.getValue().entrySet()) {
+				List<String> hierarchyLevels = dimensions.getOrDefault(dimension.getKey(), Collections.emptyMap()).get(depth.getKey());
+				if(hierarchyLevels == null) {
+					return null;
+				}
+				levels.put(depth.getKey(), hierarchyLevels.get(Math.min(depth.getValue(), hierarchyLevels.size() - 1)));
+			}
+		}
+		return new QueryPattern(levels, measures);
+	}
+
+	/**
+	 * @param other another pattern
+	 * @param hierarchies levels of each hierarchy, from the top level down to the leaf level
+	 * @return true if a provider with this pattern can answer the queries of the other pattern
+	 */
+	public boolean covers(QueryPattern other, Map<String, List<String>> hierarchies) {
+		if(!measures.containsAll(other.measures)) {
+			return false;
+		}
+		for(Map.Entry<String, String> level : other.levels.entrySet()) {
+			String covering = levels.get(level.getKey());
+			List<String> hierarchyLevels = hierarchies.get(level.getKey());
+			if(covering == null || hierarchyLevels == null || hierarchyLevels.indexOf(covering) < hierarchyLevels.indexOf(level.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof QueryPattern)) {
+			return false;
+		}
+		QueryPattern other = (QueryPattern) obj;
+		return levels.equals(other.levels) && measures.equals(other.measures);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(levels, measures);
+	}
+
+	@Override
+	public String toString() {
+		return levels + " " + measures;
+	}
+
+}
@@ -0,0 +1,301 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.av.csv.load.ICommitListener;
+import com.qfs.condition.ICondition;
+import com.qfs.condition.impl.BaseConditions;
+import com.qfs.jmx.JmxAttribute;
+
+/**
+ * 
+ * Background eviction of the records whose retention field holds an
+ * expired value, for instances that keep loading new data.
+ * <p>
+ * The distinct values of the field are read from the store once, then
+ * maintained from the committed transactions. Periodically the expired
+ * values are removed in one transaction. The records are removed one
+ * by one with a condition on the field, the datastore has no removal of
+ * whole partitions. When the store is partitioned on the retention field,
+ * the removal only visits the partitions of the expired values.
+ * The keys of the removed records can be passed to a consumer before
+ * the removal, so that the index of a differential writer forgets them.
+ * <p>
+ * The memory released is estimated from the number of removed records
+ * and the size of the fields of a record: the heap usage observed around
+ * the removal does not reflect it, chunks are released asynchronously
+ * and reclaimed by a later garbage collection.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class RetentionManager implements ICommitListener, Closeable {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(RetentionManager.class.getName());
+
+	/** Default interval between two evictions, in milliseconds */
+	public static final long DEFAULT_INTERVAL = 60_000L;
+
+	/** Store of the evicted records */
+	protected final DatastoreTupleWriter store;
+
+	/** Name of the retention field */
+	protected final String fieldName;
+
+	/** Index of the retention field in the tuples of the store */
+	protected final int fieldIndex;
+
+	/** Retention policy */
+	protected final RetentionPolicy policy;
+
+	/** Interval between two evictions, in milliseconds */
+	protected final long interval;
+
+	/** Distinct values of the retention field in the store */
+	protected final Set<Object> values = ConcurrentHashMap.newKeySet();
+
+	/** True once the values of the store were read */
+	protected volatile boolean initialized = false;
+
+	/** Scheduler of the evictions */
+	protected ScheduledExecutorService scheduler;
+
+	/** Values expired by the last eviction */
+	protected volatile List<Object> lastExpired = Collections.emptyList();
+
+	/** Number of evictions that removed records */
+	protected final AtomicLong evictionCount = new AtomicLong();
+
+	/** Number of records removed */
+	protected final AtomicLong removedRows = new AtomicLong();
+
+	/** Estimated size of the fields of a record, in bytes */
+	protected final int recordSize;
+
+	/** Estimated memory released by the evictions, in bytes */
+	protected final AtomicLong estimatedReclaimedMemory = new AtomicLong();
+
+	/** Key fields of the store, passed to the consumer of the evicted keys */
+	protected List<String> keyFields = Collections.emptyList();
+
+	/** Consumer of the keys of the evicted records, null when there is none */
+	protected Consumer<Object[]> evictedKeys;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param store store of the evicted records
+	 * @param fieldName name of the retention field
+	 * @param fieldIndex index of the retention field in the tuples of the store
+	 * @param policy retention policy
+	 * @param interval interval between two evictions, in milliseconds
+	 * @param recordSize estimated size of the fields of a record, in bytes, see {@link #estimateRecordSize(List)}
+	 */
+	public RetentionManager(DatastoreTupleWriter store, String fieldName, int fieldIndex, RetentionPolicy policy, long interval, int recordSize) {
+		this.store = store;
+		this.fieldName = fieldName;
+		this.fieldIndex = fieldIndex;
+		this.policy = policy;
+		this.interval = interval;
+		this.recordSize = recordSize;
+	}
+
+	/**
+	 * Estimate the size of a record in the chunks of the store. Numeric
+	 * fields are stored as primitives, the other fields are dictionary
+	 * encoded and store a code per record. The dictionary values are
+	 * not counted, they are shared with the records that remain.
+	 * 
+	 * @param types types of the fields of the store
+	 * @return estimated size of a record, in bytes
+	 */
+	public static int estimateRecordSize(List<String> types) {
+		int size = 0;
+		for(String type : types) {
+			switch(type.toLowerCase()) {
+			case "long":
+			case "double":
+				size += Long.BYTES;
+				break;
+			default:
+				size += Integer.BYTES;
+				break;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Pass the keys of the records to the consumer before they are evicted.
+	 * 
+	 * @param keyFields key fields of the store
+	 * @param evictedKeys consumer of the keys of the evicted records, called with the key field values
+	 */
+	public synchronized void setEvictedKeys(List<String> keyFields, Consumer<Object[]> evictedKeys) {
+		this.keyFields = keyFields;
+		this.evictedKeys = evictedKeys;
+	}
+
+	/** Start the periodic evictions */
+	public synchronized void start() {
+		LOGGER.info("Retention of the records on field '" + fieldName + "': " + policy + ", checked every " + interval + "ms");
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "autopivot-retention");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				evict();
+			} catch(Exception e) {
+				LOGGER.log(Level.WARNING, "Eviction of the expired records failed", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void committed(List<Object[]> tuples, long offset) {
+		for(Object[] tuple : tuples) {
+			Object value = tuple[fieldIndex];
+			if(value != null) {
+				values.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Remove the records of the expired values, in one transaction.
+	 * 
+	 * @return expired values
+	 */
+	public synchronized List<Object> evict() {
+		if(!initialized) {
+			store.scan(Collections.singletonList(fieldName), tuple -> {
+				if(tuple[0] != null) {
+					values.add(tuple[0]);
+				}
+			});
+			initialized = true;
+		}
+
+		List<Object> expired = policy.getExpired(new ArrayList<>(values));
+		if(expired.isEmpty()) {
+			return expired;
+		}
+
+		ICondition condition = BaseConditions.In(fieldName, expired.toArray());
+		long rows = store.count(condition, fieldName);
+		long start = System.currentTimeMillis();
+		if(evictedKeys != null && rows > 0L) {
+			forgetKeys(expired);
+		}
+		store.removeWhere(condition);
+		values.removeAll(expired);
+		long estimatedReclaimed = rows * recordSize;
+
+		lastExpired = expired;
+		evictionCount.incrementAndGet();
+		removedRows.addAndGet(rows);
+		estimatedReclaimedMemory.addAndGet(estimatedReclaimed);
+		LOGGER.info("Evicted " + rows + " records of " + expired.size() + " expired values of '" + fieldName + "' "
+				+ expired + " in " + (System.currentTimeMillis() - start) + "ms, about " + (estimatedReclaimed >> 20) + "MB to reclaim (estimated)");
+		return expired;
+	}
+
+	/**
+	 * Pass the keys of the records of the expired values to the consumer
+	 * of the evicted keys.
+	 * 
+	 * @param expired expired values
+	 */
+	protected void forgetKeys(List<Object> expired) {
+		List<String> fields = new ArrayList<>(keyFields);
+		int valueIndex = fields.indexOf(fieldName);
+		if(valueIndex < 0) {
+			valueIndex = fields.size();
+			fields.add(fieldName);
+		}
+		Set<Object> expiredValues = new HashSet<>(expired);
+		int index = valueIndex;
+		int keyCount = keyFields.size();
+		store.scan(fields, tuple -> {
+			if(expiredValues.contains(tuple[index])) {
+				evictedKeys.accept(tuple.length == keyCount ? tuple : Arrays.copyOf(tuple, keyCount));
+			}
+		});
+	}
+
+	@JmxAttribute(desc = "Retention policy")
+	public String getPolicy() { return policy.toString(); }
+
+	@JmxAttribute(desc = "Number of distinct values of the retention field in the store")
+	public int getRetainedValueCount() { return values.size(); }
+
+	@JmxAttribute(desc = "Values expired by the last eviction")
+	public String getLastExpired() { return lastExpired.toString(); }
+
+	@JmxAttribute(desc = "Number of evictions that removed records")
+	public long getEvictionCount() { return evictionCount.get(); }
+
+	@JmxAttribute(desc = "Number of records removed by the evictions")
+	public long getRemovedRows() { return removedRows.get(); }
+
+	@JmxAttribute(desc = "Estimated memory released by the evictions in bytes, from the number and size of the removed records")
+	public long getEstimatedReclaimedMemory() { return estimatedReclaimedMemory.get(); }
+
+	/** @return statistics of the evictions, for the monitoring endpoints */
+	public Map<String, Object> toMap() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("field", fieldName);
+		statistics.put("policy", getPolicy());
+		statistics.put("retainedValues", getRetainedValueCount());
+		statistics.put("lastExpired", getLastExpired());
+		statistics.put("evictions", getEvictionCount());
+		statistics.put("removedRows", getRemovedRows());
+		statistics.put("estimatedReclaimedBytes", getEstimatedReclaimedMemory());
+		return statistics;
+	}
+
+	@Override
+	public synchronized void close() {
+		if(scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 
+ * Retention of the values of a field, usually a date: only the most
+ * recent values are kept, the others are expired.
+ * <p>
+ * The policy keeps the last N distinct values, the values of the last
+ * N days before the most recent date, or both (the strictest wins).
+ * Days are counted from the most recent date of the data, not from
+ * the current date, so that historical data is not expired at once.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class RetentionPolicy {
+
+	/** Number of distinct values kept, 0 for no limit */
+	protected final int keepValues;
+
+	/** Number of days kept, 0 for no limit */
+	protected final int keepDays;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param keepValues number of distinct values kept, 0 for no limit
+	 * @param keepDays number of days kept, including the most recent date, 0 for no limit
+	 */
+	public RetentionPolicy(int keepValues, int keepDays) {
+		if(keepValues < 0 || keepDays < 0) {
+			throw new IllegalArgumentException("Retention limits cannot be negative.");
+		}
+		this.keepValues = keepValues;
+		this.keepDays = keepDays;
+	}
+
+	/** @return true if the policy never expires any value */
+	public boolean isUnlimited() {
+		return keepValues == 0 && keepDays == 0;
+	}
+
+	/**
+	 * @param values distinct values present in the store
+	 * @return expired values, in increasing order
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<Object> getExpired(Collection<?> values) {
+		List<Comparable> sorted = values.stream()
+				.filter(Objects::nonNull)
+				.map(Comparable.class::cast)
+				.sorted()
+				.collect(Collectors.toList());
+		if(sorted.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		int expired = 0;
+		if(keepValues > 0) {
+			expired = Math.max(0, sorted.size() - keepValues);
+		}
+		if(keepDays > 0) {
+			Object latest = sorted.get(sorted.size() - 1);
+			if(!(latest instanceof LocalDate)) {
+				throw new IllegalStateException("A retention in days requires a date field, found value " + latest);
+			}
+			LocalDate cutoff = ((LocalDate) latest).minusDays(keepDays - 1);
+			int beforeCutoff = 0;
+			while(beforeCutoff < sorted.size() && ((LocalDate) sorted.get(beforeCutoff)).isBefore(cutoff)) {
+				beforeCutoff++;
+			}
+			expired = Math.max(expired, beforeCutoff);
+		}
+		return new ArrayList<>(sorted.subList(0, expired));
+	}
+
+	@Override
+	public String toString() {
+		List<String> limits = new ArrayList<>();
+		if(keepValues > 0) {
+			limits.add("last " + keepValues + " values");
+		}
+		if(keepDays > 0) {
+			limits.add("last " + keepDays + " days");
+		}
+		return limits.isEmpty() ? "unlimited" : String.join(" and ", limits);
+	}
+
+}
@@ -0,0 +1,87 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.postprocessing;
+
+/**
+ * 
+ * Mean and standard deviation of a measure computed from its
+ * aggregated sum, sum of squares and count of contributors.
+ * The aggregates are read without boxing conversions for the
+ * types produced by the SUM and SQ_SUM aggregation functions.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class Moments {
+
+	private Moments() {}
+
+	/**
+	 * @param value aggregated value, a Double, Long, Integer or Float
+	 * @return value as a double
+	 */
+	public static double toDouble(Object value) {
+		if(value instanceof Double) {
+			return (Double) value;
+		} else if(value instanceof Long) {
+			return (Long) value;
+		} else {
+			return ((Number) value).doubleValue();
+		}
+	}
+
+	/**
+	 * @param value aggregated count, a Long or Integer
+	 * @return count as a long
+	 */
+	public static long toLong(Object value) {
+		if(value instanceof Long) {
+			return (Long) value;
+		} else {
+			return ((Number) value).longValue();
+		}
+	}
+
+	/**
+	 * @param sum sum of the values
+	 * @param count number of values
+	 * @return mean of the values
+	 */
+	public static double mean(double sum, long count) {
+		return sum / count;
+	}
+
+	/**
+	 * 
+	 * Population standard deviation, sqrt(E[x^2] - E[x]^2). Rounding
+	 * errors can make the variance of constant values slightly
+	 * negative, it is then zero.
+	 * 
+	 * @param squareSum sum of the squares of the values
+	 * @param sum sum of the values
+	 * @param count number of values
+	 * @return standard deviation of the values
+	 */
+	public static double standardDeviation(double squareSum, double sum, long count) {
+		double mean = sum / count;
+		double variance = squareSum / count - mean * mean;
+		return variance > 0.0 ? Math.sqrt(variance) : 0.0;
+	}
+
+}
@@ -0,0 +1,64 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.postprocessing;
+
+import com.quartetfs.biz.pivot.ILocation;
+import com.quartetfs.biz.pivot.postprocessing.IPostProcessor;
+import com.quartetfs.biz.pivot.postprocessing.IPostProcessorCreationContext;
+import com.quartetfs.biz.pivot.postprocessing.impl.ABasicPostProcessor;
+import com.quartetfs.fwk.QuartetExtendedPluginValue;
+
+/**
+ * 
+ * Standard deviation of a measure, from its sum of squares, its sum
+ * and the count of contributors, the three underlying measures in that order.
+ * 
+ * @author ActiveViam
+ *
+ */
+@QuartetExtendedPluginValue(intf = IPostProcessor.class, key = StandardDeviationPostProcessor.PLUGIN_KEY)
+public class StandardDeviationPostProcessor extends ABasicPostProcessor<Double> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Plugin key */
+	public static final String PLUGIN_KEY = "AUTOPIVOT_STD";
+
+	public StandardDeviationPostProcessor(String name, IPostProcessorCreationContext creationContext) {
+		super(name, creationContext);
+	}
+
+	@Override
+	public Double evaluate(ILocation location, Object[] underlyingMeasures) {
+		Object squareSum = underlyingMeasures[0];
+		Object sum = underlyingMeasures[1];
+		Object count = underlyingMeasures[2];
+		if(squareSum == null || sum == null || count == null) {
+			return null;
+		}
+		long n = Moments.toLong(count);
+		return n == 0L ? null : Moments.standardDeviation(Moments.toDouble(squareSum), Moments.toDouble(sum), n);
+	}
+
+	@Override
+	public String getType() {
+		return PLUGIN_KEY;
+	}
+
+}
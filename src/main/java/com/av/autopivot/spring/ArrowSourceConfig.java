@@ -0,0 +1,170 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.av.arrow.ArrowDiscovery;
+import com.av.arrow.ArrowLoader;
+import com.av.autopivot.AutoPivotGenerator;
+import com.av.autopivot.DatastoreTupleWriter;
+import com.av.csv.CSVFormat;
+import com.av.csv.load.CSVLoader;
+import com.av.csv.load.CSVRowParser;
+import com.av.csv.load.LoadProgress;
+import com.qfs.server.cfg.IDatastoreConfig;
+
+/**
+ *
+ * Source loading Arrow IPC files, used instead of the
+ * CSV source when the input file is an Arrow file.
+ * <p>
+ * The format of the file comes from its schema and the record
+ * batches are loaded in parallel, without any text parsing.
+ * <p>
+ * Snapshots are supported. The settings that apply to the lines of
+ * a text file are not: a filter is rejected at startup, following,
+ * checkpoints and sampling are ignored with a warning. Rows with the
+ * same key fields replace each other, but cannot be reloaded
+ * differentially.
+ *
+ * @author ActiveViam
+ *
+ */
+@Configuration
+public class ArrowSourceConfig {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(ArrowSourceConfig.class.getName());
+
+	/** Spring environment, automatically wired */
+	@Autowired
+	protected Environment env;
+
+	/** Format of the input file */
+	@Autowired
+	protected CSVFormat discovery;
+
+	/** Application datastore, automatically wired */
+	@Autowired
+	protected IDatastoreConfig datastoreConfig;
+
+	/** AutoPivot Generator */
+	@Autowired
+	protected AutoPivotGenerator generator;
+
+	/** CSV Source configuration, provides the executors and the loading progress */
+	@Autowired
+	protected CSVSourceConfig sourceConfig;
+
+	/** @return true if the input file is an Arrow IPC file */
+	public boolean isArrowInput() {
+		return ArrowDiscovery.isArrowFile(env.getRequiredProperty(CSVSourceConfig.FILENAME_PROPERTY));
+	}
+
+	/**
+	 * Check the source settings against what the Arrow loading supports,
+	 * before the loading starts.
+	 * 
+	 * @throws IllegalArgumentException if a setting would change the loaded data
+	 */
+	public void checkSettings() {
+		if(sourceConfig.isFiltering()) {
+			throw new IllegalArgumentException("The " + CSVSourceConfig.FILTER_PROPERTY + " property is not supported for Arrow input files, remove it to load the whole file.");
+		}
+		List<String> ignored = new ArrayList<>();
+		for(String property : new String[] { CSVSourceConfig.FOLLOW_PROPERTY, CSVSourceConfig.CHECKPOINT_PROPERTY, CSVSourceConfig.SAMPLE_PROPERTY }) {
+			if(env.containsProperty(property)) {
+				ignored.add(property);
+			}
+		}
+		if(!ignored.isEmpty()) {
+			LOGGER.warning("The properties " + ignored + " are not supported for Arrow input files, they are ignored.");
+		}
+		if(sourceConfig.isDifferential()) {
+			LOGGER.warning("Rows with the same " + AutoPivotGenerator.KEY_FIELDS_PROPERTY
+					+ " replace each other, but differential reloads are not supported for Arrow input files.");
+		}
+	}
+
+	/**
+	 * Load the Arrow file in the background, on the dedicated loading executor.
+	 * 
+	 * @return future completed at the end of the loading
+	 */
+	public Future<?> loadDataAsync() {
+		LOGGER.info("Starting AutoPivot background loading.");
+		return sourceConfig.loadingExecutor().submit(() -> {
+			try {
+				loadData();
+			} catch(Exception e) {
+				LOGGER.log(Level.SEVERE, "AutoPivot background loading failed", e);
+			}
+		});
+	}
+
+	/**
+	 * Load the Arrow file, or restore its snapshot when snapshots are enabled.
+	 *
+	 * To be called once when the application is initialized.
+	 */
+	public void loadData() throws Exception {
+		Path path = Paths.get(env.getRequiredProperty(CSVSourceConfig.FILENAME_PROPERTY));
+		LoadProgress progress = sourceConfig.loadProgress();
+		progress.start(Files.size(path));
+		try {
+			long offset = sourceConfig.restoreSnapshot();
+			if(offset >= 0L) {
+				progress.setBytesRead(offset);
+				progress.complete();
+				LOGGER.info("AutoPivot initial loading complete, restored from the snapshot of " + path);
+				return;
+			}
+
+			CSVRowParser parser = new CSVRowParser(discovery, generator.getRowFieldNames(discovery));
+			DatastoreTupleWriter writer = new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE);
+			ArrowLoader loader = new ArrowLoader(parser, writer, sourceConfig.parserExecutor(), sourceConfig.getParserThreads());
+			loader.setProgress(progress);
+			loader.setCommitSize(env.getProperty(CSVSourceConfig.COMMIT_SIZE_PROPERTY, Integer.class, CSVLoader.DEFAULT_COMMIT_SIZE));
+			loader.setRollup(generator.createRollup(discovery, env));
+			loader.setClustering(sourceConfig.createClustering());
+
+			long rows = loader.load(path);
+			progress.setBytesRead(progress.getTotalBytes());
+			sourceConfig.writeSnapshot(progress.getTotalBytes());
+			progress.complete();
+			LOGGER.info("AutoPivot initial loading complete, " + rows + " rows loaded from " + path);
+		} catch(Exception e) {
+			progress.fail(e);
+			throw e;
+		}
+	}
+
+}
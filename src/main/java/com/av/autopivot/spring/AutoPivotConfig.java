@@ -118,6 +118,10 @@ public class AutoPivotConfig implements ApplicationRunner {
 	@Autowired
 	protected CSVSourceConfig sourceConfig;
 
+	/** Arrow Source configuration */
+	@Autowired
+	protected ArrowSourceConfig arrowSourceConfig;
+
 
 	/**
 	 * Enable JMX Monitoring for the Database
@@ -168,7 +172,20 @@ public class AutoPivotConfig implements ApplicationRunner {
 		activePivotManager.start();
 
 		/* Start the CSV Source and load data */
-		sourceConfig.loadData();
+		if(arrowSourceConfig.isArrowInput()) {
+			// Columnar input, loaded without text parsing
+			arrowSourceConfig.checkSettings();
+			if(sourceConfig.isAsynchronous()) {
+				arrowSourceConfig.loadDataAsync();
+			} else {
+				arrowSourceConfig.loadData();
+			}
+		} else if(sourceConfig.isAsynchronous()) {
+			// Queries are served while the data is committed in the background
+			sourceConfig.loadDataAsync();
+		} else {
+			sourceConfig.loadData();
+		}
 	}
 
 }
\ No newline at end of file
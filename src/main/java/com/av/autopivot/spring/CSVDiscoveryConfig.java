@@ -19,14 +19,27 @@
 package com.av.autopivot.spring;
 
 import com.activeviam.fwk.ActiveViamRuntimeException;
+import com.av.arrow.ArrowDiscovery;
 import com.av.autopivot.AutoPivotGenerator;
 import com.av.csv.CSVFormat;
+import com.av.csv.ColumnSelector;
+import com.av.csv.compress.Compression;
+import com.av.csv.discover.CSVDiscovery;
+import com.av.csv.load.SampleInputStream;
+import com.av.csv.load.StreamInput;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
 import java.util.logging.Logger;
 
 
@@ -47,6 +60,18 @@ public class CSVDiscoveryConfig {
 	/** Property to identify the name of the file to load */
 	public static final String FILENAME_PROPERTY = "fileName";
 
+	/** Property listing the columns to load (comma separated, wildcards * and ? allowed) */
+	public static final String INCLUDE_COLUMNS_PROPERTY = "columns.include";
+
+	/** Property listing the columns to ignore (comma separated, wildcards * and ? allowed) */
+	public static final String EXCLUDE_COLUMNS_PROPERTY = "columns.exclude";
+
+	/** Property to set the number of bytes sampled over the whole file to collect the column statistics, 0 to disable */
+	public static final String STATISTICS_SAMPLE_SIZE_PROPERTY = "discovery.statistics.sampleSize";
+
+	/** Default number of bytes sampled to collect the column statistics */
+	public static final long DEFAULT_STATISTICS_SAMPLE_SIZE = 16L << 20;
+
 	/** Spring environment, automatically wired */
 	@Autowired
 	protected Environment env;
@@ -67,18 +92,107 @@ public class CSVDiscoveryConfig {
 		return Charset.defaultCharset();
 	}
 
+	/** @return input of the standard input or of a named pipe, buffered for the discovery */
+	@Bean
+	public StreamInput streamInput() {
+		return new StreamInput(env.getRequiredProperty(FILENAME_PROPERTY));
+	}
+
 	/** Discover the input data file (CSV separator, column types) */
 	@Bean
 	public CSVFormat discoverFile() {
 		String fileName = env.getRequiredProperty("fileName");
 		try {
-			CSVFormat discovery = new com.av.csv.discover.CSVDiscovery().discoverFile(fileName, charset());
-			return discovery;
+			ColumnSelector columnSelector = ColumnSelector.parse(
+					env.getProperty(INCLUDE_COLUMNS_PROPERTY),
+					env.getProperty(EXCLUDE_COLUMNS_PROPERTY));
+			if(ArrowDiscovery.isArrowFile(fileName)) {
+				// The format of an Arrow file is read from its schema
+				ArrowDiscovery discovery = new ArrowDiscovery();
+				discovery.setColumnSelector(columnSelector);
+				return discovery.discoverFile(fileName);
+			}
+			CSVDiscovery discovery = new CSVDiscovery();
+			discovery.setColumnSelector(columnSelector);
+			if(streamInput().isStream()) {
+				// A stream is read once, the discovery uses its buffered beginning
+				return discovery.discover(streamInput().getPrefix(), fileName, charset());
+			}
+			return collectStatistics(discovery, discovery.discoverFile(fileName, charset()), fileName);
 		} catch(Exception e) {
 			throw new ActiveViamRuntimeException("Could not discover csv file: " + fileName , e);
 		}
 	}
 
+	/**
+	 * The discovery only reads the first lines of the file, that are often
+	 * sorted or all from the same date. The column statistics are collected
+	 * again from a random sample spread over the whole file, and the number
+	 * of rows of the file is estimated from the size of the sampled rows.
+	 * 
+	 * @param discovery CSV discovery
+	 * @param format discovered format, with the statistics of the first lines
+	 * @param fileName input file
+	 * @return format with the statistics of the random sample
+	 * @throws IOException
+	 */
+	protected CSVFormat collectStatistics(CSVDiscovery discovery, CSVFormat format, String fileName) throws IOException {
+		long sampleSize = env.getProperty(STATISTICS_SAMPLE_SIZE_PROPERTY, Long.class, DEFAULT_STATISTICS_SAMPLE_SIZE);
+		Path path = Paths.get(fileName);
+		if(!Files.isRegularFile(path)) {
+			return format;
+		}
+		try(InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+			if(Compression.detect(is) != Compression.NONE) {
+				return format;
+			}
+		}
+		long fileSize = Files.size(path);
+		if(sampleSize <= 0L) {
+			return format.withEstimatedRowCount(estimateRowCount(path));
+		}
+		long start = System.currentTimeMillis();
+		double fraction = Math.min(1.0, (double) sampleSize / Math.max(1L, fileSize));
+		SampleInputStream sample = new SampleInputStream(path, fraction, new Random(0L));
+		CSVFormat sampled = discovery.collectStatistics(sample, charset(), format);
+		long sampledRows = sampled.getDependencies().getRowCount();
+		long rowCount = sampledRows == 0L ? -1L
+				: Math.round((double) fileSize * sampledRows / Math.max(1L, Math.min(fileSize, sample.getSampleSize())));
+		LOGGER.info("Collected column statistics from " + sampledRows + " sampled rows in "
+				+ (System.currentTimeMillis() - start) + "ms, about " + rowCount + " rows in the file");
+		return sampled.withEstimatedRowCount(rowCount);
+	}
+
+	/**
+	 * Estimate the number of rows of an uncompressed file
+	 * from the size of the rows at its beginning.
+	 * 
+	 * @param path input file
+	 * @return estimated number of rows, -1 when unknown
+	 * @throws IOException
+	 */
+	protected long estimateRowCount(Path path) throws IOException {
+		byte[] head = new byte[1 << 20];
+		int length = 0;
+		try(InputStream is = Files.newInputStream(path)) {
+			int read;
+			while(length < head.length && (read = is.read(head, length, head.length - length)) > 0) {
+				length += read;
+			}
+		}
+		long lines = 0L;
+		for(int b = 0; b < length; b++) {
+			if(head[b] == '\n') {
+				lines++;
+			}
+		}
+		if(lines == 0L) {
+			return -1L;
+		}
+		// The header is not a row
+		return Math.max(0L, Math.round((double) Files.size(path) * lines / length) - 1L);
+	}
+
 	/**
 	 *
 	 * Generator of store and cube descriptions.
@@ -18,11 +18,34 @@
  */
 package com.av.autopivot.spring;
 
+import com.av.arrow.ArrowDiscovery;
 import com.av.autopivot.AutoPivotGenerator;
+import com.av.autopivot.DatastoreTupleWriter;
+import com.av.autopivot.RetentionManager;
 import com.av.csv.CSVFormat;
 import com.av.csv.calculator.DateDayCalculator;
 import com.av.csv.calculator.DateMonthCalculator;
 import com.av.csv.calculator.DateYearCalculator;
+import com.av.csv.compress.Compression;
+import com.av.csv.discover.CSVDiscovery;
+import com.av.csv.load.CSVFileFollower;
+import com.av.csv.load.CSVLoader;
+import com.av.csv.load.CSVRowParser;
+import com.av.csv.load.DifferentialTupleWriter;
+import com.av.csv.load.ITupleWriter;
+import com.av.csv.load.LoadCheckpoint;
+import com.av.csv.load.LoadProgress;
+import com.av.csv.load.RejectCollector;
+import com.av.csv.load.RejectCollector.RejectLimitExceededException;
+import com.av.csv.load.RowFilter;
+import com.av.csv.load.SampleInputStream;
+import com.av.csv.load.StreamInput;
+import com.av.csv.load.TupleComparator;
+import com.av.csv.snapshot.SnapshotReader;
+import com.av.csv.snapshot.SnapshotWriter;
+import com.qfs.condition.ICondition;
+import com.qfs.condition.impl.BaseConditions;
+import com.qfs.desc.IFieldDescription;
 import com.qfs.msg.IColumnCalculator;
 import com.qfs.msg.csv.ICSVSource;
 import com.qfs.msg.csv.ICSVSourceConfiguration;
@@ -42,12 +65,29 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.core.env.Environment;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static com.av.csv.discover.CSVDiscovery.isDate;
 import static com.qfs.msg.csv.impl.CSVSourceConfiguration.CSVSourceConfigurationBuilder;
@@ -71,6 +111,60 @@ public class CSVSourceConfig {
 	/** Property to identify the name of the file to load */
 	public static final String FILENAME_PROPERTY = "fileName";
 
+	/** Property to load the file in the background, with periodic commits */
+	public static final String ASYNC_PROPERTY = "source.async";
+
+	/** Property to set the number of rows committed in one transaction by the streaming loader */
+	public static final String COMMIT_SIZE_PROPERTY = "source.commitSize";
+
+	/** Property to set the maximum delay between two commits of the streaming loader, in milliseconds */
+	public static final String COMMIT_INTERVAL_PROPERTY = "source.commitInterval";
+
+	/** Property to keep loading the lines appended to the file after the initial loading */
+	public static final String FOLLOW_PROPERTY = "source.follow";
+
+	/** Property to set the polling interval of the followed file, in milliseconds */
+	public static final String FOLLOW_POLL_INTERVAL_PROPERTY = "source.follow.pollInterval";
+
+	/**
+	 * Property to checkpoint the commits of the streaming loader, so that a failed loading is retried from its last commit.
+	 * With snapshots enabled, a loading stopped by a restart resumes from its last commit.
+	 */
+	public static final String CHECKPOINT_PROPERTY = "source.checkpoint";
+
+	/** Property to set how many times a failed loading resumes from its last checkpoint */
+	public static final String RETRIES_PROPERTY = "source.retries";
+
+	/** Default number of times a failed loading resumes from its last checkpoint */
+	public static final int DEFAULT_RETRIES = 3;
+
+	/** Property to only load the rows matching a filter expression, see {@link RowFilter} */
+	public static final String FILTER_PROPERTY = "source.filter";
+
+	/** Property to set the directory where the binary snapshot of the loaded data is written */
+	public static final String SNAPSHOT_DIR_PROPERTY = "source.snapshot.dir";
+
+	/** Property to set the file where the rejected lines are written */
+	public static final String REJECTS_FILE_PROPERTY = "source.rejects.file";
+
+	/** Property to set the maximum number of rejected lines before the loading is aborted */
+	public static final String MAX_REJECTS_PROPERTY = "source.rejects.max";
+
+	/** Property to first load a random sample of the file, the fraction of the file to sample */
+	public static final String SAMPLE_PROPERTY = "source.sample";
+
+	/** Property to replace the sample with the whole file, loaded in the background */
+	public static final String SAMPLE_FULL_LOAD_PROPERTY = "source.sample.fullLoad";
+
+	/** Property to sort the rows of each transaction by partition and levels before they are committed */
+	public static final String CLUSTER_PROPERTY = "source.cluster";
+
+	/** Property to set the maximum number of level fields the rows are sorted on, after the partitioning field */
+	public static final String CLUSTER_FIELDS_PROPERTY = "source.cluster.maxFields";
+
+	/** Default maximum number of level fields the rows are sorted on */
+	public static final int DEFAULT_CLUSTER_FIELDS = 3;
+
 
 	/** Spring environment, automatically wired */
 	@Autowired
@@ -92,12 +186,41 @@ public class CSVSourceConfig {
 	@Autowired
 	protected IDatastoreConfig datastoreConfig;
 
+	/** AutoPivot Generator */
+	@Autowired
+	protected AutoPivotGenerator generator;
+
+	/** Standard input or named pipe input */
+	@Autowired
+	protected StreamInput streamInput;
+
+	/** Retention of the base store, when a retention field is configured */
+	@Autowired(required = false)
+	protected RetentionManager retention;
+
+	/** Writer of the differential reloads, created with the first loader when the store has keys */
+	protected DifferentialTupleWriter differentialWriter;
+
+	/** Checkpoint of the streaming loading, when checkpoints are enabled */
+	protected LoadCheckpoint checkpoint;
+
+	/** Journal of the commits of the streaming loading, while it is written */
+	protected SnapshotWriter journal;
+
+	/** Compression of the input file, detected on first use */
+	protected Compression compression;
+
+	/** @return number of threads allocated to CSV parsing */
+	public int getParserThreads() {
+		// Allocate half the the machine cores to CSV parsing
+		return Math.min(8, Math.max(1, IPlatform.CURRENT_PLATFORM.getProcessorCount() / 2));
+	}
+
 	/** Create and configure the CSV engine */
 	@Bean
 	public ICSVSource<Path> CSVSource() throws IOException {
 		
-		// Allocate half the the machine cores to CSV parsing
-		Integer parserThreads = Math.min(8, Math.max(1, IPlatform.CURRENT_PLATFORM.getProcessorCount() / 2));
+		Integer parserThreads = getParserThreads();
 		LOGGER.info("Allocating " + parserThreads + " parser threads.");
 		
 		CSVSource<Path> source = new CSVSource<Path>();
@@ -113,6 +236,193 @@ public class CSVSourceConfig {
 	}
 
 
+	/** @return progress of the loading of the input file */
+	@Bean
+	public LoadProgress loadProgress() {
+		return new LoadProgress(env.getRequiredProperty(FILENAME_PROPERTY));
+	}
+
+	/** @return dedicated executor running the background loading */
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService loadingExecutor() {
+		return Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "autopivot-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return collector of the lines rejected by the streaming loader
+	 * @throws IOException if the file of the rejected lines cannot be created
+	 */
+	@Bean(destroyMethod = "close")
+	public RejectCollector rejectCollector() throws IOException {
+		String file = env.getProperty(REJECTS_FILE_PROPERTY);
+		long maxRejects = env.getProperty(MAX_REJECTS_PROPERTY, Long.class, -1L);
+		return new RejectCollector(file == null ? null : Paths.get(file), maxRejects);
+	}
+
+	/** @return executor running the parsing tasks of the streaming loader */
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService parserExecutor() {
+		return Executors.newFixedThreadPool(getParserThreads(), r -> {
+			Thread thread = new Thread(r, "autopivot-parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** @return true if the file is loaded in the background */
+	public boolean isAsynchronous() {
+		return env.getProperty(ASYNC_PROPERTY, Boolean.class, false);
+	}
+
+	/** @return true if the lines appended to the file are loaded after the initial loading */
+	public boolean isFollowing() {
+		return env.getProperty(FOLLOW_PROPERTY, Boolean.class, false);
+	}
+
+	/**
+	 * The ActivePivot CSV source loads the whole file in one transaction,
+	 * the streaming loader commits periodically and is used when the
+	 * data must be available before the end of the loading.
+	 * 
+	 * @return true if the file is loaded with the streaming loader
+	 */
+	public boolean isStreamingLoad() {
+		return isAsynchronous() || isFollowing() || isDifferential() || isCheckpointing()
+				|| isFiltering() || isCompressed() || streamInput.isStream() || generator.isRollup(env) || isClustering();
+	}
+
+	/**
+	 * The ActivePivot CSV source reads plain text files,
+	 * compressed files are decompressed by the streaming loader.
+	 * 
+	 * @return true if the input file is compressed
+	 */
+	public synchronized boolean isCompressed() {
+		if(compression == null && streamInput.isStream()) {
+			// Compressed streams are decompressed before being piped, with zcat for instance
+			compression = Compression.NONE;
+		} else if(compression == null) {
+			String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+			Path path = Paths.get(fileName);
+			try(InputStream is = new BufferedInputStream(Files.isRegularFile(path)
+					? Files.newInputStream(path)
+					: new CSVDiscovery().openRawFile(fileName))) {
+				compression = Compression.detect(is);
+			} catch(IOException e) {
+				throw new UncheckedIOException("Cannot read " + fileName, e);
+			}
+			if(compression != Compression.NONE) {
+				LOGGER.info(fileName + " is compressed with " + compression + ", it is decompressed while it is loaded.");
+			}
+		}
+		return compression != Compression.NONE;
+	}
+
+	/**
+	 * @param path input file
+	 * @return number of bytes to load, -1 if unknown
+	 * @throws IOException
+	 */
+	protected long getInputSize(Path path) throws IOException {
+		// The decompressed size of a compressed file is not known in advance
+		return Files.isRegularFile(path) && !isCompressed() ? Files.size(path) : -1L;
+	}
+
+	/** @return true if the rows of each transaction are sorted before they are committed */
+	public boolean isClustering() {
+		return env.getProperty(CLUSTER_PROPERTY, Boolean.class, false);
+	}
+
+	/**
+	 * @return order of the rows of a transaction, in the fields of the base store,
+	 * null if the rows are committed in the order of the input
+	 */
+	public TupleComparator createClustering() {
+		if(!isClustering()) {
+			return null;
+		}
+		int maxFields = env.getProperty(CLUSTER_FIELDS_PROPERTY, Integer.class, DEFAULT_CLUSTER_FIELDS);
+		List<String> fields = generator.getStoreFieldNames(discovery, env);
+		List<String> clusteringFields = new ArrayList<>();
+		for(String field : generator.getClusteringFields(discovery, env, maxFields)) {
+			// With rollup, the numeric fields are aggregated and are not store fields
+			if(fields.contains(field)) {
+				clusteringFields.add(field);
+			} else {
+				LOGGER.warning("Rows cannot be sorted on '" + field + "', it is not a field of the store. It is ignored.");
+			}
+		}
+		if(clusteringFields.isEmpty()) {
+			return null;
+		}
+		LOGGER.info("Rows are sorted on " + clusteringFields + " before they are committed.");
+		return new TupleComparator(clusteringFields.stream().mapToInt(fields::indexOf).toArray());
+	}
+
+	/** @return true if only the rows matching a filter are loaded */
+	public boolean isFiltering() {
+		return env.containsProperty(FILTER_PROPERTY);
+	}
+
+	/** @return true if the commits of the streaming loader are checkpointed */
+	public boolean isCheckpointing() {
+		// A stream cannot be read again from a checkpoint
+		return env.getProperty(CHECKPOINT_PROPERTY, Boolean.class, false) && !streamInput.isStream();
+	}
+
+	/**
+	 * The sample is read with positioned reads, the input must be
+	 * an uncompressed file of the file system.
+	 * 
+	 * @return true if a random sample of the file is loaded first
+	 */
+	public boolean isSampling() {
+		if(!env.containsProperty(SAMPLE_PROPERTY)) {
+			return false;
+		}
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		if(streamInput.isStream() || !Files.isRegularFile(Paths.get(fileName)) || isCompressed()) {
+			LOGGER.warning("Cannot sample " + fileName + ", it is not an uncompressed file of the file system. The whole file is loaded.");
+			return false;
+		}
+		if(isFollowing() || isDifferential()) {
+			LOGGER.warning("Sampling cannot be combined with following or differential reloads. The whole file is loaded.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Differential reloads need the hash of the rows of the initial loading,
+	 * computed by the streaming loader.
+	 * 
+	 * @return true if the base store has key fields, which allows differential reloads
+	 */
+	public boolean isDifferential() {
+		return !generator.getKeyFields(discovery, env).isEmpty();
+	}
+
+	/**
+	 * Load the CSV file in the background, on the dedicated loading executor.
+	 * The data becomes available for queries as it is committed.
+	 * 
+	 * @return future completed at the end of the loading
+	 */
+	public Future<?> loadDataAsync() {
+		LOGGER.info("Starting AutoPivot background loading.");
+		return loadingExecutor().submit(() -> {
+			try {
+				loadData();
+			} catch(Exception e) {
+				LOGGER.log(Level.SEVERE, "AutoPivot background loading failed", e);
+			}
+		});
+	}
+
 	/**
 	 * Load the CSV file.
 	 *
@@ -121,17 +431,127 @@ public class CSVSourceConfig {
 	 */
 	public void loadData() throws Exception {
 
+		LoadProgress progress = loadProgress();
+		Path path = Paths.get(env.getRequiredProperty(FILENAME_PROPERTY));
+		progress.start(getInputSize(path));
+		rejectCollector().reset();
+		boolean replaceSample = false;
+		try {
+			long offset = restoreSnapshot();
+			if(offset >= 0L) {
+				progress.setBytesRead(offset);
+			} else if(isSampling()) {
+				sampleData();
+				replaceSample = env.getProperty(SAMPLE_FULL_LOAD_PROPERTY, Boolean.class, false);
+			} else if(isStreamingLoad()) {
+				offset = streamData();
+				writeSnapshot(offset);
+				// The snapshot replaces the journal of the loading
+				deleteJournal();
+			} else {
+				fetchData();
+				progress.setBytesRead(progress.getTotalBytes());
+				writeSnapshot(progress.getTotalBytes());
+			}
+			if(isFollowing()) {
+				follow(path, offset);
+			}
+			progress.complete();
+		} catch(Exception e) {
+			progress.fail(e);
+			throw e;
+		}
+
+		// The sample is complete before the full loading restarts the progress
+		if(replaceSample) {
+			replaceSampleAsync();
+		}
+		LOGGER.info("AutoPivot initial loading complete.");
+	}
+
+	/**
+	 * Load a uniform random sample of the CSV file with the streaming loader.
+	 * The progress flags the loaded data as a sample.
+	 */
+	protected void sampleData() throws Exception {
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		double fraction = env.getRequiredProperty(SAMPLE_PROPERTY, Double.class);
+		LoadProgress progress = loadProgress();
+		progress.setSampleFraction(fraction);
+		try(SampleInputStream is = new SampleInputStream(Paths.get(fileName), fraction, new Random())) {
+			LOGGER.info("Loading a sample of " + (100.0 * fraction) + "% of " + fileName);
+			progress.setTotalBytes(is.getSampleSize());
+			createLoader(createTupleWriter()).load(is, 0L, false, false);
+		}
+		progress.setBytesRead(progress.getTotalBytes());
+		LOGGER.info("Loaded a sample of " + progress.getRowsCommitted() + " rows of " + fileName);
+	}
+
+	/**
+	 * Load the whole CSV file in the background, and replace the sample
+	 * when the loading is complete.
+	 * 
+	 * @return future completed when the sample is replaced
+	 */
+	public Future<?> replaceSampleAsync() {
+		return loadingExecutor().submit(() -> {
+			try {
+				replaceSample();
+			} catch(Exception e) {
+				LOGGER.log(Level.SEVERE, "AutoPivot full loading failed, the sample is kept", e);
+			}
+		});
+	}
+
+	/**
+	 * Load the whole CSV file in one transaction that also removes the sample:
+	 * queries see the sample until the whole file is loaded, then the whole file.
+	 */
+	public synchronized void replaceSample() throws Exception {
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		LOGGER.info("Loading the whole file " + fileName + " to replace the sample");
+		LoadProgress progress = loadProgress();
+		progress.start(getInputSize(Paths.get(fileName)));
+		rejectCollector().reset();
+		try {
+			long[] offset = { 0L };
+			new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE).replaceAll(writer -> {
+				try(InputStream is = openInput(fileName, 0L)) {
+					offset[0] = createLoader(writer).load(is, 0L, true, false);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			progress.setSampleFraction(0.0);
+			writeSnapshot(offset[0]);
+			progress.complete();
+			LOGGER.info("The sample was replaced by the " + progress.getRowsCommitted() + " rows of " + fileName);
+		} catch(Exception e) {
+			progress.fail(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Load the CSV file with the ActivePivot CSV source, in one transaction.
+	 */
+	protected void fetchData() throws Exception {
+
 		ICSVSource<Path> source = context.getBean(ICSVSource.class);
 
-		// Create parser configuration
+		// Create parser configuration, only the selected columns are mapped to fields
+		Map<Integer, String> columns = new LinkedHashMap<>();
+		for(int c = 0; c < discovery.getColumnCount(); c++) {
+			columns.put(discovery.getSourceColumnIndex(c), discovery.getColumnName(c));
+		}
 		CSVParserConfiguration configuration = new CSVParserConfiguration(
 				charset,
 				discovery.getSeparator().charAt(0),
-				discovery.getColumnCount(),
+				discovery.getSourceColumnCount(),
 				true,
 				true,
 				1,
-				CSVParserConfiguration.toMap(discovery.getColumnNames()));
+				columns);
 		configuration.setProcessQuotes(discovery.getQuoteProcessing());
 		
 		String fileName = env.getRequiredProperty("fileName");
@@ -160,8 +580,553 @@ public class CSVSourceConfig {
 		
 		Fetch<IFileInfo<Path>, ILineReader> fetch = new Fetch<IFileInfo<Path>, ILineReader>(channelFactory);
 		fetch.fetch(source);
-		
-		LOGGER.info("AutoPivot initial loading complete.");
+	}
+
+	/**
+	 * Load the CSV file with the streaming loader, committing periodically.
+	 * 
+	 * @return offset in the file after the last committed line
+	 */
+	protected long streamData() throws Exception {
+
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		CSVLoader loader = createLoader();
+
+		// Commits are checkpointed, a failed loading resumes from the last checkpoint
+		checkpoint = createCheckpoint();
+		int retries = 0;
+		long offset = 0L;
+		if(checkpoint != null) {
+			loader.addCommitListener(checkpoint);
+			retries = env.getProperty(RETRIES_PROPERTY, Integer.class, DEFAULT_RETRIES);
+			if(isJournaling()) {
+				offset = resumeJournal(checkpoint);
+			}
+		}
+
+		try {
+			for(int attempt = 0; ; attempt++) {
+				// A followed file may end with a line that is still being written
+				try(InputStream is = openInput(fileName, offset)) {
+					offset = loader.load(is, offset, offset == 0L, isFollowing());
+					break;
+				} catch(InterruptedIOException | RejectLimitExceededException e) {
+					throw e;
+				} catch(Exception e) {
+					if(attempt >= retries) {
+						throw e;
+					}
+					offset = checkpoint.getOffset();
+					loader.rollback();
+					LOGGER.log(Level.WARNING, "Loading of " + fileName + " failed, resuming from checkpoint at offset "
+							+ offset + " (" + checkpoint.getRows() + " rows committed)", e);
+				}
+			}
+		} finally {
+			// The journal is kept when the loading fails, the next start resumes from it
+			closeJournal();
+		}
+
+		if(loader.getErrorCount() > 0) {
+			LOGGER.warning(loader.getErrorCount() + " lines of " + fileName + " were rejected: " + rejectCollector().getCounts());
+		}
+		if(loader.getFilteredCount() > 0) {
+			LOGGER.info(loader.getFilteredCount() + " lines of " + fileName + " were rejected by the filter.");
+		}
+		if(differentialWriter != null) {
+			Map<String, Object> statistics = differentialWriter.getStatistics();
+			if(!Long.valueOf(0L).equals(statistics.get("updated"))) {
+				LOGGER.warning("Key fields " + generator.getKeyFields(discovery, env) + " are not unique in " + fileName
+						+ ", rows with the same key were replaced: " + statistics);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Open the input file at an offset.
+	 * 
+	 * @param fileName name of the file, in the file system or the classpath
+	 * @param offset offset of the first byte to read
+	 * @return input stream
+	 * @throws IOException
+	 */
+	protected InputStream openInput(String fileName, long offset) throws IOException {
+		if(streamInput.isStream()) {
+			if(offset > 0L) {
+				throw new IOException("Cannot reach offset " + offset + " of " + fileName + ", it is a stream");
+			}
+			return streamInput.replay();
+		}
+
+		Path path = Paths.get(fileName);
+		if(Files.isRegularFile(path) && !isCompressed()) {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			channel.position(offset);
+			return Channels.newInputStream(channel);
+		}
+
+		// Offsets are positions in the decompressed content, skip up to the offset
+		InputStream is = Compression.decompress(new CSVDiscovery().openRawFile(fileName), parserExecutor(), getParserThreads());
+		long skipped = 0L;
+		while(skipped < offset) {
+			long n = is.skip(offset - skipped);
+			if(n <= 0) {
+				is.close();
+				throw new IOException("Cannot reach offset " + offset + " of " + fileName);
+			}
+			skipped += n;
+		}
+		return is;
+	}
+
+	/**
+	 * Create the checkpoint of the loading, when checkpoints are enabled.
+	 * A failed loading is retried in the same process from the last commit.
+	 * When snapshots are enabled too, the commits are written in a journal,
+	 * and a loading stopped by a restart resumes from its last commit,
+	 * see {@link #resumeJournal(LoadCheckpoint)}.
+	 * 
+	 * @return checkpoint, or null if checkpoints are disabled
+	 */
+	protected LoadCheckpoint createCheckpoint() {
+		return isCheckpointing() ? new LoadCheckpoint() : null;
+	}
+
+	/** @return true if the commits of the streaming loader are written in a journal to resume after a restart */
+	public boolean isJournaling() {
+		return isCheckpointing() && isSnapshotting();
+	}
+
+	/**
+	 * The journal is written alternately in two files: the rows of the
+	 * previous journal are copied in the other file when the loading resumes,
+	 * and the previous journal is only deleted once they are all copied.
+	 * 
+	 * @return the two journal files of the input file
+	 */
+	protected Path[] getJournalFiles() {
+		Path snapshot = getSnapshotFile();
+		return new Path[] {
+				snapshot.resolveSibling(snapshot.getFileName() + ".journal"),
+				snapshot.resolveSibling(snapshot.getFileName() + ".journal2") };
+	}
+
+	/**
+	 * Restore the rows of the journal of a loading that was stopped, when
+	 * the journal matches the input file, the loading settings and the
+	 * store fields, and start writing the journal of this loading.
+	 * The journal is restored up to its last checkpoint, the rows written
+	 * after it are loaded again from the input file.
+	 * 
+	 * @param checkpoint checkpoint of the loading
+	 * @return offset in the input file after the restored rows, 0 if no journal was restored
+	 * @throws IOException if the journal cannot be written
+	 */
+	protected long resumeJournal(LoadCheckpoint checkpoint) throws IOException {
+		String fingerprint = getSnapshotFingerprint();
+		List<String> fields = generator.getStoreFieldNames(discovery, env);
+		List<String> types = getStoreFieldTypes();
+
+		// The journal with the most recent checkpoint
+		Path[] files = getJournalFiles();
+		Path previous = null;
+		long rows = 0L;
+		long offset = 0L;
+		for(Path file : files) {
+			if(!Files.isRegularFile(file)) {
+				continue;
+			}
+			try(SnapshotReader reader = new SnapshotReader(file)) {
+				if(fingerprint.equals(reader.getFingerprint()) && fields.equals(reader.getFields())
+						&& discovery.getColumnTypes().equals(reader.getFormat().getColumnTypes())) {
+					long checkpointRows = reader.verifyCheckpoints();
+					if(reader.getCheckpointOffset() > offset) {
+						previous = file;
+						rows = checkpointRows;
+						offset = reader.getCheckpointOffset();
+					}
+				}
+			} catch(IOException | RuntimeException e) {
+				LOGGER.warning("Journal " + file + " cannot be read, it is ignored: " + e);
+			}
+		}
+
+		Path next = files[0].equals(previous) ? files[1] : files[0];
+		SnapshotWriter journal = SnapshotWriter.journal(next, fingerprint, discovery, fields, types);
+		if(previous != null) {
+			LOGGER.info("Resuming the loading at offset " + offset + ", restoring " + rows + " rows from journal " + previous);
+			long start = System.currentTimeMillis();
+			LoadProgress progress = loadProgress();
+			ITupleWriter writer = createTupleWriter();
+			try(SnapshotReader reader = new SnapshotReader(previous)) {
+				reader.read(tuples -> {
+					writer.write(tuples);
+					progress.committed(tuples.size());
+					try {
+						for(Object[] tuple : tuples) {
+							journal.add(tuple);
+						}
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, rows);
+				journal.checkpoint(offset);
+			} catch(IOException | RuntimeException e) {
+				// Part of the data may be committed, it is removed before the input file is loaded
+				LOGGER.log(Level.WARNING, "Could not restore journal " + previous + ", the input file is loaded", e);
+				journal.close();
+				deleteJournal();
+				new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE).removeWhere(BaseConditions.TRUE);
+				differentialWriter = null;
+				progress.start(getInputSize(Paths.get(env.getRequiredProperty(FILENAME_PROPERTY))));
+				return resumeJournal(checkpoint);
+			}
+			progress.setBytesRead(offset);
+			checkpoint.resume(offset, rows);
+			LOGGER.info("Restored " + rows + " rows from journal " + previous + " in " + (System.currentTimeMillis() - start) + "ms");
+		}
+		for(Path file : files) {
+			if(!file.equals(next)) {
+				Files.deleteIfExists(file);
+			}
+		}
+		checkpoint.setJournal(journal);
+		this.journal = journal;
+		return offset;
+	}
+
+	/** Stop writing the journal, it is kept up to its last checkpoint */
+	protected void closeJournal() {
+		if(journal == null) {
+			return;
+		}
+		checkpoint.setJournal(null);
+		try {
+			journal.close();
+		} catch(IOException e) {
+			LOGGER.log(Level.WARNING, "Could not close the journal", e);
+		}
+		journal = null;
+	}
+
+	/** Delete the journal, once the loading is complete */
+	protected void deleteJournal() throws IOException {
+		if(isJournaling()) {
+			for(Path file : getJournalFiles()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/** @return true if a snapshot of the loaded data is written to restore it at the next start */
+	public boolean isSnapshotting() {
+		// A stream has no fingerprint, it cannot be matched with a snapshot
+		return env.containsProperty(SNAPSHOT_DIR_PROPERTY) && !streamInput.isStream();
+	}
+
+	/** @return snapshot file of the input file */
+	protected Path getSnapshotFile() {
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		return Paths.get(env.getRequiredProperty(SNAPSHOT_DIR_PROPERTY), Paths.get(fileName).getFileName() + ".snapshot");
+	}
+
+	/**
+	 * The fingerprint of a snapshot identifies the input file (size,
+	 * modification time and hash of its beginning) and the settings
+	 * that change the loaded rows.
+	 * 
+	 * @return fingerprint of the input file and of the loading settings
+	 * @throws IOException
+	 */
+	protected String getSnapshotFingerprint() throws IOException {
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		StringBuilder fingerprint = new StringBuilder();
+		Path path = Paths.get(fileName);
+		if(Files.isRegularFile(path)) {
+			fingerprint.append(Files.size(path)).append(':').append(Files.getLastModifiedTime(path).toMillis()).append(':');
+		}
+		try(InputStream is = openInput(fileName, 0L)) {
+			fingerprint.append(LoadCheckpoint.fingerprint(is));
+		}
+		for(String property : new String[] { FILTER_PROPERTY, AutoPivotGenerator.KEY_FIELDS_PROPERTY,
+				CSVDiscoveryConfig.INCLUDE_COLUMNS_PROPERTY, CSVDiscoveryConfig.EXCLUDE_COLUMNS_PROPERTY }) {
+			fingerprint.append(':').append(env.getProperty(property, ""));
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Restore the data from the snapshot, when the snapshot matches
+	 * the input file, the loading settings and the store fields.
+	 * The whole snapshot is verified before its first row is committed.
+	 * A snapshot that cannot be restored is deleted, the store is cleared
+	 * and the input file is loaded instead.
+	 * 
+	 * @return offset in the input file after the restored data, -1 if there is no matching snapshot
+	 * @throws IOException
+	 */
+	protected long restoreSnapshot() throws IOException {
+		if(!isSnapshotting() || !Files.isRegularFile(getSnapshotFile())) {
+			return -1L;
+		}
+		Path file = getSnapshotFile();
+		List<String> fields = generator.getStoreFieldNames(discovery, env);
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			if(!getSnapshotFingerprint().equals(reader.getFingerprint())
+					|| !fields.equals(reader.getFields())
+					|| !discovery.getColumnTypes().equals(reader.getFormat().getColumnTypes())) {
+				LOGGER.info("Snapshot " + file + " does not match the input file, the input file is loaded.");
+				return -1L;
+			}
+			reader.verify();
+		} catch(IOException | RuntimeException e) {
+			LOGGER.warning("Snapshot " + file + " is corrupted, it is deleted and the input file is loaded: " + e);
+			Files.deleteIfExists(file);
+			return -1L;
+		}
+
+		LOGGER.info("Restoring snapshot " + file);
+		long start = System.currentTimeMillis();
+		LoadProgress progress = loadProgress();
+		ITupleWriter writer = createTupleWriter();
+		int commitSize = env.getProperty(COMMIT_SIZE_PROPERTY, Integer.class, CSVLoader.DEFAULT_COMMIT_SIZE);
+		List<Object[]> transaction = new ArrayList<>();
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			reader.read(tuples -> {
+				transaction.addAll(tuples);
+				if(transaction.size() >= commitSize) {
+					writer.write(transaction);
+					progress.committed(transaction.size());
+					transaction.clear();
+				}
+			});
+			if(!transaction.isEmpty()) {
+				writer.write(transaction);
+				progress.committed(transaction.size());
+			}
+			LOGGER.info("Restored " + progress.getRowsCommitted() + " rows from snapshot " + file
+					+ " in " + (System.currentTimeMillis() - start) + "ms");
+			return reader.getOffset();
+		} catch(IOException | RuntimeException e) {
+			// Part of the data may be committed, it is removed before the input file is loaded
+			LOGGER.log(Level.WARNING, "Could not restore snapshot " + file + ", it is deleted and the input file is loaded", e);
+			Files.deleteIfExists(file);
+			new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE).removeWhere(BaseConditions.TRUE);
+			differentialWriter = null;
+			progress.start(getInputSize(Paths.get(env.getRequiredProperty(FILENAME_PROPERTY))));
+			return -1L;
+		}
+	}
+
+	/** @return types of the fields of the base store, in the order of the store fields */
+	protected List<String> getStoreFieldTypes() {
+		return generator.createFieldDescriptions(discovery, env).stream()
+				.map(IFieldDescription::getDataType).collect(Collectors.toList());
+	}
+
+	/**
+	 * Write the snapshot of the loaded data, when snapshots are enabled.
+	 * A failure is logged, the data is loaded from the input file at the next start.
+	 * 
+	 * @param offset offset in the input file after the loaded data
+	 */
+	protected void writeSnapshot(long offset) {
+		if(!isSnapshotting()) {
+			return;
+		}
+		Path file = getSnapshotFile();
+		List<String> fields = generator.getStoreFieldNames(discovery, env);
+		List<String> types = getStoreFieldTypes();
+		long start = System.currentTimeMillis();
+		try(SnapshotWriter snapshot = new SnapshotWriter(file, getSnapshotFingerprint(), offset, discovery, fields, types)) {
+			new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE).scan(fields, tuple -> {
+				try {
+					snapshot.add(tuple);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			long rows = snapshot.complete();
+			LOGGER.info("Wrote snapshot of " + rows + " rows in " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+		} catch(IOException | UncheckedIOException e) {
+			LOGGER.log(Level.WARNING, "Could not write snapshot " + file, e);
+		}
+	}
+
+	/**
+	 * Reload the file, only writing the rows that were inserted or updated
+	 * since the last loading, and removing the rows that are no longer in the file.
+	 * A reload is rejected while the initial loading is in progress.
+	 * 
+	 * @return statistics of the reload
+	 */
+	public synchronized Map<String, Object> reloadData() throws Exception {
+		if(!isDifferential()) {
+			throw new IllegalStateException("Differential reloads require key fields, see the " + AutoPivotGenerator.KEY_FIELDS_PROPERTY + " property.");
+		}
+		LoadProgress progress = loadProgress();
+		if(progress.getState() == LoadProgress.State.PENDING || progress.getState() == LoadProgress.State.LOADING) {
+			throw new IllegalStateException("The data is being loaded (" + progress.getStateName() + "), reload it once the loading is complete.");
+		}
+
+		String fileName = env.getRequiredProperty(FILENAME_PROPERTY);
+		if(ArrowDiscovery.isArrowFile(fileName)) {
+			throw new IllegalStateException("Differential reloads are not supported for Arrow input files.");
+		}
+		LOGGER.info("Differential reload of " + fileName);
+		Path path = Paths.get(fileName);
+		progress.start(getInputSize(path));
+		rejectCollector().reset();
+		try {
+			DifferentialTupleWriter differential = (DifferentialTupleWriter) createTupleWriter();
+			CSVLoader loader = createLoader(differential);
+			differential.startReload();
+			try(InputStream is = openInput(fileName, 0L)) {
+				loader.load(is, 0L, true, isFollowing());
+			}
+
+			// Remove the keys of the store that were not found in the file
+			new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE)
+				.scan(generator.getKeyFields(discovery, env), differential::checkStored);
+			Map<String, Object> statistics = differential.completeReload();
+			progress.complete();
+			return statistics;
+		} catch(Exception e) {
+			progress.fail(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Drop the partition of one value of the value partitioning field,
+	 * for instance an expired or corrupted business date, without
+	 * reloading the other partitions.
+	 * 
+	 * @param value value of the partition, as written in the input file
+	 * @return statistics of the drop
+	 */
+	public synchronized Map<String, Object> dropPartition(String value) {
+		String fieldName = generator.getValuePartitioningField(discovery, env);
+		if(fieldName == null) {
+			throw new IllegalStateException("Dropping a partition requires a value partitioning, see the " + AutoPivotGenerator.VALUE_PARTITIONING_FIELD_PROPERTY + " property.");
+		}
+		CSVRowParser parser = new CSVRowParser(discovery, generator.getRowFieldNames(discovery));
+		Object parsed = parser.parseField(discovery.getColumnNames().indexOf(fieldName), value);
+		if(parsed == null) {
+			throw new IllegalArgumentException("Invalid value '" + value + "' for field '" + fieldName + "'");
+		}
+
+		DatastoreTupleWriter writer = new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE);
+		ICondition condition = BaseConditions.Equal(fieldName, parsed);
+		long count = writer.count(condition, fieldName);
+		if(count > 0L && isDifferential()) {
+			// The dropped rows are written again if they are reloaded
+			List<String> keyFields = generator.getKeyFields(discovery, env);
+			int valueIndex = keyFields.indexOf(fieldName);
+			DifferentialTupleWriter differential = (DifferentialTupleWriter) createTupleWriter();
+			writer.scan(keyFields, key -> {
+				if(parsed.equals(key[valueIndex])) {
+					differential.forget(key);
+				}
+			});
+		}
+		writer.removeWhere(condition);
+		LOGGER.info("Dropped the partition " + fieldName + "=" + parsed + " (" + count + " rows)");
+
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("field", fieldName);
+		statistics.put("value", String.valueOf(parsed));
+		statistics.put("removed", count);
+		return statistics;
+	}
+
+	/**
+	 * Follow the file in the background, loading the lines appended to it.
+	 * 
+	 * @param path followed file
+	 * @param offset offset in the file after the last committed line
+	 * @throws IOException
+	 */
+	protected void follow(Path path, long offset) throws IOException {
+		if(!Files.isRegularFile(path)) {
+			LOGGER.warning("Cannot follow " + path + ", it is not a file of the file system.");
+			return;
+		}
+		if(isCompressed()) {
+			LOGGER.warning("Cannot follow " + path + ", it is compressed.");
+			return;
+		}
+		long pollInterval = env.getProperty(FOLLOW_POLL_INTERVAL_PROPERTY, Long.class, CSVFileFollower.DEFAULT_POLL_INTERVAL);
+		CSVLoader loader = createLoader();
+		loader.setCommitInterval(0L);
+		if(checkpoint != null) {
+			loader.addCommitListener(checkpoint);
+		}
+		loadingExecutor().submit(new CSVFileFollower(path, loader, offset, pollInterval));
+	}
+
+	/**
+	 * Create a streaming loader writing into the base store.
+	 * 
+	 * @return streaming loader
+	 * @throws IOException
+	 */
+	protected CSVLoader createLoader() throws IOException {
+		return createLoader(createTupleWriter());
+	}
+
+	/**
+	 * Create a streaming loader.
+	 * 
+	 * @param writer destination of the loaded tuples
+	 * @return streaming loader
+	 * @throws IOException
+	 */
+	protected CSVLoader createLoader(ITupleWriter writer) throws IOException {
+		CSVRowParser parser = new CSVRowParser(discovery, generator.getRowFieldNames(discovery));
+
+		CSVLoader loader = new CSVLoader(parser, writer, charset, parserExecutor(), getParserThreads());
+		loader.setProgress(loadProgress());
+		loader.setCommitSize(env.getProperty(COMMIT_SIZE_PROPERTY, Integer.class, CSVLoader.DEFAULT_COMMIT_SIZE));
+		loader.setCommitInterval(env.getProperty(COMMIT_INTERVAL_PROPERTY, Long.class, CSVLoader.DEFAULT_COMMIT_INTERVAL));
+		loader.setCommitOnIdle(streamInput.isStream());
+		loader.setRejects(rejectCollector());
+		loader.setRollup(generator.createRollup(discovery, env));
+		loader.setClustering(createClustering());
+		if(retention != null) {
+			loader.addCommitListener(retention);
+			if(writer instanceof DifferentialTupleWriter) {
+				// The evicted rows are written again if they are reloaded
+				retention.setEvictedKeys(generator.getKeyFields(discovery, env), ((DifferentialTupleWriter) writer)::forget);
+			}
+		}
+		String filter = env.getProperty(FILTER_PROPERTY);
+		if(filter != null && !filter.trim().isEmpty()) {
+			loader.setFilter(RowFilter.compile(filter, parser));
+		}
+		return loader;
+	}
+
+	/**
+	 * Create the writer of the loaded tuples into the base store.
+	 * When the store has keys the writer is shared by all the loaders,
+	 * and only writes the rows that changed.
+	 * 
+	 * @return tuple writer
+	 */
+	protected synchronized ITupleWriter createTupleWriter() {
+		DatastoreTupleWriter writer = new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE);
+		if(!isDifferential()) {
+			return writer;
+		}
+		if(differentialWriter == null) {
+			List<String> fields = generator.getStoreFieldNames(discovery, env);
+			int[] keyFields = generator.getKeyFields(discovery, env).stream().mapToInt(fields::indexOf).toArray();
+			int expectedRows = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, discovery.getEstimatedRowCount()));
+			differentialWriter = new DifferentialTupleWriter(writer, keyFields, fields.size(), expectedRows);
+		}
+		return differentialWriter;
 	}
 	
 }
@@ -0,0 +1,86 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.av.autopivot.RetentionManager;
+import com.av.csv.load.LoadProgress;
+import com.quartetfs.fwk.monitoring.jmx.impl.JMXEnabler;
+
+/**
+ * 
+ * Monitoring of the loading of the input data, through
+ * an actuator endpoint, JMX and a health indicator.
+ * <p>
+ * The health indicator is named {@code autoPivotLoad}, it is
+ * out of service until the initial loading is complete and can be
+ * included in the readiness probe with
+ * {@code management.endpoint.health.group.readiness.include}.
+ * 
+ * @author ActiveViam
+ *
+ */
+@Configuration
+public class LoadMonitoringConfig {
+
+	/** CSV Source configuration */
+	@Autowired
+	protected CSVSourceConfig sourceConfig;
+
+	/** Retention of the base store, when a retention field is configured */
+	@Autowired(required = false)
+	protected RetentionManager retention;
+
+	/** @return actuator endpoint exposing the loading progress */
+	@Bean
+	public LoadProgressEndpoint loadProgressEndpoint() {
+		return new LoadProgressEndpoint(sourceConfig, retention);
+	}
+
+	/**
+	 * Enable JMX Monitoring for the loading progress
+	 *
+	 * @return the {@link JMXEnabler} attached to the loading progress
+	 */
+	@Bean
+	public JMXEnabler JMXLoadProgressEnabler() {
+		return new JMXEnabler("AutoPivotLoading", sourceConfig.loadProgress());
+	}
+
+	/** @return health indicator reporting the state of the loading */
+	@Bean
+	public HealthIndicator autoPivotLoadHealthIndicator() {
+		return () -> {
+			LoadProgress progress = sourceConfig.loadProgress();
+			Health.Builder health;
+			switch(progress.getState()) {
+			case LOADED: health = Health.up(); break;
+			case FAILED: health = Health.down(); break;
+			default: health = Health.outOfService(); break;
+			}
+			return health.withDetails(progress.toMap()).build();
+		};
+	}
+
+}
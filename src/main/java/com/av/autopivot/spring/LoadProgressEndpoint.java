@@ -0,0 +1,83 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import com.av.autopivot.RetentionManager;
+
+/**
+ * 
+ * Actuator endpoint exposing the progress of the
+ * loading of the input data ({@code /actuator/autopivotload}).
+ * A POST on the endpoint triggers a differential reload of the file,
+ * a DELETE on {@code /actuator/autopivotload/{value}} drops the partition
+ * of one value of the value partitioning field.
+ * 
+ * @author ActiveViam
+ *
+ */
+@Endpoint(id = "autopivotload")
+public class LoadProgressEndpoint {
+
+	/** CSV Source configuration */
+	protected final CSVSourceConfig sourceConfig;
+
+	/** Retention of the base store, null when disabled */
+	protected final RetentionManager retention;
+
+	public LoadProgressEndpoint(CSVSourceConfig sourceConfig, RetentionManager retention) {
+		this.sourceConfig = sourceConfig;
+		this.retention = retention;
+	}
+
+	/** @return progress of the loading, with the statistics of the rejected lines and of the retention */
+	@ReadOperation
+	public Map<String, Object> progress() throws IOException {
+		Map<String, Object> progress = sourceConfig.loadProgress().toMap();
+		progress.put("rejects", sourceConfig.rejectCollector().toMap());
+		if(retention != null) {
+			progress.put("retention", retention.toMap());
+		}
+		return progress;
+	}
+
+	/** @return statistics of the differential reload of the file */
+	@WriteOperation
+	public Map<String, Object> reload() throws Exception {
+		return sourceConfig.reloadData();
+	}
+
+	/**
+	 * @param value value of the partition to drop
+	 * @return statistics of the drop
+	 */
+	@DeleteOperation
+	public Map<String, Object> dropPartition(@Selector String value) {
+		return sourceConfig.dropPartition(value);
+	}
+
+}
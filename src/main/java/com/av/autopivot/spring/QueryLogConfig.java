@@ -0,0 +1,90 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.av.autopivot.AutoPivotGenerator;
+import com.av.autopivot.QueryLog;
+import com.av.autopivot.QueryLogHandler;
+import com.av.csv.CSVFormat;
+
+/**
+ *
+ * Log of the patterns of the queries of the cube, the levels and measures
+ * they are expressed on, enabled when the file of the log is configured.
+ * The log is saved when the application stops and on demand, and the
+ * partial aggregate providers that answer the most query time are
+ * created from it when the cube is created at the next start.
+ *
+ * @author ActiveViam
+ *
+ */
+@Configuration
+@ConditionalOnProperty(AutoPivotGenerator.QUERY_LOG_FILE_PROPERTY)
+public class QueryLogConfig {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(QueryLogConfig.class.getName());
+
+	/** Spring environment, automatically wired */
+	@Autowired
+	protected Environment env;
+
+	/** Format of the input file */
+	@Autowired
+	protected CSVFormat discovery;
+
+	/** AutoPivot Generator */
+	@Autowired
+	protected AutoPivotGenerator generator;
+
+	/** @return file of the query log */
+	protected Path queryLogFile() {
+		return Paths.get(env.getRequiredProperty(AutoPivotGenerator.QUERY_LOG_FILE_PROPERTY));
+	}
+
+	/**
+	 * @return log of the query patterns, with the patterns recorded before the last stop,
+	 * the queries of the cube are recorded by the {@link QueryLogHandler}
+	 */
+	@Bean
+	public QueryLog queryLog() throws IOException {
+		QueryLog log = QueryLog.load(queryLogFile());
+		LOGGER.info("Recording the query patterns in " + queryLogFile() + ", " + log.getEntries().size() + " patterns already recorded");
+		QueryLogHandler.setLog(log, generator.getQueryDimensions(discovery, env));
+		return log;
+	}
+
+	/** @return actuator endpoint exposing the query log, that saves it when the application stops */
+	@Bean(destroyMethod = "save")
+	public QueryLogEndpoint queryLogEndpoint() throws IOException {
+		return new QueryLogEndpoint(queryLog(), queryLogFile(), generator, discovery, env);
+	}
+
+}
@@ -0,0 +1,113 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.env.Environment;
+
+import com.av.autopivot.AutoPivotGenerator;
+import com.av.autopivot.QueryLog;
+import com.av.csv.CSVFormat;
+
+/**
+ * 
+ * Actuator endpoint exposing the log of the query patterns
+ * ({@code /actuator/autopivotqueries}) and the partial aggregate
+ * providers it recommends. A POST saves the log, the recommended
+ * providers are created when the cube is created at the next start
+ * if the partial providers are enabled, a DELETE clears the log.
+ * 
+ * @author ActiveViam
+ *
+ */
+@Endpoint(id = "autopivotqueries")
+public class QueryLogEndpoint {
+
+	/** Log of the query patterns */
+	protected final QueryLog log;
+
+	/** File the log is saved to */
+	protected final Path file;
+
+	/** AutoPivot Generator */
+	protected final AutoPivotGenerator generator;
+
+	/** Format of the input file */
+	protected final CSVFormat format;
+
+	/** Spring environment */
+	protected final Environment env;
+
+	public QueryLogEndpoint(QueryLog log, Path file, AutoPivotGenerator generator, CSVFormat format, Environment env) {
+		this.log = log;
+		this.file = file;
+		this.generator = generator;
+		this.format = format;
+		this.env = env;
+	}
+
+	/** @return statistics of the log, the partial providers it recommends and whether they are created at the next start */
+	@ReadOperation
+	public Map<String, Object> queries() {
+		Map<String, Object> queries = log.toMap();
+		queries.put("recommendedProviders", recommendedProviders());
+		queries.put("createdAtNextStart", generator.isPartialProvider(env));
+		return queries;
+	}
+
+	/** @return the partial providers recommended by the log that are created at the next start, none when the partial providers are disabled */
+	@WriteOperation
+	public Map<String, Object> save() throws IOException {
+		log.save(file);
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("file", file.toString());
+		if(generator.isPartialProvider(env)) {
+			result.put("providersAtNextStart", recommendedProviders());
+		} else {
+			result.put("providersAtNextStart", Collections.emptyList());
+			result.put("warning", "The recommended providers are not created, "
+					+ AutoPivotGenerator.PARTIAL_PROVIDER_PROPERTY + " is not enabled");
+		}
+		return result;
+	}
+
+	/** Clear the log */
+	@DeleteOperation
+	public void clear() {
+		log.clear();
+	}
+
+	protected List<String> recommendedProviders() {
+		return generator.adviseMaterialization(log, format, env).stream()
+				.map(Object::toString)
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,135 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.spring;
+
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.av.autopivot.AutoPivotGenerator;
+import com.av.autopivot.DatastoreTupleWriter;
+import com.av.autopivot.RetentionManager;
+import com.av.autopivot.RetentionPolicy;
+import com.av.csv.CSVFormat;
+import com.av.csv.discover.CSVDiscovery;
+import com.qfs.desc.IFieldDescription;
+import com.qfs.server.cfg.IDatastoreConfig;
+import com.quartetfs.fwk.monitoring.jmx.impl.JMXEnabler;
+
+/**
+ *
+ * Retention of the data of long running instances: the records whose
+ * retention field, usually a date, holds an expired value are removed
+ * in the background. Enabled when the retention field is configured.
+ *
+ * @author ActiveViam
+ *
+ */
+@Configuration
+@ConditionalOnProperty(RetentionConfig.RETENTION_FIELD_PROPERTY)
+public class RetentionConfig {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(RetentionConfig.class.getName());
+
+	/** Property to set the field the retention applies to */
+	public static final String RETENTION_FIELD_PROPERTY = "datastore.retention.field";
+
+	/** Property to set the number of distinct values of the retention field that are kept */
+	public static final String RETENTION_VALUES_PROPERTY = "datastore.retention.values";
+
+	/** Property to set the number of days of the retention field that are kept */
+	public static final String RETENTION_DAYS_PROPERTY = "datastore.retention.days";
+
+	/** Property to set the interval between two evictions, in milliseconds */
+	public static final String RETENTION_INTERVAL_PROPERTY = "datastore.retention.interval";
+
+	/** Spring environment, automatically wired */
+	@Autowired
+	protected Environment env;
+
+	/** Format of the input file */
+	@Autowired
+	protected CSVFormat discovery;
+
+	/** Application datastore, automatically wired */
+	@Autowired
+	protected IDatastoreConfig datastoreConfig;
+
+	/** AutoPivot Generator */
+	@Autowired
+	protected AutoPivotGenerator generator;
+
+	/** @return manager of the retention of the base store */
+	@Bean(initMethod = "start", destroyMethod = "close")
+	public RetentionManager retentionManager() {
+		String property = env.getRequiredProperty(RETENTION_FIELD_PROPERTY).trim();
+		int column = discovery.getColumnNames().stream()
+				.filter(property::equalsIgnoreCase)
+				.findFirst()
+				.map(discovery.getColumnNames()::indexOf)
+				.orElseThrow(() -> new IllegalArgumentException("Configured retention field '" + property + "' does not exist in input file format."));
+		String fieldName = discovery.getColumnName(column);
+
+		RetentionPolicy policy = new RetentionPolicy(
+				env.getProperty(RETENTION_VALUES_PROPERTY, Integer.class, 0),
+				env.getProperty(RETENTION_DAYS_PROPERTY, Integer.class, 0));
+		if(policy.isUnlimited()) {
+			LOGGER.warning("No retention limit is configured for field '" + fieldName + "', see the "
+					+ RETENTION_VALUES_PROPERTY + " and " + RETENTION_DAYS_PROPERTY + " properties.");
+		}
+		if(env.containsProperty(RETENTION_DAYS_PROPERTY) && !CSVDiscovery.isDate(discovery.getColumnType(column))) {
+			throw new IllegalArgumentException("A retention in days requires a date field, '" + fieldName + "' is " + discovery.getColumnType(column));
+		}
+		if(fieldName.equals(generator.getValuePartitioningField(discovery, env))) {
+			LOGGER.info("The base store is partitioned on the values of the retention field '" + fieldName
+					+ "', each eviction only visits and empties the partitions of the expired values.");
+		} else if(!fieldName.equals(generator.getPartitioningField(discovery, env))) {
+			LOGGER.info("The base store is not partitioned on the retention field '" + fieldName
+					+ "', set " + AutoPivotGenerator.VALUE_PARTITIONING_FIELD_PROPERTY + " or datastore.partitioningField so that evictions only visit the partitions of the expired values.");
+		}
+
+		List<String> fields = generator.getStoreFieldNames(discovery, env);
+		return new RetentionManager(
+				new DatastoreTupleWriter(datastoreConfig.database(), AutoPivotGenerator.BASE_STORE),
+				fieldName,
+				fields.indexOf(fieldName),
+				policy,
+				env.getProperty(RETENTION_INTERVAL_PROPERTY, Long.class, RetentionManager.DEFAULT_INTERVAL),
+				RetentionManager.estimateRecordSize(generator.createFieldDescriptions(discovery, env).stream()
+						.map(IFieldDescription::getDataType).collect(Collectors.toList())));
+	}
+
+	/**
+	 * Enable JMX Monitoring of the retention
+	 *
+	 * @return the {@link JMXEnabler} attached to the retention manager
+	 */
+	@Bean
+	public JMXEnabler JMXRetentionEnabler() {
+		return new JMXEnabler("AutoPivotRetention", retentionManager());
+	}
+
+}
@@ -18,7 +18,13 @@
  */
 package com.av.csv;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.av.csv.discover.ColumnStatistics;
+import com.av.csv.discover.FunctionalDependencies;
 
 /**
  * 
@@ -41,12 +47,66 @@ public class CSVFormat {
 	/** Quote processing */
 	protected final boolean quoteProcessing;
 	
+	/** Candidate key, columns whose values are unique in the sample */
+	protected final List<String> candidateKey;
+	
+	/** Position of each column in the rows of the file */
+	protected final List<Integer> sourceColumnIndexes;
+	
+	/** Number of columns in the rows of the file, including the columns that are not selected */
+	protected final int sourceColumnCount;
+	
+	/** Statistics of the values of each column in a sample of the input, empty when unknown */
+	protected final List<ColumnStatistics> columnStatistics;
 	
+	/** Functional dependencies between the columns in a sample of the input, null when unknown */
+	protected final FunctionalDependencies dependencies;
+	
+	/** Estimated number of rows of the input, -1 when unknown */
+	protected final long estimatedRowCount;
+	
+	
+	/**
+	 * Format of a file whose columns are all selected, without
+	 * candidate key, statistics or estimated number of rows.
+	 * The other properties are set with the <code>with</code> methods.
+	 */
 	public CSVFormat(String separator, List<String> columnNames, List<String> columnTypes, boolean quoteProcessing) {
+		this(separator, columnNames, columnTypes, quoteProcessing, Collections.emptyList(),
+				IntStream.range(0, columnNames.size()).boxed().collect(Collectors.toList()), columnNames.size(),
+				Collections.emptyList(), null, -1L);
+	}
+
+	protected CSVFormat(String separator, List<String> columnNames, List<String> columnTypes, boolean quoteProcessing, List<String> candidateKey,
+			List<Integer> sourceColumnIndexes, int sourceColumnCount, List<ColumnStatistics> columnStatistics, FunctionalDependencies dependencies,
+			long estimatedRowCount) {
 		this.separator = separator;
 		this.columnNames = columnNames;
 		this.columnTypes = columnTypes;
 		this.quoteProcessing = quoteProcessing;
+		this.candidateKey = candidateKey;
+		this.sourceColumnIndexes = sourceColumnIndexes;
+		this.sourceColumnCount = sourceColumnCount;
+		this.columnStatistics = columnStatistics;
+		this.dependencies = dependencies;
+		this.estimatedRowCount = estimatedRowCount;
+	}
+
+	/**
+	 * @param candidateKey columns whose values are unique in the sample
+	 * @return the same format, with another candidate key
+	 */
+	public CSVFormat withCandidateKey(List<String> candidateKey) {
+		return new CSVFormat(separator, columnNames, columnTypes, quoteProcessing, candidateKey, sourceColumnIndexes, sourceColumnCount, columnStatistics, dependencies, estimatedRowCount);
+	}
+
+	/**
+	 * @param sourceColumnIndexes position of each selected column in the rows of the file
+	 * @param sourceColumnCount number of columns in the rows of the file, including the columns that are not selected
+	 * @return the same format, for a projection of the columns of the file
+	 */
+	public CSVFormat withSourceColumns(List<Integer> sourceColumnIndexes, int sourceColumnCount) {
+		return new CSVFormat(separator, columnNames, columnTypes, quoteProcessing, candidateKey, sourceColumnIndexes, sourceColumnCount, columnStatistics, dependencies, estimatedRowCount);
 	}
 
 	public String getSeparator() { return separator; }
@@ -57,6 +117,8 @@ public class CSVFormat {
 	
 	public boolean getQuoteProcessing() { return quoteProcessing; }
 	
+	public List<String> getCandidateKey() { return candidateKey; }
+	
 	public String getColumnName(int columnIndex) {
 		return columnNames.get(columnIndex);
 	}
@@ -65,4 +127,76 @@ public class CSVFormat {
 		return columnTypes.get(columnIndex);
 	}
 	
+	public List<String> getColumnTypes() { return columnTypes; }
+	
+	/**
+	 * @param columnIndex index of a selected column
+	 * @return position of the column in the rows of the file
+	 */
+	public int getSourceColumnIndex(int columnIndex) {
+		return sourceColumnIndexes.get(columnIndex);
+	}
+	
+	public int getSourceColumnCount() { return sourceColumnCount; }
+	
+	/**
+	 * @param columnIndex index of a selected column
+	 * @return statistics of the values of the column in a sample of the input, null when unknown
+	 */
+	public ColumnStatistics getColumnStatistics(int columnIndex) {
+		return columnIndex < columnStatistics.size() ? columnStatistics.get(columnIndex) : null;
+	}
+	
+	/**
+	 * @param columnIndex index of a selected column
+	 * @return estimated number of distinct values of the column in a sample of the input, -1 when unknown
+	 */
+	public int getSampleCardinality(int columnIndex) {
+		ColumnStatistics statistics = getColumnStatistics(columnIndex);
+		return statistics == null ? -1 : (int) Math.min(Integer.MAX_VALUE, statistics.getDistinctCount());
+	}
+	
+	/**
+	 * @param statistics statistics of the values of each column
+	 * @return the same format, with other column statistics
+	 */
+	public CSVFormat withStatistics(List<ColumnStatistics> statistics) {
+		return withStatistics(statistics, dependencies);
+	}
+	
+	/**
+	 * @param statistics statistics of the values of each column
+	 * @param dependencies functional dependencies between the columns
+	 * @return the same format, with other column statistics and dependencies
+	 */
+	public CSVFormat withStatistics(List<ColumnStatistics> statistics, FunctionalDependencies dependencies) {
+		return new CSVFormat(separator, columnNames, columnTypes, quoteProcessing, candidateKey, sourceColumnIndexes, sourceColumnCount, statistics, dependencies, estimatedRowCount);
+	}
+	
+	/**
+	 * @param rowCount estimated number of rows of the input
+	 * @return the same format, with another estimated number of rows
+	 */
+	public CSVFormat withEstimatedRowCount(long rowCount) {
+		return new CSVFormat(separator, columnNames, columnTypes, quoteProcessing, candidateKey, sourceColumnIndexes, sourceColumnCount, columnStatistics, dependencies, rowCount);
+	}
+	
+	/** @return estimated number of rows of the input, -1 when unknown */
+	public long getEstimatedRowCount() { return estimatedRowCount; }
+	
+	/**
+	 * @param columnIndex index of a selected column
+	 * @return estimated number of distinct values of the column in the whole input, -1 when unknown
+	 */
+	public long getEstimatedCardinality(int columnIndex) {
+		ColumnStatistics statistics = getColumnStatistics(columnIndex);
+		if(statistics == null) {
+			return -1L;
+		}
+		return estimatedRowCount < 0L ? statistics.getDistinctCount() : statistics.estimateDistinctCount(estimatedRowCount);
+	}
+	
+	/** @return functional dependencies between the columns in a sample of the input, null when unknown */
+	public FunctionalDependencies getDependencies() { return dependencies; }
+	
 }
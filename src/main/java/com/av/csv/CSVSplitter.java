@@ -80,6 +80,18 @@ public class CSVSplitter {
 	 * @return array of fields
 	 */
 	public static String[] split(String text, String separator) {
+		return split(text, separator, null);
+	}
+
+	/**
+	 * Split a CSV row into String fields, only extracting the selected fields.
+	 * The text of the fields that are not selected is not copied.
+	 * @param text
+	 * @param separator
+	 * @param selected selected fields, null to select all the fields
+	 * @return array of fields, with null for the fields that are not selected
+	 */
+	public static String[] split(String text, String separator, boolean[] selected) {
 
 		if(separator == null || separator.length() != 1) {
 			throw new IllegalArgumentException("Cannot split text, unsupported separator: " + separator);
@@ -131,12 +143,14 @@ public class CSVSplitter {
 			if(sep == current) {
 				if(nbQuotes == 0) {
 					// standard field
-					fields[fieldIndex++] = text.substring(fieldStart, c);
+					fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart, c);
+					fieldIndex++;
 					fieldStart = c+1;
 				} else if(DQ == text.charAt(fieldStart)) {
 					if(DQ == text.charAt(c-1) && isEven(nbQuotes)) {
 						// Properly quoted field
-						fields[fieldIndex++] = text.substring(fieldStart + 1, c - 1);
+						fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart + 1, c - 1);
+						fieldIndex++;
 						fieldStart = c + 1;
 						nbQuotes = 0;
 					}
@@ -144,7 +158,8 @@ public class CSVSplitter {
 				} else {
 					// quotes used in the middle of a standard field
 					// dirty but we can live with it
-					fields[fieldIndex++] = text.substring(fieldStart, c);
+					fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart, c);
+					fieldIndex++;
 					fieldStart = c + 1;
 					nbQuotes = 0;
 				}
@@ -156,20 +171,31 @@ public class CSVSplitter {
 		// End of the row, extract the last field of the row
 		if(nbQuotes == 0) {
 			// standard field, possibly empty
-			fields[fieldIndex++] = text.substring(fieldStart, text.length());
+			fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart, text.length());
+			fieldIndex++;
 		} else if(DQ == text.charAt(fieldStart)) {
 			if(DQ == text.charAt(text.length()-1) && isEven(nbQuotes)) {
 				// Field seems properly quoted
-				fields[fieldIndex++] = text.substring(fieldStart + 1, text.length() - 1);
+				fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart + 1, text.length() - 1);
+				fieldIndex++;
 			} else {
 				// dirty quoted field that is left open
-				fields[fieldIndex++] = text.substring(fieldStart + 1, text.length());
+				fields[fieldIndex] = extract(text, selected, fieldIndex, fieldStart + 1, text.length());
+				fieldIndex++;
 			}
 		}
 
 		return fields;
 	}
 
+	/** Extract a field if it is selected */
+	static String extract(String text, boolean[] selected, int fieldIndex, int start, int end) {
+		if(selected != null && (fieldIndex >= selected.length || !selected[fieldIndex])) {
+			return null;
+		}
+		return text.substring(start, end);
+	}
+
 	public static boolean isEven(int i) {
 		return i % 2 == 0;
 	}
@@ -0,0 +1,138 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 
+ * Selection of the columns of a CSV file, with lists of
+ * included and excluded column names. Names can use the
+ * '*' and '?' wildcards, and are not case sensitive.
+ * <p>
+ * A column is selected if it matches one of the included
+ * patterns (or if there are none) and none of the excluded patterns.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class ColumnSelector {
+
+	/** Selector of all the columns */
+	public static final ColumnSelector ALL = new ColumnSelector(Collections.emptyList(), Collections.emptyList());
+
+	/** Included patterns */
+	protected final List<Pattern> includes;
+
+	/** Excluded patterns */
+	protected final List<Pattern> excludes;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param includes included column names or globs, empty to include all the columns
+	 * @param excludes excluded column names or globs
+	 */
+	public ColumnSelector(List<String> includes, List<String> excludes) {
+		this.includes = compile(includes);
+		this.excludes = compile(excludes);
+	}
+
+	/**
+	 * Create a selector from comma separated lists of column names or globs.
+	 * 
+	 * @param includes included columns, can be null
+	 * @param excludes excluded columns, can be null
+	 * @return column selector
+	 */
+	public static ColumnSelector parse(String includes, String excludes) {
+		return new ColumnSelector(split(includes), split(excludes));
+	}
+
+	/** @return true if all the columns are selected */
+	public boolean isAll() {
+		return includes.isEmpty() && excludes.isEmpty();
+	}
+
+	/**
+	 * @param columnName name of a column
+	 * @return true if the column is selected
+	 */
+	public boolean isSelected(String columnName) {
+		if(!includes.isEmpty() && includes.stream().noneMatch(p -> p.matcher(columnName).matches())) {
+			return false;
+		}
+		return excludes.stream().noneMatch(p -> p.matcher(columnName).matches());
+	}
+
+	/**
+	 * Convert a glob into a regular expression.
+	 * 
+	 * @param glob column name with '*' and '?' wildcards
+	 * @return case insensitive pattern
+	 */
+	public static Pattern toPattern(String glob) {
+		StringBuilder regex = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for(char c : glob.toCharArray()) {
+			if(c == '*' || c == '?') {
+				if(literal.length() > 0) {
+					regex.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				regex.append(c == '*' ? ".*" : ".");
+			} else {
+				literal.append(c);
+			}
+		}
+		if(literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+	}
+
+	protected static List<Pattern> compile(List<String> globs) {
+		List<Pattern> patterns = new ArrayList<>(globs.size());
+		for(String glob : globs) {
+			patterns.add(toPattern(glob));
+		}
+		return patterns;
+	}
+
+	protected static List<String> split(String list) {
+		List<String> items = new ArrayList<>();
+		if(list != null) {
+			for(String item : list.split(",")) {
+				if(!item.trim().isEmpty()) {
+					items.add(item.trim());
+				}
+			}
+		}
+		return items;
+	}
+
+	@Override
+	public String toString() {
+		return "include=" + includes + ", exclude=" + excludes;
+	}
+
+}
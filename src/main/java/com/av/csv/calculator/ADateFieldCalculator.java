@@ -47,6 +47,13 @@ public abstract class ADateFieldCalculator extends AColumnCalculator<ILineReader
 		return compute(date);
 	}
 	
-	protected abstract Object compute(TemporalAccessor date);
+	/**
+	 * Compute the field from a date, also used by the
+	 * streaming loader that does not go through the CSV source.
+	 *
+	 * @param date non null date
+	 * @return extracted field
+	 */
+	public abstract Object compute(TemporalAccessor date);
 
 }
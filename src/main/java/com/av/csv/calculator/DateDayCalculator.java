@@ -35,7 +35,7 @@ public class DateDayCalculator extends ADateFieldCalculator {
 	}
 
 	@Override
-	protected Object compute(TemporalAccessor date) {
+	public Object compute(TemporalAccessor date) {
 		return date.get(ChronoField.DAY_OF_MONTH);
 	}
 
@@ -41,7 +41,7 @@ public class DateMonthCalculator extends ADateFieldCalculator {
 	}
 
 	@Override
-	protected Object compute(TemporalAccessor date) {
+	public Object compute(TemporalAccessor date) {
 		return date.get(ChronoField.MONTH_OF_YEAR);
 	}
 	
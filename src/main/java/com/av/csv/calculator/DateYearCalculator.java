@@ -35,7 +35,7 @@ public class DateYearCalculator extends ADateFieldCalculator {
 	}
 
 	@Override
-	protected Object compute(TemporalAccessor date) {
+	public Object compute(TemporalAccessor date) {
 		return date.get(ChronoField.YEAR);
 	}
 }
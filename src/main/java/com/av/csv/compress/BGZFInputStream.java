@@ -0,0 +1,268 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 
+ * Input stream decompressing a block gzip (BGZF) input, where each
+ * block is an independent gzip member of at most 64KB that records
+ * its compressed size in a 'BC' extra subfield.
+ * <p>
+ * Compressed blocks are read sequentially by the calling thread and
+ * inflated in parallel by an executor, the inflated blocks are returned
+ * in the order of the input.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class BGZFInputStream extends InputStream {
+
+	/** Size of the fixed part of a gzip member header */
+	protected static final int HEADER_SIZE = 12;
+
+	/** Size of the gzip member trailer (CRC32 and uncompressed size) */
+	protected static final int TRAILER_SIZE = 8;
+
+	/** Compressed input */
+	protected final InputStream input;
+
+	/** Executor inflating the blocks */
+	protected final ExecutorService executor;
+
+	/** Maximum number of blocks being inflated at the same time */
+	protected final int depth;
+
+	/** Blocks being inflated, in the order of the input */
+	protected final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+	/** Current inflated block */
+	protected byte[] block = new byte[0];
+
+	/** Position in the current block */
+	protected int position = 0;
+
+	/** True when all the blocks of the input were read */
+	protected boolean endOfInput = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param input compressed input
+	 * @param executor executor inflating the blocks
+	 * @param parallelism number of threads of the executor allocated to inflating
+	 */
+	public BGZFInputStream(InputStream input, ExecutorService executor, int parallelism) {
+		this.input = input;
+		this.executor = executor;
+		// Keep a few blocks ahead of each thread so that threads are not starved
+		this.depth = 4 * Math.max(1, parallelism);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill()) {
+			return -1;
+		}
+		return block[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, block.length - position);
+		System.arraycopy(block, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return block.length - position;
+	}
+
+	/**
+	 * Make the next inflated bytes available in the current block.
+	 * 
+	 * @return false at the end of the input
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		while(position >= block.length) {
+			while(!endOfInput && pending.size() < depth) {
+				byte[] compressed = readBlock();
+				if(compressed == null) {
+					endOfInput = true;
+				} else {
+					pending.add(executor.submit(() -> inflate(compressed)));
+				}
+			}
+			if(pending.isEmpty()) {
+				return false;
+			}
+			block = await(pending.poll());
+			position = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Read the next compressed block.
+	 * 
+	 * @return whole gzip member of the block, or null at the end of the input
+	 * @throws IOException
+	 */
+	protected byte[] readBlock() throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		int n = readFully(header, 0, HEADER_SIZE);
+		if(n == 0) {
+			return null;
+		} else if(n < HEADER_SIZE) {
+			throw new EOFException("Truncated BGZF block header");
+		}
+		if((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || header[2] != 8 || (header[3] & 0x04) == 0) {
+			throw new ZipException("Not a BGZF block");
+		}
+		int extraLength = readShort(header, 10);
+		byte[] extra = new byte[extraLength];
+		if(readFully(extra, 0, extraLength) < extraLength) {
+			throw new EOFException("Truncated BGZF block header");
+		}
+
+		// Look for the 'BC' subfield with the total size of the block
+		int blockSize = -1;
+		for(int i = 0; i + 4 <= extraLength; ) {
+			int length = readShort(extra, i + 2);
+			if(extra[i] == 'B' && extra[i + 1] == 'C' && length == 2) {
+				blockSize = readShort(extra, i + 4) + 1;
+			}
+			i += 4 + length;
+		}
+		if(blockSize < HEADER_SIZE + extraLength + TRAILER_SIZE) {
+			throw new ZipException("Invalid BGZF block size");
+		}
+
+		byte[] member = new byte[blockSize];
+		System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+		System.arraycopy(extra, 0, member, HEADER_SIZE, extraLength);
+		int remaining = blockSize - HEADER_SIZE - extraLength;
+		if(readFully(member, HEADER_SIZE + extraLength, remaining) < remaining) {
+			throw new EOFException("Truncated BGZF block");
+		}
+		return member;
+	}
+
+	/**
+	 * Inflate a block, in an executor thread.
+	 * 
+	 * @param member gzip member of the block
+	 * @return inflated data
+	 * @throws IOException
+	 */
+	protected static byte[] inflate(byte[] member) throws IOException {
+		int dataStart = HEADER_SIZE + readShort(member, 10);
+		int dataEnd = member.length - TRAILER_SIZE;
+		int size = readInt(member, dataEnd + 4);
+		byte[] data = new byte[size];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, dataStart, dataEnd - dataStart);
+			int n = 0;
+			while(n < size) {
+				int inflated = inflater.inflate(data, n, size - n);
+				if(inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new ZipException("Corrupted BGZF block");
+				}
+				n += inflated;
+			}
+		} catch(DataFormatException e) {
+			throw new ZipException("Corrupted BGZF block: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, size);
+		if((int) crc.getValue() != readInt(member, dataEnd)) {
+			throw new ZipException("CRC mismatch in BGZF block");
+		}
+		return data;
+	}
+
+	/** Wait for an inflated block */
+	protected byte[] await(Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("BGZF decompression interrupted");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("BGZF decompression failed", e.getCause());
+		}
+	}
+
+	protected int readFully(byte[] buffer, int offset, int length) throws IOException {
+		int total = 0;
+		while(total < length) {
+			int n = input.read(buffer, offset + total, length - total);
+			if(n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+
+	protected static int readShort(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+	}
+
+	protected static int readInt(byte[] buffer, int offset) {
+		return readShort(buffer, offset) | readShort(buffer, offset + 2) << 16;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pending.forEach(f -> f.cancel(true));
+		pending.clear();
+		input.close();
+	}
+
+}
@@ -0,0 +1,136 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.compress;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+/**
+ * 
+ * Compression formats of the input files, detected
+ * from the magic bytes at the start of the file.
+ * 
+ * @author ActiveViam
+ *
+ */
+public enum Compression {
+
+	/** Plain text */
+	NONE,
+
+	/** Gzip, possibly with several concatenated members */
+	GZIP,
+
+	/** Block gzip (BGZF), a series of independent gzip blocks that can be inflated in parallel */
+	BGZIP,
+
+	/** Zstandard */
+	ZSTD;
+
+	/** Number of bytes needed to detect the compression */
+	public static final int HEADER_SIZE = 16;
+
+	/** Buffer size of the decompressed streams */
+	protected static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Detect the compression of an input from its first bytes.
+	 * 
+	 * @param header first bytes of the input
+	 * @param length number of bytes available in the header
+	 * @return compression format
+	 */
+	public static Compression detect(byte[] header, int length) {
+		if(length >= 4 && (header[0] & 0xFF) == 0x28 && (header[1] & 0xFF) == 0xB5
+				&& (header[2] & 0xFF) == 0x2F && (header[3] & 0xFF) == 0xFD) {
+			return ZSTD;
+		}
+		if(length >= 3 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8) {
+			// BGZF members carry a 'BC' extra subfield with the size of the block
+			boolean extra = length >= 4 && (header[3] & 0x04) != 0;
+			if(extra && length >= 16 && header[12] == 'B' && header[13] == 'C' && header[14] == 2 && header[15] == 0) {
+				return BGZIP;
+			}
+			return GZIP;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Detect the compression of an input, without consuming it.
+	 * 
+	 * @param is input stream, must support mark and reset
+	 * @return compression format
+	 * @throws IOException
+	 */
+	public static Compression detect(InputStream is) throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		is.mark(HEADER_SIZE);
+		int length = 0;
+		try {
+			int n;
+			while(length < HEADER_SIZE && (n = is.read(header, length, HEADER_SIZE - length)) > 0) {
+				length += n;
+			}
+		} finally {
+			is.reset();
+		}
+		return detect(header, length);
+	}
+
+	/**
+	 * Decompress an input while it is read, sequentially.
+	 * 
+	 * @param is raw input stream
+	 * @return decompressed stream
+	 * @throws IOException
+	 */
+	public static InputStream decompress(InputStream is) throws IOException {
+		return decompress(is, null, 1);
+	}
+
+	/**
+	 * Decompress an input while it is read. Block gzip inputs are
+	 * inflated in parallel by the executor, the other formats are
+	 * a single compressed stream and are decompressed sequentially.
+	 * 
+	 * @param is raw input stream
+	 * @param executor executor inflating the blocks in parallel, null to decompress sequentially
+	 * @param parallelism number of blocks inflated at the same time
+	 * @return decompressed stream
+	 * @throws IOException
+	 */
+	public static InputStream decompress(InputStream is, ExecutorService executor, int parallelism) throws IOException {
+		BufferedInputStream input = new BufferedInputStream(is, BUFFER_SIZE);
+		switch(detect(input)) {
+		case BGZIP:
+			// A BGZF file is also a valid multi member gzip file
+			return executor != null ? new BGZFInputStream(input, executor, parallelism) : new GZIPInputStream(input, BUFFER_SIZE);
+		case GZIP: return new GZIPInputStream(input, BUFFER_SIZE);
+		case ZSTD: return new ZstdInputStream(input);
+		default: return input;
+		}
+	}
+
+}
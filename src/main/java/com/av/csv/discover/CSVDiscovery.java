@@ -33,11 +33,14 @@ import java.time.temporal.TemporalAccessor;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import com.activeviam.fwk.ActiveViamRuntimeException;
 import com.av.csv.CSVFormat;
 import com.av.csv.CSVSplitter;
+import com.av.csv.ColumnSelector;
+import com.av.csv.compress.Compression;
 import com.quartetfs.fwk.Registry;
 import com.quartetfs.fwk.format.IParser;
 import com.quartetfs.fwk.impl.Pair;
@@ -65,11 +68,17 @@ public class CSVDiscovery {
 	/** Number of rows sampled when detecting column types */
 	public static final int DATATYPE_DETECTION_SAMPLE = 100;
 	
+	/** Maximum number of columns of a discovered candidate key */
+	public static final int MAX_KEY_COLUMNS = 3;
+	
 	/** Candidate separators */
 	protected final List<String> separators;
 
 	/** Candidate parsers */
 	protected final List<IParser<?>> parsers;
+
+	/** Selection of the discovered columns */
+	protected ColumnSelector columnSelector = ColumnSelector.ALL;
 	
 	/**
 	 * Constructor with default options
@@ -90,6 +99,16 @@ public class CSVDiscovery {
 		this.parsers = parsers;
 	}
 
+	/**
+	 * Only discover the selected columns, the other columns
+	 * of the file are ignored by AutoPivot.
+	 * 
+	 * @param columnSelector selection of the columns
+	 */
+	public void setColumnSelector(ColumnSelector columnSelector) {
+		this.columnSelector = columnSelector;
+	}
+
 	/** @return the default list of parsers */
 	public static List<IParser<?>> createDefaultParsers() {
 
@@ -146,10 +165,24 @@ public class CSVDiscovery {
 	 * @throws IOException
 	 */
 	public CSVFormat discoverFile(String fileName, Charset charset) throws IOException {
+		return discover(openFile(fileName), fileName, charset);
+	}
+
+	/**
+	 * 
+	 * Discover the CSV format of CSV content, read from
+	 * an input stream. Only the first lines are read.
+	 * 
+	 * @param is input stream, closed at the end of the discovery
+	 * @param fileName name of the input, for the messages
+	 * @param charset
+	 * @return CSV Format
+	 * @throws IOException
+	 */
+	public CSVFormat discover(InputStream is, String fileName, Charset charset) throws IOException {
 		
 		LOG.info("Detecting CSV parser configuration for file " + fileName);
 		
-		InputStream is = openFile(fileName);
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset))) {
 			List<String> lines = reader.lines().limit(1000L).collect(Collectors.toList());
 			if(lines.size() <= 0) {
@@ -167,23 +200,111 @@ public class CSVDiscovery {
 			
 			LOG.info("Column names: " + headers);
 			
+			// Select the columns
+			List<Integer> selected = new ArrayList<>();
+			for(int c = 0; c < headers.size(); c++) {
+				if(columnSelector.isSelected(headers.get(c))) {
+					selected.add(c);
+				}
+			}
+			if(selected.isEmpty()) {
+				throw new ActiveViamRuntimeException("No column of " + fileName + " is selected (" + columnSelector + ")");
+			}
+			if(selected.size() < headers.size()) {
+				final List<String> allHeaders = headers;
+				headers = selected.stream().map(allHeaders::get).collect(Collectors.toList());
+				LOG.info("Selected columns: " + headers);
+			}
+			
 			// Remove header and detect column types
 			List<String> content = lines.subList(1, lines.size());
 			boolean quoteProcessing = detectQuoteProcessing(content, separator);
 
-			List<List<String>> columns = toColumns(content, separator);
-			List<String> types = new ArrayList<>(columns.size());
-			for(List<String> column : columns) {
-				String type = detectType(column);
-				types.add(type);
+			List<List<String>> allColumns = toColumns(content, separator);
+			List<List<String>> columns = new ArrayList<>(selected.size());
+			List<String> types = new ArrayList<>(selected.size());
+			List<ColumnStatistics> statistics = new ArrayList<>(selected.size());
+			for(int c : selected) {
+				List<String> column = c < allColumns.size() ? allColumns.get(c) : Collections.emptyList();
+				columns.add(column);
+				types.add(detectType(column));
+				ColumnStatistics columnStatistics = new ColumnStatistics();
+				column.forEach(columnStatistics::add);
+				statistics.add(columnStatistics);
 			}
 
 			LOG.info("Detected types: " + types);
 			
-			return new CSVFormat(separator, headers, types, quoteProcessing);
+			FunctionalDependencies dependencies = createDependencies(types);
+			String[] row = new String[columns.size()];
+			for(int r = 0; r < content.size(); r++) {
+				for(int c = 0; c < columns.size(); c++) {
+					row[c] = r < columns.get(c).size() ? columns.get(c).get(r) : "";
+				}
+				dependencies.add(row);
+			}
+
+			List<String> candidateKey = detectKey(headers, types, columns);
+			if(!candidateKey.isEmpty()) {
+				LOG.info("Candidate key: " + candidateKey);
+			}
+			
+			int sourceColumnCount = CSVSplitter.split(lines.get(0), separator).length;
+			return new CSVFormat(separator, headers, types, quoteProcessing)
+					.withCandidateKey(candidateKey)
+					.withSourceColumns(selected, sourceColumnCount)
+					.withStatistics(statistics, dependencies);
 		}
 	}
 
+	/**
+	 * @param types types of the columns
+	 * @return empty functional dependencies between the columns that are not floating point or long values
+	 */
+	protected FunctionalDependencies createDependencies(List<String> types) {
+		return new FunctionalDependencies(IntStream.range(0, types.size())
+				.filter(c -> !"double".equals(types.get(c)) && !"float".equals(types.get(c)) && !"long".equals(types.get(c)))
+				.toArray());
+	}
+
+	/**
+	 * 
+	 * Collect the statistics of the values of the columns and the functional
+	 * dependencies between the columns from a sample of the input,
+	 * usually a random sample spread over the whole file, see {@link com.av.csv.load.SampleInputStream}.
+	 * 
+	 * @param is sampled lines, without header, closed at the end of the collection
+	 * @param charset
+	 * @param format format of the input
+	 * @return the format, with the statistics and dependencies of the sample
+	 * @throws IOException
+	 */
+	public CSVFormat collectStatistics(InputStream is, Charset charset, CSVFormat format) throws IOException {
+		List<ColumnStatistics> statistics = new ArrayList<>(format.getColumnCount());
+		List<String> types = new ArrayList<>(format.getColumnCount());
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			statistics.add(new ColumnStatistics());
+			types.add(format.getColumnType(c));
+		}
+		FunctionalDependencies dependencies = createDependencies(types);
+		String[] row = new String[format.getColumnCount()];
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = CSVSplitter.split(line, format.getSeparator());
+				if(fields.length != format.getSourceColumnCount()) {
+					continue;
+				}
+				for(int c = 0; c < format.getColumnCount(); c++) {
+					row[c] = fields[format.getSourceColumnIndex(c)];
+					statistics.get(c).add(row[c]);
+				}
+				dependencies.add(row);
+			}
+		}
+		return format.withStatistics(statistics, dependencies);
+	}
+
 	/** Convert a list of text rows into columns of text fields */
 	public static List<List<String>> toColumns(List<String> rows, String separator) {
 		
@@ -246,6 +367,73 @@ public class CSVDiscovery {
 	}
 
 
+	/**
+	 * 
+	 * Detect a candidate key: the smallest set of columns
+	 * (up to {@link #MAX_KEY_COLUMNS}) whose values are unique in the sample.
+	 * Floating point columns are not considered. Uniqueness in a sample
+	 * does not guarantee uniqueness in the whole file.
+	 * 
+	 * @param headers column names
+	 * @param types column types
+	 * @param columns sampled columns
+	 * @return candidate key, empty if none was found
+	 */
+	public List<String> detectKey(List<String> headers, List<String> types, List<List<String>> columns) {
+		if(columns.isEmpty() || columns.get(0).size() < 2) {
+			return Collections.emptyList();
+		}
+		
+		List<Integer> candidates = new ArrayList<>();
+		for(int c = 0; c < columns.size() && c < headers.size(); c++) {
+			String type = types.get(c);
+			if(!"double".equals(type) && !"float".equals(type)) {
+				candidates.add(c);
+			}
+		}
+		
+		for(int width = 1; width <= Math.min(MAX_KEY_COLUMNS, candidates.size()); width++) {
+			List<Integer> key = findUniqueCombination(candidates, columns, width, 0, new ArrayList<>());
+			if(key != null) {
+				return key.stream().map(headers::get).collect(Collectors.toList());
+			}
+		}
+		return Collections.emptyList();
+	}
+	
+	/** Depth first search of a combination of columns that is unique in the sample */
+	protected List<Integer> findUniqueCombination(List<Integer> candidates, List<List<String>> columns, int width, int start, List<Integer> prefix) {
+		if(prefix.size() == width) {
+			return isUnique(prefix, columns) ? new ArrayList<>(prefix) : null;
+		}
+		for(int i = start; i < candidates.size(); i++) {
+			prefix.add(candidates.get(i));
+			List<Integer> key = findUniqueCombination(candidates, columns, width, i + 1, prefix);
+			prefix.remove(prefix.size() - 1);
+			if(key != null) {
+				return key;
+			}
+		}
+		return null;
+	}
+	
+	/** @return true if the combination of columns has unique values in the sample */
+	protected boolean isUnique(List<Integer> key, List<List<String>> columns) {
+		int rowCount = columns.get(key.get(0)).size();
+		Set<List<String>> values = new HashSet<>();
+		for(int r = 0; r < rowCount; r++) {
+			List<String> value = new ArrayList<>(key.size());
+			for(int c : key) {
+				List<String> column = columns.get(c);
+				value.add(r < column.size() ? column.get(r) : null);
+			}
+			if(!values.add(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * 
 	 * Detect the csv separator character of a file
@@ -287,13 +475,27 @@ public class CSVDiscovery {
 	/**
 	 * 
 	 * Open a file input stream, works if the file is in the
-	 * classpath or in the file system.
+	 * classpath or in the file system. Compressed files
+	 * (gzip, bgzip, zstd) are decompressed while they are read.
 	 * 
 	 * @param fileName
-	 * @return input stream on the file
+	 * @return input stream on the decompressed content of the file
 	 * @throws IOException
 	 */
 	public InputStream openFile(String fileName) throws IOException {
+		return Compression.decompress(openRawFile(fileName));
+	}
+
+	/**
+	 * 
+	 * Open a file input stream, works if the file is in the
+	 * classpath or in the file system. The content is not decompressed.
+	 * 
+	 * @param fileName
+	 * @return input stream on the file
+	 * @throws IOException
+	 */
+	public InputStream openRawFile(String fileName) throws IOException {
 		InputStream is;
 		
 		Path path = Paths.get(fileName);
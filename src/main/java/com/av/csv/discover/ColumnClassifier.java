@@ -0,0 +1,154 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.Locale;
+
+/**
+ * 
+ * Classification of a column of the input as a hierarchy, a measure
+ * or a field that is only stored for drillthrough, based on the
+ * statistics of its values.
+ * <p>
+ * A hierarchy costs a dictionary of its members and a level in each
+ * aggregate, so the columns whose values are almost all distinct
+ * (identifiers), long (free text) or too numerous are not turned into
+ * hierarchies. An integer column with many distinct values that is not
+ * an identifier is an amount, it only becomes a measure.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class ColumnClassifier {
+
+	/** Default maximum number of members of a hierarchy */
+	public static final long DEFAULT_MAX_MEMBERS = 1_000_000L;
+
+	/** Default share of distinct values above which a column is an identifier */
+	public static final double DEFAULT_IDENTIFIER_UNIQUENESS = 0.9;
+
+	/** Default number of distinct values below which a column always is a hierarchy */
+	public static final long DEFAULT_MIN_IDENTIFIER_VALUES = 1000L;
+
+	/** Default average length of the values above which a column is free text */
+	public static final double DEFAULT_MAX_TEXT_LENGTH = 64.0;
+
+	/** Role of a column in the cube */
+	public enum Role {
+
+		/** Single level hierarchy, and measures for integer columns */
+		HIERARCHY,
+
+		/** Measures only */
+		MEASURE,
+
+		/** Only stored, available in drillthrough */
+		DRILLTHROUGH
+	}
+
+	/** Classification of a column */
+	public static class Classification {
+
+		/** Role of the column */
+		public final Role role;
+
+		/** Explanation of the classification */
+		public final String reason;
+
+		public Classification(Role role, String reason) {
+			this.role = role;
+			this.reason = reason;
+		}
+
+		@Override
+		public String toString() {
+			return role + ": " + reason;
+		}
+	}
+
+	/** Maximum number of members of a hierarchy */
+	protected final long maxMembers;
+
+	/** Share of distinct values above which a column is an identifier */
+	protected final double identifierUniqueness;
+
+	/** Number of distinct values below which a column always is a hierarchy */
+	protected final long minIdentifierValues;
+
+	/** Average length of the values above which a column is free text */
+	protected final double maxTextLength;
+
+	/** Classifier with the default thresholds */
+	public ColumnClassifier() {
+		this(DEFAULT_MAX_MEMBERS, DEFAULT_IDENTIFIER_UNIQUENESS, DEFAULT_MIN_IDENTIFIER_VALUES, DEFAULT_MAX_TEXT_LENGTH);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxMembers maximum number of members of a hierarchy
+	 * @param identifierUniqueness share of distinct values above which a column is an identifier
+	 * @param minIdentifierValues number of distinct values below which a column always is a hierarchy
+	 * @param maxTextLength average length of the values above which a column is free text
+	 */
+	public ColumnClassifier(long maxMembers, double identifierUniqueness, long minIdentifierValues, double maxTextLength) {
+		this.maxMembers = maxMembers;
+		this.identifierUniqueness = identifierUniqueness;
+		this.minIdentifierValues = minIdentifierValues;
+		this.maxTextLength = maxTextLength;
+	}
+
+	/**
+	 * Classify a column that would be a hierarchy by default:
+	 * integer, date or text column.
+	 * 
+	 * @param type type of the column
+	 * @param statistics statistics of the values of the column
+	 * @return classification of the column
+	 */
+	public Classification classify(String type, ColumnStatistics statistics) {
+		long distinct = statistics.getDistinctCount();
+		double uniqueness = statistics.getUniqueness();
+		String uniquenessText = String.format(Locale.ROOT, "%d distinct values in %d sampled rows", distinct, statistics.getRowCount());
+
+		if(distinct < minIdentifierValues) {
+			return new Classification(Role.HIERARCHY, uniquenessText);
+		}
+
+		if("int".equalsIgnoreCase(type)) {
+			String range = String.format(Locale.ROOT, "values from %.0f to %.0f", statistics.getMinNumber(), statistics.getMaxNumber());
+			if(uniqueness >= identifierUniqueness) {
+				return new Classification(Role.DRILLTHROUGH, "identifier, " + uniquenessText + ", " + range);
+			}
+			return new Classification(Role.MEASURE, "amount, " + uniquenessText + ", " + range);
+		}
+
+		if(!CSVDiscovery.isDate(type) && statistics.getAverageLength() > maxTextLength) {
+			return new Classification(Role.DRILLTHROUGH, String.format(Locale.ROOT, "free text, values of %.0f characters on average", statistics.getAverageLength()));
+		}
+		if(uniqueness >= identifierUniqueness) {
+			return new Classification(Role.DRILLTHROUGH, "identifier, " + uniquenessText);
+		}
+		if(distinct > maxMembers) {
+			return new Classification(Role.DRILLTHROUGH, "too many members, " + uniquenessText);
+		}
+		return new Classification(Role.HIERARCHY, uniquenessText);
+	}
+
+}
@@ -0,0 +1,208 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 
+ * Statistics of the values of a column in a sample of the input:
+ * an estimate of the number of distinct values (HyperLogLog) and
+ * a histogram of the frequencies of the values.
+ * <p>
+ * The histogram tracks at most {@link #MAX_TRACKED_VALUES} values,
+ * the values seen after it is full are only counted by the estimator.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class ColumnStatistics {
+
+	/** Maximum number of values tracked by the histogram */
+	public static final int MAX_TRACKED_VALUES = 10_000;
+
+	/** Estimator of the number of distinct values */
+	protected final HyperLogLog distinct = new HyperLogLog();
+
+	/** Number of occurrences of the tracked values */
+	protected final Map<String, Long> histogram = new HashMap<>();
+
+	/** Number of sampled rows */
+	protected long rowCount = 0L;
+
+	/** Number of sampled rows whose value is empty */
+	protected long emptyCount = 0L;
+
+	/** True when values were not tracked because the histogram was full */
+	protected boolean truncated = false;
+
+	/** Total length of the non empty values */
+	protected long totalLength = 0L;
+
+	/** Number of non empty values that are numbers */
+	protected long numberCount = 0L;
+
+	/** Range of the values that are numbers */
+	protected double minNumber = Double.POSITIVE_INFINITY, maxNumber = Double.NEGATIVE_INFINITY;
+
+	/** @param value value of the column in a sampled row */
+	public void add(String value) {
+		rowCount++;
+		if(value == null || value.isEmpty()) {
+			emptyCount++;
+			return;
+		}
+		distinct.add(value);
+		totalLength += value.length();
+		addNumber(value);
+		Long count = histogram.get(value);
+		if(count != null) {
+			histogram.put(value, count + 1L);
+		} else if(histogram.size() < MAX_TRACKED_VALUES) {
+			histogram.put(value, 1L);
+		} else {
+			truncated = true;
+		}
+	}
+
+	/** @param value non empty value, accounted in the numerical range if it is a number */
+	protected void addNumber(String value) {
+		char first = value.charAt(0);
+		if(first != '-' && first != '+' && first != '.' && (first < '0' || first > '9')) {
+			return;
+		}
+		try {
+			double number = Double.parseDouble(value);
+			numberCount++;
+			minNumber = Math.min(minNumber, number);
+			maxNumber = Math.max(maxNumber, number);
+		} catch(NumberFormatException e) {
+			// Not a number
+		}
+	}
+
+	/** @return number of sampled rows */
+	public long getRowCount() { return rowCount; }
+
+	/** @return number of sampled rows whose value is empty */
+	public long getEmptyCount() { return emptyCount; }
+
+	/** @return estimated number of distinct non empty values, exact when the histogram holds all the values */
+	public long getDistinctCount() {
+		return truncated ? Math.max(histogram.size(), distinct.estimate()) : histogram.size();
+	}
+
+	/** @return average length of the non empty values */
+	public double getAverageLength() {
+		long count = rowCount - emptyCount;
+		return count == 0L ? 0.0 : (double) totalLength / count;
+	}
+
+	/** @return true if all the non empty values are numbers */
+	public boolean isNumerical() {
+		return numberCount > 0L && numberCount == rowCount - emptyCount;
+	}
+
+	/** @return smallest numerical value, NaN if no value is a number */
+	public double getMinNumber() {
+		return numberCount == 0L ? Double.NaN : minNumber;
+	}
+
+	/** @return largest numerical value, NaN if no value is a number */
+	public double getMaxNumber() {
+		return numberCount == 0L ? Double.NaN : maxNumber;
+	}
+
+	/**
+	 * Estimate the number of distinct values in the whole input from the sample,
+	 * with the guaranteed error estimator: the values seen once in the sample
+	 * stand for the values that were not sampled, the others are all found.
+	 * 
+	 * @param totalRows estimated number of rows of the input
+	 * @return estimated number of distinct non empty values of the input
+	 */
+	public long estimateDistinctCount(long totalRows) {
+		long sampled = getDistinctCount();
+		if(rowCount == 0L || totalRows <= rowCount) {
+			return sampled;
+		}
+		double scale = (double) totalRows / rowCount;
+		double estimate;
+		if(truncated) {
+			estimate = sampled * scale;
+		} else {
+			long once = histogram.values().stream().filter(count -> count == 1L).count();
+			estimate = Math.sqrt(scale) * once + (sampled - once);
+		}
+		long nonEmpty = Math.round((rowCount - emptyCount) * scale);
+		return Math.max(sampled, Math.min(nonEmpty, Math.round(estimate)));
+	}
+
+	/** @return share of the sampled rows holding the most frequent value (empty values included) */
+	public double getTopFrequency() {
+		if(rowCount == 0L) {
+			return 0.0;
+		}
+		long top = emptyCount;
+		for(long count : histogram.values()) {
+			top = Math.max(top, count);
+		}
+		return (double) top / rowCount;
+	}
+
+	/** @return share of the sampled rows that hold a distinct value, close to 1 for identifiers */
+	public double getUniqueness() {
+		return rowCount == 0L ? 0.0 : Math.min(1.0, (double) getDistinctCount() / rowCount);
+	}
+
+	/**
+	 * Simulate the hash partitioning of the sampled rows on this column.
+	 * Values that are not tracked by the histogram are assumed to be
+	 * spread evenly.
+	 * 
+	 * @param partitionCount number of partitions
+	 * @return size of the largest partition divided by the average partition size, 1 when perfectly balanced
+	 */
+	public double getPartitionSkew(int partitionCount) {
+		if(rowCount == 0L) {
+			return 1.0;
+		}
+		double[] loads = new double[partitionCount];
+		long tracked = 0L;
+		for(Map.Entry<String, Long> entry : histogram.entrySet()) {
+			loads[Math.floorMod(entry.getKey().hashCode(), partitionCount)] += entry.getValue();
+			tracked += entry.getValue();
+		}
+		// Empty values all go to the same partition
+		loads[0] += emptyCount;
+		double untracked = (double) (rowCount - tracked - emptyCount) / partitionCount;
+		double max = 0.0;
+		for(double load : loads) {
+			max = Math.max(max, load + untracked);
+		}
+		return max * partitionCount / rowCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d distinct values, top value in %.1f%% of the rows", getDistinctCount(), 100.0 * getTopFrequency());
+	}
+
+}
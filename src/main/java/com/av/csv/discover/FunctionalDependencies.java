@@ -0,0 +1,176 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * Functional dependencies between the columns of the input, detected
+ * in a sample: a column determines another column when each of its
+ * values is always found with the same value of the other column,
+ * for instance a city always belongs to the same country.
+ * <p>
+ * The dependencies are chained into multi-level hierarchies, from
+ * the column with the fewest values (Country) to the column with the
+ * most values (City). The mapping of the values of each pair of
+ * columns is discarded as soon as a value is found with two different
+ * values, so only the dependencies that still hold consume memory.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class FunctionalDependencies {
+
+	/** Maximum number of candidate columns, the number of tracked pairs grows with its square */
+	public static final int MAX_COLUMNS = 32;
+
+	/** Maximum number of values of a column tracked for each pair of columns */
+	public static final int MAX_TRACKED_VALUES = 10_000;
+
+	/** Indexes of the candidate columns */
+	protected final int[] columns;
+
+	/**
+	 * Value of the parent column for each value of the child column, null when the dependency
+	 * does not hold, at index child * number of columns + parent
+	 */
+	protected final List<Map<String, String>> mappings;
+
+	/** Number of sampled rows */
+	protected long rowCount = 0L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param columns indexes of the candidate columns, the first {@link #MAX_COLUMNS} are considered
+	 */
+	public FunctionalDependencies(int[] columns) {
+		this.columns = columns.length > MAX_COLUMNS ? Arrays.copyOf(columns, MAX_COLUMNS) : columns;
+		this.mappings = new ArrayList<>(this.columns.length * this.columns.length);
+		for(int child = 0; child < this.columns.length; child++) {
+			for(int parent = 0; parent < this.columns.length; parent++) {
+				mappings.add(child != parent ? new HashMap<>() : null);
+			}
+		}
+	}
+
+	/** @param row values of the columns in a sampled row, indexed by column */
+	public void add(String[] row) {
+		rowCount++;
+		for(int child = 0; child < columns.length; child++) {
+			String childValue = row[columns[child]];
+			for(int parent = 0; parent < columns.length; parent++) {
+				Map<String, String> mapping = mappings.get(child * columns.length + parent);
+				if(mapping == null) {
+					continue;
+				}
+				String parentValue = row[columns[parent]];
+				String previous = mapping.get(childValue);
+				if(previous == null) {
+					if(mapping.size() < MAX_TRACKED_VALUES) {
+						mapping.put(childValue, parentValue);
+					}
+				} else if(!previous.equals(parentValue)) {
+					mappings.set(child * columns.length + parent, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param child index of the child column
+	 * @param parent index of the parent column
+	 * @return true if each value of the child column was found with only one value of the parent column
+	 */
+	public boolean determines(int child, int parent) {
+		int c = indexOf(child);
+		int p = indexOf(parent);
+		return rowCount > 0L && c >= 0 && p >= 0 && c != p && mappings.get(c * columns.length + p) != null;
+	}
+
+	/**
+	 * Chain the dependencies into hierarchies. The parent of a column is
+	 * the column with the most distinct values among the columns it
+	 * determines that have fewer distinct values than itself. Columns
+	 * with a single value, and columns whose values are not repeated
+	 * in the sample, are not part of any hierarchy.
+	 * 
+	 * @param statistics statistics of the values of each column
+	 * @return hierarchies as lists of column indexes, from the top level down to the leaf level
+	 */
+	public List<List<Integer>> getHierarchies(List<ColumnStatistics> statistics) {
+		int[] parents = new int[columns.length];
+		boolean[] hasChild = new boolean[columns.length];
+		for(int child = 0; child < columns.length; child++) {
+			parents[child] = -1;
+			long childCount = distinctCount(statistics, child);
+			if(childCount * 2 > rowCount) {
+				continue;
+			}
+			long parentCount = 0L;
+			for(int parent = 0; parent < columns.length; parent++) {
+				long count = distinctCount(statistics, parent);
+				if(child != parent && mappings.get(child * columns.length + parent) != null && count > 1L && count < childCount && count > parentCount) {
+					parents[child] = parent;
+					parentCount = count;
+				}
+			}
+			if(parents[child] >= 0) {
+				hasChild[parents[child]] = true;
+			}
+		}
+
+		List<List<Integer>> hierarchies = new ArrayList<>();
+		for(int leaf = 0; leaf < columns.length; leaf++) {
+			if(hasChild[leaf] || parents[leaf] < 0) {
+				continue;
+			}
+			List<Integer> levels = new ArrayList<>();
+			for(int level = leaf; level >= 0; level = parents[level]) {
+				levels.add(columns[level]);
+			}
+			Collections.reverse(levels);
+			hierarchies.add(levels);
+		}
+		return hierarchies;
+	}
+
+	/** @return number of sampled rows */
+	public long getRowCount() { return rowCount; }
+
+	protected long distinctCount(List<ColumnStatistics> statistics, int candidate) {
+		return statistics.get(columns[candidate]).getDistinctCount();
+	}
+
+	protected int indexOf(int column) {
+		for(int c = 0; c < columns.length; c++) {
+			if(columns[c] == column) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+}
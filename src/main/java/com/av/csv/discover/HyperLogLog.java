@@ -0,0 +1,111 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+/**
+ * 
+ * HyperLogLog estimator of the number of distinct values,
+ * with a fixed memory footprint of 2^precision bytes.
+ * <p>
+ * Small cardinalities are estimated with linear counting,
+ * the standard error is about 1.04 / sqrt(2^precision).
+ * 
+ * @author ActiveViam
+ *
+ */
+public class HyperLogLog {
+
+	/** Default precision, 4096 registers and a standard error of 1.6% */
+	public static final int DEFAULT_PRECISION = 12;
+
+	/** Number of bits of the hash selecting the register */
+	protected final int precision;
+
+	/** Registers, the maximum rank observed for each */
+	protected final byte[] registers;
+
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/** @param precision number of bits selecting the register, between 4 and 18 */
+	public HyperLogLog(int precision) {
+		if(precision < 4 || precision > 18) {
+			throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/** @param value value to count, hashed character by character */
+	public void add(CharSequence value) {
+		addHash(hash(value));
+	}
+
+	/** @param hash 64 bits hash of the value to count */
+	public void addHash(long hash) {
+		int register = (int) (hash >>> (64 - precision));
+		int rank = Math.min(64 - precision, Long.numberOfLeadingZeros(hash << precision)) + 1;
+		if(rank > registers[register]) {
+			registers[register] = (byte) rank;
+		}
+	}
+
+	/** @return estimated number of distinct values */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0.0;
+		int zeros = 0;
+		for(byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if(r == 0) {
+				zeros++;
+			}
+		}
+		double alpha = 0.7213 / (1.0 + 1.079 / m);
+		double estimate = alpha * m * m / sum;
+		if(estimate <= 2.5 * m && zeros > 0) {
+			// Linear counting is more accurate for small cardinalities
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * 64 bits hash: FNV-1a over the characters, then the
+	 * MurmurHash3 finalizer to spread the bits.
+	 * 
+	 * @param value value
+	 * @return 64 bits hash
+	 */
+	public static long hash(CharSequence value) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -0,0 +1,155 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.av.csv.CSVFormat;
+
+/**
+ * 
+ * Choice of the partitioning field and of the number of partitions,
+ * based on the statistics of the columns.
+ * <p>
+ * Each candidate field is evaluated by simulating the hash partitioning
+ * of the sampled rows: its effective parallelism is the number of rows
+ * divided by the size of the largest partition. Identifiers, whose values
+ * are almost all distinct, balance well but never prune a partition, they
+ * are only chosen when no other field qualifies. Among the fields whose
+ * parallelism is close to the best one, the field with the fewest distinct
+ * values is chosen, it is the most likely to be filtered on by queries.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class PartitioningAdvisor {
+
+	/** Share of distinct values in the sample above which a field is considered an identifier */
+	public static final double IDENTIFIER_UNIQUENESS = 0.5;
+
+	/** Fields reaching this share of the best parallelism are considered as balanced as the best */
+	public static final double PARALLELISM_TOLERANCE = 0.8;
+
+	/** Partitioning choice */
+	public static class Choice {
+
+		/** Partitioning field */
+		public final String field;
+
+		/** Number of partitions */
+		public final int partitionCount;
+
+		/** Explanation of the choice */
+		public final String reason;
+
+		public Choice(String field, int partitionCount, String reason) {
+			this.field = field;
+			this.partitionCount = partitionCount;
+			this.reason = reason;
+		}
+
+		@Override
+		public String toString() {
+			return field + " (" + partitionCount + " partitions): " + reason;
+		}
+	}
+
+	/** Evaluation of a candidate field */
+	protected static class Candidate {
+
+		protected final String field;
+
+		protected final ColumnStatistics statistics;
+
+		/** Number of partitions with the best parallelism */
+		protected int partitionCount;
+
+		/** Rows divided by the rows of the largest partition */
+		protected double parallelism;
+
+		protected Candidate(String field, ColumnStatistics statistics) {
+			this.field = field;
+			this.statistics = statistics;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s (%d distinct, top value %.1f%%, parallelism %.1f on %d partitions)",
+					field, statistics.getDistinctCount(), 100.0 * statistics.getTopFrequency(), parallelism, partitionCount);
+		}
+	}
+
+	/**
+	 * @param format input format, with column statistics
+	 * @param candidates names of the fields that can be used for partitioning
+	 * @param maxPartitions maximum number of partitions, at least 2
+	 * @return partitioning choice, null if there is no candidate or if the statistics are unknown
+	 */
+	public Choice choose(CSVFormat format, List<String> candidates, int maxPartitions) {
+		List<Candidate> evaluated = new ArrayList<>();
+		for(String field : candidates) {
+			ColumnStatistics statistics = format.getColumnStatistics(format.getColumnNames().indexOf(field));
+			if(statistics == null || statistics.getRowCount() == 0L) {
+				return null;
+			}
+			Candidate candidate = new Candidate(field, statistics);
+			// More partitions are preferred when they are as balanced
+			for(int n = 2; n <= maxPartitions; n++) {
+				double parallelism = n / statistics.getPartitionSkew(n);
+				if(parallelism >= candidate.parallelism) {
+					candidate.parallelism = parallelism;
+					candidate.partitionCount = n;
+				}
+			}
+			evaluated.add(candidate);
+		}
+		if(evaluated.isEmpty()) {
+			return null;
+		}
+
+		// Identifiers are only used when there is nothing else
+		List<Candidate> eligible = new ArrayList<>();
+		for(Candidate candidate : evaluated) {
+			if(candidate.statistics.getUniqueness() <= IDENTIFIER_UNIQUENESS) {
+				eligible.add(candidate);
+			}
+		}
+		if(eligible.isEmpty()) {
+			eligible = evaluated;
+		}
+
+		double best = eligible.stream().mapToDouble(c -> c.parallelism).max().getAsDouble();
+		Candidate chosen = null;
+		for(Candidate candidate : eligible) {
+			if(candidate.parallelism >= PARALLELISM_TOLERANCE * best
+					&& (chosen == null || candidate.statistics.getDistinctCount() < chosen.statistics.getDistinctCount())) {
+				chosen = candidate;
+			}
+		}
+
+		List<Candidate> others = new ArrayList<>(evaluated);
+		others.remove(chosen);
+		String reason = "best balanced field with the fewest values: " + chosen
+				+ (others.isEmpty() ? "" : ", other candidates: " + others);
+		return new Choice(chosen.field, chosen.partitionCount, reason);
+	}
+
+}
@@ -0,0 +1,171 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * Follow an append-only CSV file, and load the lines
+ * appended to it as small incremental transactions.
+ * <p>
+ * The follower remembers the offset of the last committed line
+ * and only parses the complete lines appended after it. Changes
+ * are detected with a {@link WatchService} on the parent directory,
+ * the file size is also polled periodically because watch services
+ * are not reliable on all file systems (network shares for instance).
+ * 
+ * @author ActiveViam
+ *
+ */
+public class CSVFileFollower implements Runnable {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(CSVFileFollower.class.getName());
+
+	/** Default polling interval, in milliseconds */
+	public static final long DEFAULT_POLL_INTERVAL = 1000L;
+
+	/** Followed file */
+	protected final Path path;
+
+	/** Loader of the appended lines */
+	protected final CSVLoader loader;
+
+	/** Polling interval, in milliseconds */
+	protected final long pollInterval;
+
+	/** Offset after the last committed line */
+	protected volatile long offset;
+
+	/** Set to stop following the file */
+	protected volatile boolean stopped = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param path followed file
+	 * @param loader loader of the appended lines
+	 * @param offset offset after the last committed line
+	 * @param pollInterval polling interval, in milliseconds
+	 */
+	public CSVFileFollower(Path path, CSVLoader loader, long offset, long pollInterval) {
+		this.path = path.toAbsolutePath();
+		this.loader = loader;
+		this.offset = offset;
+		this.pollInterval = pollInterval;
+	}
+
+	/** @return offset after the last committed line */
+	public long getOffset() { return offset; }
+
+	/** Stop following the file */
+	public void stop() { this.stopped = true; }
+
+	@Override
+	public void run() {
+		LOGGER.info("Following " + path + " from offset " + offset);
+		try(WatchService watcher = createWatchService()) {
+			while(!stopped && !Thread.currentThread().isInterrupted()) {
+				if(watcher != null) {
+					WatchKey key = watcher.poll(pollInterval, TimeUnit.MILLISECONDS);
+					if(key != null) {
+						key.pollEvents();
+						key.reset();
+					}
+				} else {
+					Thread.sleep(pollInterval);
+				}
+				poll();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(Exception e) {
+			LOGGER.log(Level.SEVERE, "Stopped following " + path, e);
+			return;
+		}
+		LOGGER.info("Stopped following " + path);
+	}
+
+	/**
+	 * Load the lines appended to the file since the last commit.
+	 * 
+	 * @return number of bytes committed
+	 * @throws IOException
+	 */
+	public long poll() throws IOException {
+		if(!Files.exists(path)) {
+			return 0L;
+		}
+		long size = Files.size(path);
+		if(size < offset) {
+			// The file is not append-only, the committed offset is meaningless
+			LOGGER.warning("File " + path + " was truncated from " + offset + " to " + size + " bytes, it is no longer followed.");
+			stop();
+			return 0L;
+		}
+		if(size == offset) {
+			return 0L;
+		}
+		if(loader.getProgress() != null) {
+			loader.getProgress().setTotalBytes(size);
+		}
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.position(offset);
+			InputStream is = Channels.newInputStream(channel);
+			long newOffset = loader.load(is, offset, false, true);
+			long committed = newOffset - offset;
+			offset = newOffset;
+			return committed;
+		}
+	}
+
+	/** @return a watch service on the parent directory, or null if not supported */
+	protected WatchService createWatchService() {
+		WatchService watcher = null;
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			path.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+			return watcher;
+		} catch(IOException | UnsupportedOperationException e) {
+			if(watcher != null) {
+				try { watcher.close(); } catch(IOException ignored) {}
+			}
+			LOGGER.info("Watch service not available for " + path + ", falling back to polling: " + e);
+			return null;
+		}
+	}
+
+}
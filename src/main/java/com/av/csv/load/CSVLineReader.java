@@ -0,0 +1,183 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 
+ * Read the text lines of a CSV input stream, keeping track
+ * of the byte offset of each line in the stream.
+ * <p>
+ * Lines are split on the '\n' byte (an optional '\r' before it
+ * is removed) so the charset must be ASCII compatible,
+ * which is the case of UTF-8 and the ISO-8859 family.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class CSVLineReader implements Closeable {
+
+	/** Default size of the read buffer */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	/** Underlying input stream */
+	protected final InputStream is;
+
+	/** Charset used to decode the lines */
+	protected final Charset charset;
+
+	/** When true the last line is only returned if it is terminated */
+	protected final boolean completeLinesOnly;
+
+	/** Read buffer */
+	protected byte[] buffer;
+
+	/** Position of the next unread byte in the buffer */
+	protected int position = 0;
+
+	/** Number of valid bytes in the buffer */
+	protected int limit = 0;
+
+	/** Position from which to look for the next line terminator */
+	protected int scan = 0;
+
+	/** True when the end of the stream was reached */
+	protected boolean eof = false;
+
+	/** Offset in the stream of the next unread byte */
+	protected long offset;
+
+	/** Offset in the stream of the last line returned */
+	protected long lineOffset;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param is input stream, positioned at the start offset
+	 * @param charset charset of the text
+	 * @param startOffset offset in the stream of its first byte
+	 * @param completeLinesOnly ignore a last line that is not terminated
+	 */
+	public CSVLineReader(InputStream is, Charset charset, long startOffset, boolean completeLinesOnly) {
+		this.is = is;
+		this.charset = charset;
+		this.offset = startOffset;
+		this.lineOffset = startOffset;
+		this.completeLinesOnly = completeLinesOnly;
+		this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+	}
+
+	/**
+	 * Read the next line.
+	 * 
+	 * @return the next line, without its terminator, or null at the end of the stream
+	 * @throws IOException
+	 */
+	public String readLine() throws IOException {
+		while(true) {
+			for(int i = scan; i < limit; i++) {
+				if(buffer[i] == '\n') {
+					return nextLine(i, i + 1);
+				}
+			}
+			scan = limit;
+
+			if(eof) {
+				if(position < limit && !completeLinesOnly) {
+					return nextLine(limit, limit);
+				}
+				return null;
+			}
+			fill();
+		}
+	}
+
+	/**
+	 * @return true if the next line can be read without waiting for
+	 * the stream: a complete line is buffered or the stream has bytes available
+	 * @throws IOException
+	 */
+	public boolean ready() throws IOException {
+		for(int i = scan; i < limit; i++) {
+			if(buffer[i] == '\n') {
+				// No line terminator before i, the next scan can start from there
+				scan = i;
+				return true;
+			}
+		}
+		scan = limit;
+		return eof || is.available() > 0;
+	}
+
+	/** @return offset in the stream of the last line returned */
+	public long getLineOffset() { return lineOffset; }
+
+	/** @return offset in the stream right after the last line returned */
+	public long getOffset() { return offset; }
+
+	/**
+	 * Extract the line that ends at the given position.
+	 * 
+	 * @param end end of the line content (excluded)
+	 * @param next start of the next line
+	 * @return decoded line
+	 */
+	protected String nextLine(int end, int next) {
+		int contentEnd = end;
+		if(contentEnd > position && buffer[contentEnd - 1] == '\r') {
+			contentEnd--;
+		}
+		String line = new String(buffer, position, contentEnd - position, charset);
+		lineOffset = offset;
+		offset += next - position;
+		position = next;
+		scan = next;
+		return line;
+	}
+
+	/** Read more bytes from the stream, compacting or growing the buffer */
+	protected void fill() throws IOException {
+		if(position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			scan -= position;
+			position = 0;
+		}
+		if(limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		}
+		int read = is.read(buffer, limit, buffer.length - limit);
+		if(read < 0) {
+			eof = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
+
+}
@@ -0,0 +1,515 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.av.csv.load.RejectCollector.Reason;
+
+/**
+ * 
+ * Streaming loader of CSV data, an alternative to the ActivePivot
+ * CSV source that commits the data periodically in several
+ * transactions instead of one, so that the data is available
+ * for queries while the input is still being loaded.
+ * <p>
+ * Lines are read sequentially and parsed by batches in parallel.
+ * Parsed batches are committed in the order of the input, so the
+ * committed offset always designates a prefix of the input that
+ * is entirely loaded.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class CSVLoader {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(CSVLoader.class.getName());
+
+	/** Default number of lines parsed by one parsing task */
+	public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+	/** Default number of rows committed in one transaction */
+	public static final int DEFAULT_COMMIT_SIZE = 1_000_000;
+
+	/** Default maximum delay between two commits, in milliseconds */
+	public static final long DEFAULT_COMMIT_INTERVAL = 10_000L;
+
+	/** Row parser */
+	protected final CSVRowParser parser;
+
+	/** Destination of the parsed tuples */
+	protected final ITupleWriter writer;
+
+	/** Charset of the input */
+	protected final Charset charset;
+
+	/** Executor running the parsing tasks */
+	protected final ExecutorService executor;
+
+	/** Maximum number of batches being parsed at the same time */
+	protected final int parallelism;
+
+	/** Loading progress, optional */
+	protected LoadProgress progress;
+
+	/** Filter of the rows, optional */
+	protected RowFilter filter;
+
+	/** Pre-aggregation of the rows, optional */
+	protected TupleRollup rollup;
+
+	/** Order of the rows within a transaction, optional */
+	protected TupleComparator clustering;
+
+	/** Number of lines parsed by one parsing task */
+	protected int batchSize = DEFAULT_BATCH_SIZE;
+
+	/** Number of rows committed in one transaction */
+	protected int commitSize = DEFAULT_COMMIT_SIZE;
+
+	/** Maximum delay between two commits, in milliseconds */
+	protected long commitInterval = DEFAULT_COMMIT_INTERVAL;
+
+	/** Commit the parsed lines whenever the input has no data available */
+	protected boolean commitOnIdle = false;
+
+	/** Collector of the lines that could not be parsed */
+	protected RejectCollector rejects;
+
+	/** Number of lines rejected by the filter */
+	protected final AtomicLong filteredCount = new AtomicLong();
+
+	/** Number of rejects by reason and column, up to the last committed line */
+	protected Map<String, Long> committedRejects = new TreeMap<>();
+
+	/** Number of lines rejected by the filter, up to the last committed line */
+	protected long committedFiltered = 0L;
+
+	/** Listeners of the commits */
+	protected final List<ICommitListener> listeners = new CopyOnWriteArrayList<>();
+
+	/** True when the current loading failed, the batches being parsed are abandoned */
+	protected volatile boolean aborted = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parser row parser
+	 * @param writer destination of the parsed tuples
+	 * @param charset charset of the input
+	 * @param executor executor running the parsing tasks
+	 * @param parallelism number of parser threads of the executor
+	 */
+	public CSVLoader(CSVRowParser parser, ITupleWriter writer, Charset charset, ExecutorService executor, int parallelism) {
+		this.parser = parser;
+		this.writer = writer;
+		this.charset = charset;
+		this.executor = executor;
+		this.parallelism = Math.max(1, parallelism);
+		this.rejects = new RejectCollector();
+	}
+
+	public void setProgress(LoadProgress progress) { this.progress = progress; }
+
+	public LoadProgress getProgress() { return progress; }
+
+	public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+	public void setCommitSize(int commitSize) { this.commitSize = commitSize; }
+
+	public void setCommitInterval(long commitInterval) { this.commitInterval = commitInterval; }
+
+	public void addCommitListener(ICommitListener listener) { listeners.add(listener); }
+
+	/**
+	 * For inputs produced progressively such as pipes, do not wait for a full batch:
+	 * when no data is available from the input, the lines already read are parsed
+	 * and committed.
+	 * 
+	 * @param commitOnIdle true to commit whenever the input is idle
+	 */
+	public void setCommitOnIdle(boolean commitOnIdle) { this.commitOnIdle = commitOnIdle; }
+
+	/**
+	 * Only load the rows accepted by a filter. The filter is evaluated
+	 * right after the line is split, rejected rows are not parsed.
+	 * 
+	 * @param filter row filter, null to load all the rows
+	 */
+	public void setFilter(RowFilter filter) { this.filter = filter; }
+
+	/**
+	 * Combine the rows that belong to the same group before they are committed.
+	 * Each batch is rolled up by its parser thread, and the groups of the batches
+	 * are merged when they are committed, the tuples written are the rolled up tuples.
+	 * 
+	 * @param rollup pre-aggregation of the rows, null to load the rows as they are
+	 */
+	public void setRollup(TupleRollup rollup) { this.rollup = rollup; }
+
+	/**
+	 * Sort the rows of each transaction before they are committed, so that
+	 * the rows sharing the same values are stored next to each other.
+	 * The rows buffered for one transaction, bounded by the commit size, are sorted.
+	 * 
+	 * @param clustering order of the rows, null to commit the rows in the order of the input
+	 */
+	public void setClustering(TupleComparator clustering) { this.clustering = clustering; }
+
+	/**
+	 * @param rejects collector of the lines that could not be parsed,
+	 * by default they are only counted and logged
+	 */
+	public void setRejects(RejectCollector rejects) { this.rejects = rejects; }
+
+	/** @return number of lines that could not be parsed */
+	public long getErrorCount() { return rejects.getTotal(); }
+
+	/** @return number of lines rejected by the filter */
+	public long getFilteredCount() { return filteredCount.get(); }
+
+	/**
+	 * Discard the counts of the lines read after the last commit, before
+	 * the loading is retried from the offset of the last commit, so that
+	 * the lines read again are not counted twice.
+	 */
+	public synchronized void rollback() {
+		filteredCount.set(committedFiltered);
+		rejects.restore(committedRejects);
+	}
+
+	/**
+	 * 
+	 * Load CSV data from an input stream.
+	 * 
+	 * @param is input stream, positioned at the start offset
+	 * @param startOffset offset in the input of the first byte of the stream
+	 * @param skipHeader true if the stream starts with the header line
+	 * @param completeLinesOnly ignore a last line that is not terminated
+	 * @return offset in the input after the last committed line
+	 * @throws IOException
+	 */
+	public long load(InputStream is, long startOffset, boolean skipHeader, boolean completeLinesOnly) throws IOException {
+		CSVLineReader reader = new CSVLineReader(is, charset, startOffset, completeLinesOnly);
+		if(skipHeader) {
+			reader.readLine();
+		}
+
+		synchronized(this) {
+			committedRejects = rejects.getCounts();
+			committedFiltered = filteredCount.get();
+		}
+		Commits commits = new Commits(reader.getOffset());
+		Deque<Future<ParsedBatch>> pending = new ArrayDeque<>();
+		aborted = false;
+		boolean completed = false;
+		try {
+			LineBatch batch;
+			while((batch = readBatch(reader)) != null) {
+				final LineBatch lines = batch;
+				pending.add(executor.submit(() -> parse(lines)));
+				if(progress != null) {
+					progress.setBytesRead(reader.getOffset());
+				}
+
+				// Commit the parsed batches in order, waiting
+				// when too many batches are being parsed
+				while(pending.size() > parallelism || (!pending.isEmpty() && pending.peek().isDone())) {
+					commits.add(await(pending.poll()));
+				}
+
+				// The input is idle, commit the lines read so far before waiting for more data
+				if(commitOnIdle && !reader.ready()) {
+					while(!pending.isEmpty()) {
+						commits.add(await(pending.poll()));
+					}
+					commits.flush();
+				}
+			}
+			while(!pending.isEmpty()) {
+				commits.add(await(pending.poll()));
+			}
+			commits.flush();
+			completed = true;
+		} finally {
+			if(!completed) {
+				abandon(pending);
+			}
+		}
+
+		return commits.committedOffset;
+	}
+
+	/**
+	 * Abandon the batches being parsed when the loading fails. The parsing
+	 * tasks stop at their next line, and they are awaited so that they no
+	 * longer count rejects once the loading is rolled back.
+	 * 
+	 * @param pending batches being parsed
+	 */
+	protected void abandon(Deque<Future<ParsedBatch>> pending) {
+		aborted = true;
+		for(Future<ParsedBatch> future : pending) {
+			try {
+				future.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				pending.forEach(f -> f.cancel(true));
+				return;
+			} catch(ExecutionException | RuntimeException e) {
+				// The loading already failed
+			}
+		}
+	}
+
+	/**
+	 * Read the next batch of lines.
+	 * 
+	 * @param reader line reader
+	 * @return batch of lines, or null at the end of the input
+	 * @throws IOException
+	 */
+	protected LineBatch readBatch(CSVLineReader reader) throws IOException {
+		LineBatch batch = new LineBatch(batchSize);
+		String line;
+		while(batch.size < batchSize && (batch.size == 0 || !commitOnIdle || reader.ready()) && (line = reader.readLine()) != null) {
+			batch.lines[batch.size] = line;
+			batch.offsets[batch.size] = reader.getLineOffset();
+			batch.size++;
+		}
+		batch.endOffset = reader.getOffset();
+		return batch.size == 0 ? null : batch;
+	}
+
+	/**
+	 * Parse a batch of lines, in a parser thread.
+	 * 
+	 * @param batch lines
+	 * @return parsed tuples
+	 */
+	protected ParsedBatch parse(LineBatch batch) {
+		List<Object[]> tuples = new ArrayList<>(batch.size);
+		Map<String, Long> rejected = new TreeMap<>();
+		long filtered = 0L;
+		for(int i = 0; i < batch.size && !aborted; i++) {
+			String line = batch.lines[i];
+			if(line.isEmpty()) {
+				continue;
+			}
+			// Malformed lines are detected without exceptions
+			String[] fields = parser.trySplit(line);
+			if(fields == null) {
+				reject(rejected, batch.offsets[i], line, Reason.COLUMN_COUNT, null);
+				continue;
+			}
+			// Rows rejected by the filter are neither validated nor converted
+			if(filter != null) {
+				try {
+					if(!filter.test(fields)) {
+						filtered++;
+						continue;
+					}
+				} catch(RuntimeException e) {
+					// Invalid value of a column of the filter
+					int failing = parser.findFailingField(fields);
+					reject(rejected, batch.offsets[i], line, Reason.INVALID_VALUE, failing < 0 ? null : parser.getFormat().getColumnName(failing));
+					continue;
+				}
+			}
+			int invalid = parser.findInvalidField(fields);
+			if(invalid >= 0) {
+				reject(rejected, batch.offsets[i], line, Reason.INVALID_VALUE, parser.getFormat().getColumnName(invalid));
+				continue;
+			}
+			try {
+				tuples.add(parser.toTuple(parser.parseFields(fields)));
+			} catch(RuntimeException e) {
+				// Values that are not checked before parsing, dates for instance
+				int failing = parser.findFailingField(fields);
+				reject(rejected, batch.offsets[i], line, Reason.INVALID_VALUE, failing < 0 ? null : parser.getFormat().getColumnName(failing));
+			}
+		}
+		if(filtered > 0L) {
+			filteredCount.addAndGet(filtered);
+		}
+		if(rollup != null) {
+			tuples = rollup.rollup(tuples);
+		}
+		return new ParsedBatch(tuples, batch.endOffset, rejected, filtered);
+	}
+
+	/** Reject a line, and count it in the rejects of its batch */
+	protected void reject(Map<String, Long> rejected, long offset, String line, Reason reason, String column) {
+		rejected.merge(RejectCollector.key(reason, column), 1L, Long::sum);
+		rejects.reject(offset, line, reason, column);
+	}
+
+	/**
+	 * Commit tuples into the destination.
+	 * 
+	 * @param tuples parsed tuples
+	 * @param endOffset offset in the input after the last line of the tuples
+	 */
+	protected void commit(List<Object[]> tuples, long endOffset) {
+		if(rollup != null) {
+			tuples = rollup.merge(tuples);
+		}
+		if(clustering != null) {
+			tuples = clustering.sort(tuples);
+		}
+		if(!tuples.isEmpty()) {
+			writer.write(tuples);
+			if(progress != null) {
+				progress.committed(tuples.size());
+			}
+		}
+		for(ICommitListener listener : listeners) {
+			listener.committed(tuples, endOffset);
+		}
+	}
+
+	/** Wait for a parsing task */
+	protected ParsedBatch await(Future<ParsedBatch> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("CSV loading interrupted");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("CSV parsing failed", e.getCause());
+		}
+	}
+
+	/** Accumulate parsed batches until they are committed */
+	protected class Commits {
+
+		/** Tuples not committed yet */
+		protected List<Object[]> tuples = new ArrayList<>();
+
+		/** Rejects of the lines not committed yet */
+		protected Map<String, Long> rejected = new TreeMap<>();
+
+		/** Filtered lines not committed yet */
+		protected long filtered = 0L;
+
+		/** Offset after the last accumulated line */
+		protected long offset;
+
+		/** Offset after the last committed line */
+		protected long committedOffset;
+
+		/** Time of the last commit */
+		protected long lastCommit = System.currentTimeMillis();
+
+		protected Commits(long startOffset) {
+			this.offset = startOffset;
+			this.committedOffset = startOffset;
+		}
+
+		protected void add(ParsedBatch batch) {
+			tuples.addAll(batch.tuples);
+			batch.rejected.forEach((key, count) -> rejected.merge(key, count, Long::sum));
+			filtered += batch.filtered;
+			offset = batch.endOffset;
+			if(tuples.size() >= commitSize || System.currentTimeMillis() - lastCommit >= commitInterval) {
+				flush();
+			}
+		}
+
+		protected void flush() {
+			// No complete line since the last commit
+			if(offset == committedOffset) {
+				return;
+			}
+			// Lines that were all filtered or rejected only move the offset, without a transaction
+			commit(tuples, offset);
+			rejects.committed(offset);
+			synchronized(CSVLoader.this) {
+				rejected.forEach((key, count) -> committedRejects.merge(key, count, Long::sum));
+				committedFiltered += filtered;
+			}
+			rejected = new TreeMap<>();
+			filtered = 0L;
+			committedOffset = offset;
+			tuples = new ArrayList<>();
+			lastCommit = System.currentTimeMillis();
+		}
+	}
+
+	/** Batch of text lines */
+	protected static class LineBatch {
+
+		protected final String[] lines;
+
+		/** Offset of each line in the input */
+		protected final long[] offsets;
+
+		protected int size = 0;
+
+		/** Offset after the last line of the batch */
+		protected long endOffset;
+
+		protected LineBatch(int capacity) {
+			this.lines = new String[capacity];
+			this.offsets = new long[capacity];
+		}
+	}
+
+	/** Batch of parsed tuples */
+	protected static class ParsedBatch {
+
+		protected final List<Object[]> tuples;
+
+		/** Offset after the last line of the batch */
+		protected final long endOffset;
+
+		/** Number of rejects of the batch by reason and column */
+		protected final Map<String, Long> rejected;
+
+		/** Number of lines of the batch rejected by the filter */
+		protected final long filtered;
+
+		protected ParsedBatch(List<Object[]> tuples, long endOffset, Map<String, Long> rejected, long filtered) {
+			this.tuples = tuples;
+			this.endOffset = endOffset;
+			this.rejected = rejected;
+			this.filtered = filtered;
+		}
+	}
+
+}
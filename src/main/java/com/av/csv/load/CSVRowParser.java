@@ -0,0 +1,335 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import static com.av.csv.discover.CSVDiscovery.isDate;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+
+import com.av.csv.CSVFormat;
+import com.av.csv.CSVSplitter;
+import com.av.csv.calculator.ADateFieldCalculator;
+import com.av.csv.calculator.DateDayCalculator;
+import com.av.csv.calculator.DateMonthCalculator;
+import com.av.csv.calculator.DateYearCalculator;
+import com.quartetfs.fwk.Registry;
+import com.quartetfs.fwk.format.IParser;
+import com.quartetfs.fwk.types.IPlugin;
+
+/**
+ * 
+ * Convert the text lines of a CSV file into datastore tuples,
+ * following the discovered CSV format and the list of fields
+ * of the target store (including the calculated date fields).
+ * <p>
+ * A row parser is stateless and can be shared by parser threads.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class CSVRowParser {
+
+	/** CSV format */
+	protected final CSVFormat format;
+
+	/** Parser of each column, null for text columns */
+	protected final IParser<?>[] parsers;
+
+	/** For each store field, the index of the column it is based on */
+	protected final int[] fieldColumns;
+
+	/** For each store field, the date calculator deriving it, or null */
+	protected final ADateFieldCalculator[] fieldCalculators;
+
+	/** Columns of the file that are extracted, null when all of them are */
+	protected final boolean[] selectedColumns;
+
+	/** Numeric kind of each column, validated without parsing: 'i' integer, 'd' decimal, 0 other */
+	protected final char[] numericKinds;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param format CSV format
+	 * @param storeFields fields of the target store, in order
+	 */
+	@SuppressWarnings("rawtypes")
+	public CSVRowParser(CSVFormat format, List<String> storeFields) {
+		this.format = format;
+
+		IPlugin<IParser> plugin = Registry.getPlugin(IParser.class);
+		this.parsers = new IParser<?>[format.getColumnCount()];
+		this.numericKinds = new char[format.getColumnCount()];
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			String type = format.getColumnType(c);
+			parsers[c] = "String".equals(type) ? null : plugin.valueOf(type);
+			switch(type.toLowerCase()) {
+			case "int":
+			case "long": numericKinds[c] = 'i'; break;
+			case "double":
+			case "float": numericKinds[c] = 'd'; break;
+			default: numericKinds[c] = 0;
+			}
+		}
+
+		this.fieldColumns = new int[storeFields.size()];
+		this.fieldCalculators = new ADateFieldCalculator[storeFields.size()];
+		for(int f = 0; f < storeFields.size(); f++) {
+			String field = storeFields.get(f);
+			int column = format.getColumnNames().indexOf(field);
+			if(column < 0) {
+				int dot = field.lastIndexOf('.');
+				column = dot < 0 ? -1 : format.getColumnNames().indexOf(field.substring(0, dot));
+				if(column < 0 || !isDate(format.getColumnType(column))) {
+					throw new IllegalArgumentException("Store field '" + field + "' does not match any column of the CSV format.");
+				}
+				fieldCalculators[f] = createCalculator(format.getColumnName(column), field);
+			}
+			fieldColumns[f] = column;
+		}
+
+		if(format.getSourceColumnCount() == format.getColumnCount()) {
+			this.selectedColumns = null;
+		} else {
+			this.selectedColumns = new boolean[format.getSourceColumnCount()];
+			for(int c = 0; c < format.getColumnCount(); c++) {
+				selectedColumns[format.getSourceColumnIndex(c)] = true;
+			}
+		}
+	}
+
+	/**
+	 * Create the calculator of a date sub field.
+	 * 
+	 * @param columnName date column
+	 * @param field name of the calculated field
+	 * @return date field calculator
+	 */
+	protected ADateFieldCalculator createCalculator(String columnName, String field) {
+		String suffix = field.substring(columnName.length());
+		switch(suffix) {
+		case ".YEAR": return new DateYearCalculator(columnName, field);
+		case ".MONTH": return new DateMonthCalculator(columnName, field);
+		case ".DAY": return new DateDayCalculator(columnName, field);
+		default: throw new IllegalArgumentException("Unsupported calculated date field: " + field);
+		}
+	}
+
+	/** @return CSV format */
+	public CSVFormat getFormat() { return format; }
+
+	/**
+	 * Split a line into its text fields. When only some columns
+	 * of the file are selected, the other fields are skipped
+	 * without being extracted.
+	 * 
+	 * @param line text line
+	 * @return text fields, in the order of the selected columns
+	 */
+	public String[] split(String line) {
+		String[] fields = trySplit(line);
+		if(fields == null) {
+			throw new IllegalArgumentException("Expected " + format.getSourceColumnCount() + " fields but found "
+					+ CSVSplitter.split(line, format.getSeparator()).length);
+		}
+		return fields;
+	}
+
+	/**
+	 * Split a line into its text fields, without throwing
+	 * an exception when the line is malformed.
+	 * 
+	 * @param line text line
+	 * @return text fields in the order of the selected columns,
+	 * null if the line does not have the number of fields of the format
+	 */
+	public String[] trySplit(String line) {
+		String[] fields = CSVSplitter.split(line, format.getSeparator(), selectedColumns);
+		if(fields.length != format.getSourceColumnCount()) {
+			return null;
+		}
+		if(selectedColumns == null) {
+			return fields;
+		}
+		String[] selected = new String[format.getColumnCount()];
+		for(int c = 0; c < selected.length; c++) {
+			selected[c] = fields[format.getSourceColumnIndex(c)];
+		}
+		return selected;
+	}
+
+	/**
+	 * Parse the text fields of a row.
+	 * 
+	 * @param fields text fields
+	 * @return parsed values, in the order of the columns
+	 */
+	public Object[] parseFields(String[] fields) {
+		Object[] values = new Object[fields.length];
+		for(int c = 0; c < fields.length; c++) {
+			values[c] = parseField(c, fields[c]);
+		}
+		return values;
+	}
+
+	/**
+	 * Find a field that cannot be parsed, checking the numeric
+	 * fields without parsing them so that malformed rows are
+	 * detected without the cost of an exception.
+	 * 
+	 * @param fields text fields
+	 * @return index of the first invalid numeric field, -1 if the numeric fields are valid
+	 */
+	public int findInvalidField(String[] fields) {
+		for(int c = 0; c < fields.length; c++) {
+			char kind = numericKinds[c];
+			if(kind == 0 || fields[c].isEmpty()) {
+				continue;
+			}
+			String text = fields[c].trim();
+			if(text.isEmpty() || !(kind == 'i' ? isInteger(text) : isDecimal(text))) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the field that made the parsing of a row fail.
+	 * This is slow and only called after a parsing failure.
+	 * 
+	 * @param fields text fields
+	 * @return index of the first field that cannot be parsed, -1 if they can all be parsed
+	 */
+	public int findFailingField(String[] fields) {
+		for(int c = 0; c < fields.length; c++) {
+			try {
+				parseField(c, fields[c]);
+			} catch(RuntimeException e) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/** @return true if the text is an optionally signed integer */
+	protected static boolean isInteger(String text) {
+		int start = text.charAt(0) == '-' || text.charAt(0) == '+' ? 1 : 0;
+		if(start == text.length()) {
+			return false;
+		}
+		for(int i = start; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** @return true if the text is a decimal number, with an optional exponent and suffix */
+	protected static boolean isDecimal(String text) {
+		int i = text.charAt(0) == '-' || text.charAt(0) == '+' ? 1 : 0;
+		if(text.startsWith("NaN", i) || text.startsWith("Infinity", i)) {
+			return text.length() == i + (text.charAt(i) == 'N' ? 3 : 8);
+		}
+		int digits = 0;
+		boolean dot = false;
+		for(; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c >= '0' && c <= '9') {
+				digits++;
+			} else if(c == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		if(digits == 0) {
+			return false;
+		}
+		if(i < text.length() && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if(i < text.length() && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+				i++;
+			}
+			int exponentDigits = 0;
+			for(; i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+				exponentDigits++;
+			}
+			if(exponentDigits == 0) {
+				return false;
+			}
+		}
+		// Java float and double suffixes
+		if(i == text.length() - 1 && "dDfF".indexOf(text.charAt(i)) >= 0) {
+			i++;
+		}
+		return i == text.length();
+	}
+
+	/**
+	 * Parse one text field.
+	 * 
+	 * @param column column index
+	 * @param field text field
+	 * @return parsed value
+	 */
+	public Object parseField(int column, String field) {
+		IParser<?> parser = parsers[column];
+		if(parser == null) {
+			return field;
+		}
+		if(field.isEmpty()) {
+			return null;
+		}
+		return parser.parse(field);
+	}
+
+	/**
+	 * Build the store tuple of a row.
+	 * 
+	 * @param values parsed values, in the order of the columns
+	 * @return tuple, in the order of the store fields
+	 */
+	public Object[] toTuple(Object[] values) {
+		Object[] tuple = new Object[fieldColumns.length];
+		for(int f = 0; f < tuple.length; f++) {
+			Object value = values[fieldColumns[f]];
+			ADateFieldCalculator calculator = fieldCalculators[f];
+			if(calculator != null) {
+				value = value == null ? null : calculator.compute((TemporalAccessor) value);
+			}
+			tuple[f] = value;
+		}
+		return tuple;
+	}
+
+	/**
+	 * Convert a text line into a store tuple.
+	 * 
+	 * @param line text line
+	 * @return tuple
+	 */
+	public Object[] parse(String line) {
+		return toTuple(parseFields(split(line)));
+	}
+
+}
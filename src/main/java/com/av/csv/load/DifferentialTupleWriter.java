@@ -0,0 +1,188 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * Tuple writer that only writes the rows that changed since
+ * they were last written, based on the hash of each row indexed
+ * by the hash of its key. The target store must have key fields,
+ * so that written rows replace the rows with the same key.
+ * <p>
+ * A reload writes the inserted and updated rows while the file is
+ * parsed, then {@link #checkStored(Object[]) checks} the keys of
+ * the store to remove the rows that are no longer in the file.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class DifferentialTupleWriter implements IKeyedTupleWriter {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(DifferentialTupleWriter.class.getName());
+
+	/** Maximum number of rows the index of the rows is presized for, it grows beyond if needed */
+	public static final int MAX_PRESIZED_ROWS = 1 << 24;
+
+	/** Destination of the changed rows */
+	protected final IKeyedTupleWriter delegate;
+
+	/** Hash of the key of a row */
+	protected final TupleHasher keyHasher;
+
+	/** Hash of a row */
+	protected final TupleHasher rowHasher;
+
+	/** Hash of a key read from the store */
+	protected final TupleHasher storedKeyHasher;
+
+	/** Index of the row hashes */
+	protected final RowHashIndex index;
+
+	/** Keys of the removed rows */
+	protected final List<Object[]> removed = new ArrayList<>();
+
+	/** Statistics of the current loading */
+	protected long inserted, updated, unchanged;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param delegate destination of the changed rows
+	 * @param keyFields indexes of the key fields in the tuples
+	 * @param width number of fields of the tuples
+	 */
+	public DifferentialTupleWriter(IKeyedTupleWriter delegate, int[] keyFields, int width) {
+		this(delegate, keyFields, width, 0);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param delegate destination of the changed rows
+	 * @param keyFields indexes of the key fields in the tuples
+	 * @param width number of fields of the tuples
+	 * @param expectedRows expected number of rows, the index of the rows is presized for them
+	 */
+	public DifferentialTupleWriter(IKeyedTupleWriter delegate, int[] keyFields, int width, int expectedRows) {
+		this.delegate = delegate;
+		this.index = new RowHashIndex(Math.max(1024, Math.min(MAX_PRESIZED_ROWS, expectedRows)));
+		this.keyHasher = new TupleHasher(keyFields);
+		this.rowHasher = TupleHasher.allFields(width);
+		this.storedKeyHasher = TupleHasher.allFields(keyFields.length);
+	}
+
+	/** Start a reload, all the rows are considered removed until they are written */
+	public synchronized void startReload() {
+		index.clearMarks();
+		removed.clear();
+		inserted = updated = unchanged = 0L;
+	}
+
+	@Override
+	public void write(List<Object[]> tuples) {
+		List<Object[]> changed = new ArrayList<>();
+		synchronized(this) {
+			for(Object[] tuple : tuples) {
+				long rowHash = rowHasher.hash(tuple);
+				long previous = index.put(keyHasher.hash(tuple), rowHash);
+				if(previous == RowHashIndex.EMPTY) {
+					inserted++;
+					changed.add(tuple);
+				} else if(previous != rowHash) {
+					updated++;
+					changed.add(tuple);
+				} else {
+					unchanged++;
+				}
+			}
+		}
+		if(!changed.isEmpty()) {
+			delegate.write(changed);
+		}
+	}
+
+	@Override
+	public void remove(List<Object[]> keys) {
+		synchronized(this) {
+			for(Object[] key : keys) {
+				index.remove(storedKeyHasher.hash(key));
+			}
+		}
+		delegate.remove(keys);
+	}
+
+	/**
+	 * Check a key of the store, it is removed
+	 * if it was not written since the reload started.
+	 * 
+	 * @param key values of the key fields
+	 */
+	public synchronized void checkStored(Object[] key) {
+		if(!index.isMarked(storedKeyHasher.hash(key))) {
+			removed.add(key);
+		}
+	}
+
+	/**
+	 * Forget a key removed from the store outside of the reloads,
+	 * so that the row is written again when it is reloaded.
+	 * 
+	 * @param key values of the key fields
+	 */
+	public synchronized void forget(Object[] key) {
+		index.remove(storedKeyHasher.hash(key));
+	}
+
+	/**
+	 * Complete a reload, removing the rows that were not written.
+	 * 
+	 * @return statistics of the reload
+	 */
+	public synchronized Map<String, Object> completeReload() {
+		if(!removed.isEmpty()) {
+			delegate.remove(new ArrayList<>(removed));
+			for(Object[] key : removed) {
+				index.remove(storedKeyHasher.hash(key));
+			}
+		}
+		Map<String, Object> statistics = getStatistics();
+		LOGGER.info("Differential reload: " + statistics);
+		removed.clear();
+		return statistics;
+	}
+
+	/** @return statistics of the current loading */
+	public synchronized Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("inserted", inserted);
+		statistics.put("updated", updated);
+		statistics.put("unchanged", unchanged);
+		statistics.put("removed", removed.size());
+		statistics.put("rows", index.size());
+		return statistics;
+	}
+
+}
@@ -0,0 +1,40 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.List;
+
+/**
+ * 
+ * Listener of the transactions committed by a loader.
+ * 
+ * @author ActiveViam
+ *
+ */
+public interface ICommitListener {
+
+	/**
+	 * Called after a transaction was committed by the loader.
+	 * 
+	 * @param tuples committed tuples
+	 * @param offset offset in the input after the last committed line
+	 */
+	void committed(List<Object[]> tuples, long offset);
+
+}
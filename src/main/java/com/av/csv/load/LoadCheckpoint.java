@@ -0,0 +1,132 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.av.csv.snapshot.SnapshotWriter;
+
+/**
+ * 
+ * Checkpoint of a loading: the offset in the input after the last
+ * committed line. When a loading fails, it is retried in the same
+ * process from the checkpoint instead of reading the input again
+ * from the start.
+ * <p>
+ * With a journal, the rows of each commit are also written to a file,
+ * followed by the offset after them. When the process stops before
+ * the end of the loading, the rows of the journal are restored at the
+ * next start and the loading resumes from the last checkpoint, see
+ * {@link SnapshotWriter#journal}.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class LoadCheckpoint implements ICommitListener {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(LoadCheckpoint.class.getName());
+
+	/** Number of bytes at the start of the input used as fingerprint */
+	public static final int FINGERPRINT_SIZE = 64 * 1024;
+
+	/** Offset in the input after the last committed line */
+	protected volatile long offset = 0L;
+
+	/** Number of rows committed */
+	protected volatile long rows = 0L;
+
+	/** Journal of the commits, null when the checkpoint is only kept in memory */
+	protected SnapshotWriter journal;
+
+	/**
+	 * Compute the fingerprint of an input, a hash of its first bytes.
+	 * Data appended to the input does not change its fingerprint.
+	 * 
+	 * @param is input, closed by the caller
+	 * @return fingerprint
+	 * @throws IOException
+	 */
+	public static String fingerprint(InputStream is) throws IOException {
+		byte[] buffer = new byte[FINGERPRINT_SIZE];
+		int length = 0;
+		int read;
+		while(length < buffer.length && (read = is.read(buffer, length, buffer.length - length)) >= 0) {
+			length += read;
+		}
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < length; i++) {
+			h = (h ^ (buffer[i] & 0xff)) * 0x100000001b3L;
+		}
+		return length + ":" + Long.toHexString(h);
+	}
+
+	/** @return offset in the input after the last committed line */
+	public long getOffset() { return offset; }
+
+	/** @return number of rows committed */
+	public long getRows() { return rows; }
+
+	/**
+	 * Write the rows of the following commits in a journal.
+	 * 
+	 * @param journal journal of the commits, null to stop writing the commits
+	 */
+	public synchronized void setJournal(SnapshotWriter journal) { this.journal = journal; }
+
+	@Override
+	public synchronized void committed(List<Object[]> tuples, long offset) {
+		this.offset = offset;
+		this.rows += tuples.size();
+		if(journal != null) {
+			try {
+				for(Object[] tuple : tuples) {
+					journal.add(tuple);
+				}
+				journal.checkpoint(offset);
+			} catch(IOException e) {
+				// The loading goes on, it resumes from the last checkpoint written after a restart
+				LOGGER.log(Level.WARNING, "Could not write the checkpoint at offset " + offset + ", the journal is no longer written", e);
+				journal = null;
+			}
+		}
+	}
+
+	/**
+	 * Resume from rows restored from a journal.
+	 * 
+	 * @param offset offset in the input after the restored rows
+	 * @param rows number of restored rows
+	 */
+	public synchronized void resume(long offset, long rows) {
+		this.offset = offset;
+		this.rows = rows;
+	}
+
+	/** Reset the checkpoint to the start of the input */
+	public synchronized void reset() {
+		this.offset = 0L;
+		this.rows = 0L;
+	}
+
+}
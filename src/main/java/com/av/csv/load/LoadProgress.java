@@ -0,0 +1,234 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.qfs.jmx.JmxAttribute;
+
+/**
+ * 
+ * Progress of the loading of the input data, exposed through
+ * JMX, the actuator endpoints and the health probes.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class LoadProgress {
+
+	/** States of the loading */
+	public enum State {
+		/** Loading not started yet */
+		PENDING,
+		/** Loading in progress, committed data is already available */
+		LOADING,
+		/** All the data is loaded */
+		LOADED,
+		/** The loading has failed */
+		FAILED
+	}
+
+	/** Name of the loaded input */
+	protected final String source;
+
+	/** Current state */
+	protected volatile State state = State.PENDING;
+
+	/** Size of the input in bytes, -1 when unknown */
+	protected volatile long totalBytes = -1L;
+
+	/** Loading start time */
+	protected volatile long startTime = 0L;
+
+	/** Loading end time */
+	protected volatile long endTime = 0L;
+
+	/** Cause of the failure */
+	protected volatile String error;
+
+	/** Fraction of the input that is loaded when the data is a sample, 0 otherwise */
+	protected volatile double sampleFraction = 0.0;
+
+	/** Bytes read from the input */
+	protected final AtomicLong bytesRead = new AtomicLong();
+
+	/** Rows committed into the datastore */
+	protected final AtomicLong rowsCommitted = new AtomicLong();
+
+	/** Number of commits */
+	protected final AtomicLong commitCount = new AtomicLong();
+
+	public LoadProgress(String source) {
+		this.source = source;
+	}
+
+	/**
+	 * Start (or restart) the loading.
+	 * 
+	 * @param totalBytes size of the input, -1 when unknown
+	 */
+	public void start(long totalBytes) {
+		this.totalBytes = totalBytes;
+		this.bytesRead.set(0L);
+		this.rowsCommitted.set(0L);
+		this.commitCount.set(0L);
+		this.error = null;
+		this.endTime = 0L;
+		this.startTime = System.currentTimeMillis();
+		this.state = State.LOADING;
+	}
+
+	/** @param totalBytes size of the input, for inputs that grow while loaded */
+	public void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+
+	/** @param bytes number of bytes of the input read so far */
+	public void setBytesRead(long bytes) {
+		bytesRead.accumulateAndGet(bytes, Math::max);
+	}
+
+	/** @param rows number of rows committed by a new transaction */
+	public void committed(long rows) {
+		rowsCommitted.addAndGet(rows);
+		commitCount.incrementAndGet();
+	}
+
+	/** Mark the loading as successfully completed */
+	public void complete() {
+		this.endTime = System.currentTimeMillis();
+		this.state = State.LOADED;
+	}
+
+	/**
+	 * Flag the loaded data as a sample of the input.
+	 * 
+	 * @param sampleFraction fraction of the input that is loaded, 0 when the whole input is loaded
+	 */
+	public void setSampleFraction(double sampleFraction) {
+		this.sampleFraction = sampleFraction;
+	}
+
+	/** @param cause cause of the failure of the loading */
+	public void fail(Throwable cause) {
+		this.endTime = System.currentTimeMillis();
+		this.error = String.valueOf(cause);
+		this.state = State.FAILED;
+	}
+
+	@JmxAttribute(desc = "Name of the loaded input")
+	public String getSource() { return source; }
+
+	@JmxAttribute(desc = "State of the loading")
+	public String getStateName() { return state.name(); }
+
+	public State getState() { return state; }
+
+	@JmxAttribute(desc = "Cause of the failure of the loading")
+	public String getError() { return error; }
+
+	@JmxAttribute(desc = "Fraction of the input in the loaded sample, 0 when the whole input is loaded")
+	public double getSampleFraction() { return sampleFraction; }
+
+	/** @return true if the loaded data is a sample of the input */
+	public boolean isSampled() { return sampleFraction > 0.0; }
+
+	@JmxAttribute(desc = "Size of the input in bytes, -1 when unknown")
+	public long getTotalBytes() { return totalBytes; }
+
+	@JmxAttribute(desc = "Number of bytes read from the input")
+	public long getBytesRead() { return bytesRead.get(); }
+
+	@JmxAttribute(desc = "Number of rows committed into the datastore")
+	public long getRowsCommitted() { return rowsCommitted.get(); }
+
+	@JmxAttribute(desc = "Number of transactions committed")
+	public long getCommitCount() { return commitCount.get(); }
+
+	@JmxAttribute(desc = "Elapsed loading time in milliseconds")
+	public long getElapsedTime() {
+		if(startTime == 0L) {
+			return 0L;
+		}
+		long end = endTime == 0L ? System.currentTimeMillis() : endTime;
+		return Math.max(1L, end - startTime);
+	}
+
+	@JmxAttribute(desc = "Read throughput in bytes per second")
+	public long getThroughput() {
+		long elapsed = getElapsedTime();
+		return elapsed == 0L ? 0L : 1000L * getBytesRead() / elapsed;
+	}
+
+	@JmxAttribute(desc = "Commit throughput in rows per second")
+	public long getRowThroughput() {
+		long elapsed = getElapsedTime();
+		return elapsed == 0L ? 0L : 1000L * getRowsCommitted() / elapsed;
+	}
+
+	@JmxAttribute(desc = "Estimated remaining loading time in seconds, -1 when unknown")
+	public long getEstimatedTimeRemaining() {
+		if(state != State.LOADING) {
+			return state == State.LOADED ? 0L : -1L;
+		}
+		long throughput = getThroughput();
+		if(totalBytes < 0L || throughput == 0L) {
+			return -1L;
+		}
+		return Math.max(0L, totalBytes - getBytesRead()) / throughput;
+	}
+
+	@JmxAttribute(desc = "Percentage of the input read, -1 when unknown")
+	public double getPercentComplete() {
+		if(state == State.LOADED) {
+			return 100.0;
+		}
+		if(totalBytes <= 0L) {
+			return -1.0;
+		}
+		return Math.min(100.0, 100.0 * getBytesRead() / totalBytes);
+	}
+
+	/** @return a snapshot of the progress, for the monitoring endpoints */
+	public Map<String, Object> toMap() {
+		Map<String, Object> details = new LinkedHashMap<>();
+		details.put("source", source);
+		details.put("state", state.name());
+		details.put("totalBytes", getTotalBytes());
+		details.put("bytesRead", getBytesRead());
+		details.put("percentComplete", getPercentComplete());
+		details.put("rowsCommitted", getRowsCommitted());
+		details.put("commits", getCommitCount());
+		details.put("elapsedSeconds", TimeUnit.MILLISECONDS.toSeconds(getElapsedTime()));
+		details.put("bytesPerSecond", getThroughput());
+		details.put("rowsPerSecond", getRowThroughput());
+		details.put("etaSeconds", getEstimatedTimeRemaining());
+		if(isSampled()) {
+			details.put("sampleFraction", sampleFraction);
+		}
+		if(error != null) {
+			details.put("error", error);
+		}
+		return details;
+	}
+
+}
@@ -0,0 +1,286 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * Collect the rows rejected by the loading: they are counted by reason
+ * and column, and written with their offset in the input to a side file.
+ * <p>
+ * The side file is written by a background thread, parser threads only
+ * enqueue the rejected lines. When the queue is full the parser thread
+ * waits for the writer, up to {@link #QUEUE_TIMEOUT} milliseconds per
+ * line. Only a writer that stays stuck longer, a full disk for instance,
+ * makes the collector count the lines without writing them, and the
+ * first such line is logged.
+ * <p>
+ * When a loading is retried from its last commit, the lines read again
+ * that were already rejected are counted again but not written twice.
+ * <p>
+ * A ceiling on the number of rejects aborts the loading of an input that
+ * is too dirty to be worth loading.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class RejectCollector implements Closeable {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(RejectCollector.class.getName());
+
+	/** Maximum number of rejects logged */
+	public static final int MAX_LOGGED_REJECTS = 100;
+
+	/** Capacity of the queue of the side file writer */
+	public static final int QUEUE_CAPACITY = 10_000;
+
+	/** Maximum time a parser thread waits for room in the queue, in milliseconds */
+	public static final long QUEUE_TIMEOUT = 10_000L;
+
+	/** Reasons of a reject */
+	public enum Reason {
+		/** The line does not have the number of fields of the format */
+		COLUMN_COUNT,
+		/** A field cannot be parsed with the type of its column */
+		INVALID_VALUE
+	}
+
+	/** Thrown when the number of rejects exceeds the ceiling */
+	public static class RejectLimitExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public RejectLimitExceededException(String message) {
+			super(message);
+		}
+	}
+
+	/** Maximum number of rejects, negative for no limit */
+	protected final long maxRejects;
+
+	/** Side file, null when the rejected lines are not written */
+	protected final Path file;
+
+	/** Number of rejects */
+	protected final AtomicLong total = new AtomicLong();
+
+	/** Number of rejects by reason and column */
+	protected final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+	/** Number of rejected lines that could not be written because the queue was full */
+	protected final AtomicLong dropped = new AtomicLong();
+
+	/** Offsets of the lines written to the side file after the last commit */
+	protected final Set<Long> uncommittedOffsets = ConcurrentHashMap.newKeySet();
+
+	/** Lines waiting to be written to the side file */
+	protected final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	/** Thread writing the side file */
+	protected final Thread writerThread;
+
+	/** True once the collector is closed */
+	protected volatile boolean closed = false;
+
+	/**
+	 * Constructor of a collector that only counts and logs the rejects, without limit.
+	 */
+	public RejectCollector() {
+		this.file = null;
+		this.maxRejects = -1L;
+		this.writerThread = null;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file side file receiving the rejected lines, null to only count them
+	 * @param maxRejects maximum number of rejects before the loading is aborted, negative for no limit
+	 * @throws IOException if the side file cannot be created
+	 */
+	public RejectCollector(Path file, long maxRejects) throws IOException {
+		this.file = file;
+		this.maxRejects = maxRejects;
+		if(file == null) {
+			this.writerThread = null;
+		} else {
+			if(file.toAbsolutePath().getParent() != null) {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+			}
+			BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+			this.writerThread = new Thread(() -> write(writer), "autopivot-rejects");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+	}
+
+	/**
+	 * Reject a line.
+	 * 
+	 * @param offset offset of the line in the input
+	 * @param line rejected line
+	 * @param reason reason of the reject
+	 * @param column name of the column with the invalid value, null if not related to a column
+	 * @throws RejectLimitExceededException if there are too many rejects
+	 */
+	public void reject(long offset, String line, Reason reason, String column) {
+		long count = total.incrementAndGet();
+		String key = key(reason, column);
+		counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+		if(count <= MAX_LOGGED_REJECTS) {
+			LOGGER.warning("Rejected line at offset " + offset + " (" + key + "): " + line);
+		}
+		// A line read again after a rollback is already in the side file
+		if(writerThread != null && uncommittedOffsets.add(offset)) {
+			enqueue(offset + "\t" + key + "\t" + line);
+		}
+		if(maxRejects >= 0L && count > maxRejects) {
+			throw new RejectLimitExceededException("Loading aborted, more than " + maxRejects + " rejected lines: " + getCounts());
+		}
+	}
+
+	/** Queue a line for the side file, waiting for the writer when the queue is full */
+	protected void enqueue(String line) {
+		boolean queued;
+		try {
+			// A writer that failed no longer empties the queue
+			queued = writerThread.isAlive() ? queue.offer(line, QUEUE_TIMEOUT, TimeUnit.MILLISECONDS) : queue.offer(line);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		}
+		if(!queued) {
+			if(dropped.incrementAndGet() == 1L) {
+				LOGGER.warning("The rejected lines cannot be written to " + file + " fast enough, some of them are only counted");
+			}
+		}
+	}
+
+	/**
+	 * @param reason reason of a reject
+	 * @param column name of the column with the invalid value, null if not related to a column
+	 * @return key of the reject counts
+	 */
+	public static String key(Reason reason, String column) {
+		return column == null ? reason.name() : reason.name() + ":" + column;
+	}
+
+	/** @return number of rejects */
+	public long getTotal() { return total.get(); }
+
+	/** @return number of rejects by reason and column */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> result = new TreeMap<>();
+		counts.forEach((key, count) -> result.put(key, count.sum()));
+		return result;
+	}
+
+	/** @return statistics of the rejects, for the monitoring endpoints */
+	public Map<String, Object> toMap() {
+		Map<String, Object> details = new LinkedHashMap<>();
+		details.put("total", getTotal());
+		details.put("byReason", getCounts());
+		if(file != null) {
+			details.put("file", file.toString());
+			details.put("notWritten", dropped.get());
+		}
+		return details;
+	}
+
+	/** Reset the counts, before a new loading */
+	public void reset() {
+		total.set(0L);
+		counts.clear();
+		dropped.set(0L);
+		uncommittedOffsets.clear();
+	}
+
+	/**
+	 * Record a commit: the lines before the committed offset are
+	 * not read again by a retry.
+	 * 
+	 * @param offset offset in the input after the last committed line
+	 */
+	public void committed(long offset) {
+		uncommittedOffsets.removeIf(o -> o < offset);
+	}
+
+	/**
+	 * Restore counts recorded earlier, before lines are read again.
+	 * 
+	 * @param previous number of rejects by reason and column
+	 */
+	public synchronized void restore(Map<String, Long> previous) {
+		counts.clear();
+		previous.forEach((key, count) -> counts.computeIfAbsent(key, k -> new LongAdder()).add(count));
+		total.set(previous.values().stream().mapToLong(Long::longValue).sum());
+	}
+
+	/** Write the queued lines to the side file, in the background thread */
+	protected void write(BufferedWriter writer) {
+		try(BufferedWriter w = writer) {
+			while(!closed || !queue.isEmpty()) {
+				String line = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(line != null) {
+					w.write(line);
+					w.newLine();
+				} else {
+					w.flush();
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(IOException e) {
+			LOGGER.log(Level.WARNING, "Could not write the rejected lines to " + file, e);
+		}
+	}
+
+	/** Write the pending lines and close the side file */
+	@Override
+	public void close() {
+		closed = true;
+		if(writerThread != null) {
+			try {
+				writerThread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
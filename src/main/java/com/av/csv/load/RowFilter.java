@@ -0,0 +1,297 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 
+ * Filter of the rows of a CSV file, compiled once from a simple
+ * expression over the column names, for instance
+ * <pre>
+ * AsOfDate &gt;= 2024-01-01 AND Desk IN ('Equity', 'Rates') AND NOT Book = Test
+ * </pre>
+ * Supported operators are {@code = != <> < <= > >=}, {@code IN (...)},
+ * {@code NOT IN (...)}, {@code IS NULL}, {@code IS NOT NULL}, combined
+ * with {@code AND}, {@code OR}, {@code NOT} and parentheses. Keywords
+ * and column names are case insensitive. Literals are parsed with the
+ * parser of the column they are compared to, so dates and numbers are
+ * compared by value, texts are compared case sensitively. Rows where
+ * the column is empty only match {@code IS NULL}. Literals containing spaces or special characters
+ * are quoted with single or double quotes.
+ * <p>
+ * The filter is evaluated on the text fields of a row, only the
+ * columns that appear in the expression are parsed.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class RowFilter {
+
+	/** Condition on the text fields of a row */
+	@FunctionalInterface
+	protected interface Condition {
+		boolean test(String[] fields);
+	}
+
+	/** Filter expression */
+	protected final String expression;
+
+	/** Compiled expression */
+	protected final Condition condition;
+
+	protected RowFilter(String expression, Condition condition) {
+		this.expression = expression;
+		this.condition = condition;
+	}
+
+	/**
+	 * Compile a filter expression.
+	 * 
+	 * @param expression filter expression
+	 * @param parser row parser, giving the columns and their parsers
+	 * @return compiled filter
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public static RowFilter compile(String expression, CSVRowParser parser) {
+		Compiler compiler = new Compiler(expression, parser);
+		Condition condition = compiler.or();
+		if(compiler.position < compiler.tokens.size()) {
+			throw compiler.error("Unexpected '" + compiler.peek() + "'");
+		}
+		return new RowFilter(expression, condition);
+	}
+
+	/**
+	 * @param fields text fields of a row, in the order of the columns
+	 * @return true if the row is accepted
+	 */
+	public boolean test(String[] fields) {
+		return condition.test(fields);
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/** Recursive descent compiler of the filter expressions */
+	protected static class Compiler {
+
+		protected final String expression;
+
+		protected final CSVRowParser parser;
+
+		protected final List<String> tokens;
+
+		/** Tokens that are quoted literals */
+		protected final Set<Integer> quoted = new HashSet<>();
+
+		protected int position = 0;
+
+		protected Compiler(String expression, CSVRowParser parser) {
+			this.expression = expression;
+			this.parser = parser;
+			this.tokens = tokenize(expression);
+		}
+
+		protected List<String> tokenize(String text) {
+			List<String> result = new ArrayList<>();
+			int i = 0;
+			while(i < text.length()) {
+				char c = text.charAt(i);
+				if(Character.isWhitespace(c)) {
+					i++;
+				} else if(c == '\'' || c == '"') {
+					int end = text.indexOf(c, i + 1);
+					if(end < 0) {
+						throw new IllegalArgumentException("Unterminated literal in filter: " + text);
+					}
+					quoted.add(result.size());
+					result.add(text.substring(i + 1, end));
+					i = end + 1;
+				} else if(c == '(' || c == ')' || c == ',') {
+					result.add(String.valueOf(c));
+					i++;
+				} else if(c == '=' || c == '<' || c == '>' || c == '!') {
+					int end = i + 1;
+					if(end < text.length() && (text.charAt(end) == '=' || (c == '<' && text.charAt(end) == '>'))) {
+						end++;
+					}
+					result.add(text.substring(i, end));
+					i = end;
+				} else {
+					int end = i;
+					while(end < text.length() && !Character.isWhitespace(text.charAt(end)) && "()=<>!,'\"".indexOf(text.charAt(end)) < 0) {
+						end++;
+					}
+					result.add(text.substring(i, end));
+					i = end;
+				}
+			}
+			return result;
+		}
+
+		protected String peek() {
+			return position < tokens.size() ? tokens.get(position) : null;
+		}
+
+		protected String next() {
+			if(position >= tokens.size()) {
+				throw error("Unexpected end of expression");
+			}
+			return tokens.get(position++);
+		}
+
+		/** @return true if the next token is the given keyword, which is then consumed */
+		protected boolean accept(String keyword) {
+			String token = peek();
+			if(token != null && !quoted.contains(position) && token.equalsIgnoreCase(keyword)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		protected void expect(String keyword) {
+			if(!accept(keyword)) {
+				throw error("Expected '" + keyword + "'");
+			}
+		}
+
+		protected IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at token " + position + " of filter: " + expression);
+		}
+
+		protected Condition or() {
+			Condition left = and();
+			while(accept("OR")) {
+				Condition a = left, b = and();
+				left = fields -> a.test(fields) || b.test(fields);
+			}
+			return left;
+		}
+
+		protected Condition and() {
+			Condition left = not();
+			while(accept("AND")) {
+				Condition a = left, b = not();
+				left = fields -> a.test(fields) && b.test(fields);
+			}
+			return left;
+		}
+
+		protected Condition not() {
+			if(accept("NOT")) {
+				Condition c = not();
+				return fields -> !c.test(fields);
+			}
+			if(accept("(")) {
+				Condition c = or();
+				expect(")");
+				return c;
+			}
+			return comparison();
+		}
+
+		protected Condition comparison() {
+			final int column = column(next());
+
+			if(accept("IS")) {
+				boolean negated = accept("NOT");
+				expect("NULL");
+				return fields -> (value(column, fields) == null) != negated;
+			}
+
+			boolean negated = accept("NOT");
+			if(negated || accept("IN")) {
+				if(negated) {
+					expect("IN");
+				}
+				expect("(");
+				Set<Object> values = new HashSet<>();
+				do {
+					values.add(literal(column));
+				} while(accept(","));
+				expect(")");
+				return fields -> {
+					Object value = value(column, fields);
+					return value != null && values.contains(value) != negated;
+				};
+			}
+
+			String operator = next();
+			final Object literal = literal(column);
+			switch(operator) {
+			case "=": return fields -> literal.equals(value(column, fields));
+			case "!=":
+			case "<>": return compare(column, literal, r -> r != 0);
+			case "<": return compare(column, literal, r -> r < 0);
+			case "<=": return compare(column, literal, r -> r <= 0);
+			case ">": return compare(column, literal, r -> r > 0);
+			case ">=": return compare(column, literal, r -> r >= 0);
+			default: throw error("Unknown operator '" + operator + "'");
+			}
+		}
+
+		/** Compare the values of a column with a literal, rows with a null value are rejected */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected Condition compare(int column, Object literal, IntPredicate result) {
+			return fields -> {
+				Object value = value(column, fields);
+				return value != null && result.test(((Comparable) value).compareTo(literal));
+			};
+		}
+
+		/** Resolve a column name, case insensitive */
+		protected int column(String name) {
+			List<String> names = parser.getFormat().getColumnNames();
+			for(int c = 0; c < names.size(); c++) {
+				if(names.get(c).equalsIgnoreCase(name)) {
+					return c;
+				}
+			}
+			throw error("Unknown column '" + name + "'");
+		}
+
+		/** Parse a literal with the parser of the column */
+		protected Object literal(int column) {
+			String text = next();
+			if(text.isEmpty()) {
+				throw error("Empty literal, use IS NULL");
+			}
+			try {
+				return parser.parseField(column, text);
+			} catch(RuntimeException e) {
+				throw error("Invalid literal '" + text + "' for column " + parser.getFormat().getColumnName(column));
+			}
+		}
+
+		/** Value of a column in a row, null when the field is empty */
+		protected Object value(int column, String[] fields) {
+			String text = fields[column];
+			return text.isEmpty() ? null : parser.parseField(column, text);
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * Compact index of the rows of a keyed store: for the hash of each key,
+ * the hash of the whole row. A mark is also kept for each key, to find
+ * the keys that were not seen during a reload.
+ * <p>
+ * Open addressing on primitive arrays, about 17 bytes per row.
+ * This class is not thread safe.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class RowHashIndex {
+
+	/** Hash reserved to designate empty slots */
+	protected static final long EMPTY = 0L;
+
+	/** Key hashes */
+	protected long[] keys;
+
+	/** Row hashes */
+	protected long[] rows;
+
+	/** Marks of the keys seen during the current reload */
+	protected boolean[] marks;
+
+	/** Number of keys */
+	protected int size = 0;
+
+	public RowHashIndex() {
+		this(1024);
+	}
+
+	/** @param expectedSize expected number of rows */
+	public RowHashIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	protected void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.rows = new long[capacity];
+		this.marks = new boolean[capacity];
+	}
+
+	/** @return number of keys */
+	public int size() { return size; }
+
+	/**
+	 * Record the hash of a row, and mark its key.
+	 * 
+	 * @param keyHash hash of the key of the row
+	 * @param rowHash hash of the row
+	 * @return the previous hash of the row with that key, or {@link #EMPTY} if there was none
+	 */
+	public long put(long keyHash, long rowHash) {
+		keyHash = keyHash == EMPTY ? 1L : keyHash;
+		int slot = slot(keyHash);
+		if(keys[slot] == keyHash) {
+			long previous = rows[slot];
+			rows[slot] = rowHash;
+			marks[slot] = true;
+			return previous;
+		}
+
+		keys[slot] = keyHash;
+		rows[slot] = rowHash;
+		marks[slot] = true;
+		if(++size * 2 > keys.length) {
+			grow();
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * @param keyHash hash of a key
+	 * @return true if the key was marked since the last {@link #clearMarks()}
+	 */
+	public boolean isMarked(long keyHash) {
+		keyHash = keyHash == EMPTY ? 1L : keyHash;
+		int slot = slot(keyHash);
+		return keys[slot] == keyHash && marks[slot];
+	}
+
+	/**
+	 * Remove a key.
+	 * 
+	 * @param keyHash hash of the key
+	 */
+	public void remove(long keyHash) {
+		keyHash = keyHash == EMPTY ? 1L : keyHash;
+		int slot = slot(keyHash);
+		if(keys[slot] != keyHash) {
+			return;
+		}
+		keys[slot] = EMPTY;
+		marks[slot] = false;
+		size--;
+
+		// Shift the following entries of the cluster back into place
+		int mask = keys.length - 1;
+		int empty = slot;
+		for(int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int ideal = (int) keys[next] & mask;
+			if(((next - ideal) & mask) >= ((next - empty) & mask)) {
+				keys[empty] = keys[next];
+				rows[empty] = rows[next];
+				marks[empty] = marks[next];
+				keys[next] = EMPTY;
+				marks[next] = false;
+				empty = next;
+			}
+		}
+	}
+
+	/** Clear the marks of all the keys */
+	public void clearMarks() {
+		Arrays.fill(marks, false);
+	}
+
+	/** Clear the index */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(marks, false);
+		size = 0;
+	}
+
+	/** @return slot of the key, or the empty slot where it would be inserted */
+	protected int slot(long keyHash) {
+		int mask = keys.length - 1;
+		int slot = (int) keyHash & mask;
+		while(keys[slot] != EMPTY && keys[slot] != keyHash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	protected void grow() {
+		long[] oldKeys = keys;
+		long[] oldRows = rows;
+		boolean[] oldMarks = marks;
+		allocate(2 * oldKeys.length);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				rows[slot] = oldRows[i];
+				marks[slot] = oldMarks[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * 
+ * Uniform random sample of the lines of a text file, read with
+ * positioned reads instead of scanning the whole file.
+ * <p>
+ * The file is divided into as many strata as there are windows to
+ * read, and one window of consecutive bytes is read at a random
+ * position of each stratum. Only the complete lines of the windows
+ * are kept, so the first line of the file (the header) is never
+ * part of the sample.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class SampleInputStream extends InputStream {
+
+	/** Default size of the windows read in the file */
+	public static final int DEFAULT_WINDOW_SIZE = 64 << 10;
+
+	/** Sampled file */
+	protected final FileChannel channel;
+
+	/** Start offsets of the windows, in increasing order */
+	protected final long[] windows;
+
+	/** Size of the windows */
+	protected final int windowSize;
+
+	/** Buffer holding the lines of the current window */
+	protected final ByteBuffer buffer;
+
+	/** Index of the next window to read */
+	protected int nextWindow = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param path sampled file
+	 * @param fraction fraction of the file to read, between 0 and 1
+	 * @param random random generator of the positions of the windows
+	 * @throws IOException
+	 */
+	public SampleInputStream(Path path, double fraction, Random random) throws IOException {
+		this(path, fraction, random, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param path sampled file
+	 * @param fraction fraction of the file to read, between 0 and 1
+	 * @param random random generator of the positions of the windows
+	 * @param windowSize size of the windows read in the file, larger than the longest line
+	 * @throws IOException
+	 */
+	public SampleInputStream(Path path, double fraction, Random random, int windowSize) throws IOException {
+		if(!(fraction > 0.0 && fraction <= 1.0)) {
+			throw new IllegalArgumentException("The sampled fraction must be between 0 and 1: " + fraction);
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		long size = channel.size();
+		int count = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, (long) Math.ceil(fraction * size / windowSize)));
+		long stratum = Math.max(1L, size / count);
+		this.windowSize = (int) Math.min(windowSize, stratum);
+		this.windows = new long[count];
+		for(int w = 0; w < count; w++) {
+			long start = w * stratum;
+			long range = Math.min(stratum, size - start) - this.windowSize;
+			windows[w] = range > 0 ? start + (long) (random.nextDouble() * (range + 1)) : start;
+		}
+		this.buffer = ByteBuffer.allocate(this.windowSize);
+		buffer.flip();
+	}
+
+	/** @return number of bytes read in the file */
+	public long getSampleSize() {
+		return (long) windows.length * windowSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	/**
+	 * Read windows until one contains a complete line.
+	 * 
+	 * @return false at the end of the sample
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		while(!buffer.hasRemaining()) {
+			if(nextWindow >= windows.length) {
+				return false;
+			}
+			buffer.clear();
+			long position = windows[nextWindow++];
+			while(buffer.hasRemaining()) {
+				int n = channel.read(buffer, position + buffer.position());
+				if(n < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+
+			// Keep the lines between the first and the last line breaks
+			int first = 0;
+			while(first < buffer.limit() && buffer.get(first) != '\n') {
+				first++;
+			}
+			int last = buffer.limit() - 1;
+			while(last > first && buffer.get(last) != '\n') {
+				last--;
+			}
+			if(last <= first) {
+				buffer.limit(0);
+			} else {
+				buffer.limit(last + 1);
+				buffer.position(first + 1);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
@@ -0,0 +1,162 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * Input that cannot be read twice nor seeked: the standard
+ * input (file name {@code -}) or a named pipe.
+ * <p>
+ * The beginning of the stream is buffered so that the format can be
+ * discovered from it, then the stream is replayed from its first byte
+ * to the loader, so no byte is lost.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class StreamInput {
+
+	/** Logger **/
+	protected static Logger LOGGER = Logger.getLogger(StreamInput.class.getName());
+
+	/** File name designating the standard input */
+	public static final String STDIN = "-";
+
+	/** Default number of lines buffered for the discovery */
+	public static final int DEFAULT_PREFIX_LINES = 1000;
+
+	/** Default maximum number of bytes buffered for the discovery */
+	public static final int DEFAULT_PREFIX_SIZE = 16 << 20;
+
+	/** Name of the input */
+	protected final String fileName;
+
+	/** True if the input is a stream */
+	protected final boolean stream;
+
+	/** Underlying stream, opened with the prefix */
+	protected InputStream input;
+
+	/** Buffered beginning of the stream */
+	protected byte[] prefix;
+
+	/** Number of bytes of the prefix made of complete lines */
+	protected int prefixLines;
+
+	/** True once the stream was handed to the loader */
+	protected boolean replayed = false;
+
+	/**
+	 * Constructor, nothing is read until the prefix is requested.
+	 * 
+	 * @param fileName name of the input
+	 */
+	public StreamInput(String fileName) {
+		this.fileName = fileName;
+		this.stream = isStream(fileName);
+	}
+
+	/**
+	 * @param fileName name of an input
+	 * @return true if the input is the standard input or a named pipe
+	 */
+	public static boolean isStream(String fileName) {
+		if(STDIN.equals(fileName)) {
+			return true;
+		}
+		try {
+			Path path = Paths.get(fileName);
+			return Files.exists(path) && Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+		} catch(Exception e) {
+			return false;
+		}
+	}
+
+	/** @return true if the input is a stream */
+	public boolean isStream() { return stream; }
+
+	/**
+	 * Read the beginning of the stream, up to a number of lines or bytes.
+	 * 
+	 * @return the complete lines of the beginning of the stream
+	 * @throws IOException
+	 */
+	public synchronized InputStream getPrefix() throws IOException {
+		if(prefix == null) {
+			readPrefix(DEFAULT_PREFIX_LINES, DEFAULT_PREFIX_SIZE);
+		}
+		return new ByteArrayInputStream(prefix, 0, prefixLines);
+	}
+
+	protected void readPrefix(int maxLines, int maxBytes) throws IOException {
+		input = STDIN.equals(fileName) ? System.in : Files.newInputStream(Paths.get(fileName));
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int lines = 0;
+		int lastLineEnd = 0;
+		while(lines < maxLines && buffer.size() < maxBytes) {
+			int n = input.read(chunk);
+			if(n < 0) {
+				break;
+			}
+			for(int i = 0; i < n; i++) {
+				if(chunk[i] == '\n') {
+					lines++;
+					lastLineEnd = buffer.size() + i + 1;
+				}
+			}
+			buffer.write(chunk, 0, n);
+		}
+		this.prefix = buffer.toByteArray();
+		// At the end of the stream the last line is complete even without terminator
+		this.prefixLines = lines < maxLines && buffer.size() < maxBytes ? prefix.length : lastLineEnd;
+		LOGGER.info("Buffered " + prefix.length + " bytes of " + (STDIN.equals(fileName) ? "the standard input" : fileName) + " for the discovery.");
+	}
+
+	/**
+	 * Hand the whole stream to the loader, starting with the buffered prefix.
+	 * The stream can only be replayed once.
+	 * 
+	 * @return the stream, from its first byte
+	 * @throws IOException
+	 */
+	public synchronized InputStream replay() throws IOException {
+		if(replayed) {
+			throw new IOException(fileName + " is a stream, it can only be read once");
+		}
+		if(prefix == null) {
+			readPrefix(0, 0);
+		}
+		replayed = true;
+		return new SequenceInputStream(new ByteArrayInputStream(prefix), input);
+	}
+
+}
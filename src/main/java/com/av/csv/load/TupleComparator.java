@@ -0,0 +1,88 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 
+ * Order of tuples on some of their fields, used to cluster the rows
+ * of a transaction so that the rows with the same values are stored
+ * next to each other. Null values come first.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class TupleComparator implements Comparator<Object[]> {
+
+	/** Indexes of the compared fields, by priority */
+	protected final int[] fields;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fields indexes of the compared fields in the tuples, by priority
+	 */
+	public TupleComparator(int[] fields) {
+		this.fields = fields;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public int compare(Object[] t1, Object[] t2) {
+		for(int f : fields) {
+			Object v1 = t1[f];
+			Object v2 = t2[f];
+			if(v1 == v2) {
+				continue;
+			}
+			if(v1 == null) {
+				return -1;
+			}
+			if(v2 == null) {
+				return 1;
+			}
+			int c = ((Comparable) v1).compareTo(v2);
+			if(c != 0) {
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sort tuples, in parallel for large lists.
+	 *
+	 * @param tuples tuples
+	 * @return sorted tuples
+	 */
+	public List<Object[]> sort(List<Object[]> tuples) {
+		Object[][] sorted = tuples.toArray(new Object[tuples.size()][]);
+		Arrays.parallelSort(sorted, this);
+		return Arrays.asList(sorted);
+	}
+
+	@Override
+	public String toString() {
+		return "TupleComparator" + Arrays.toString(fields);
+	}
+
+}
@@ -0,0 +1,119 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.time.LocalDate;
+
+/**
+ * 
+ * 64 bits hashing of tuples, used to detect the rows
+ * that changed between two versions of a file.
+ * <p>
+ * Java hash codes are only 32 bits long, they would collide
+ * too often on files of hundreds of millions of rows, so text
+ * values are hashed character by character.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class TupleHasher {
+
+	/** FNV-1a offset basis */
+	protected static final long SEED = 0xcbf29ce484222325L;
+
+	/** FNV-1a prime */
+	protected static final long PRIME = 0x100000001b3L;
+
+	/** Fields of the tuple to hash */
+	protected final int[] fields;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param fields indexes of the hashed fields in the tuples
+	 */
+	public TupleHasher(int[] fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @param width number of fields of the tuples
+	 * @return hasher of all the fields
+	 */
+	public static TupleHasher allFields(int width) {
+		int[] fields = new int[width];
+		for(int f = 0; f < width; f++) {
+			fields[f] = f;
+		}
+		return new TupleHasher(fields);
+	}
+
+	/**
+	 * @param tuple tuple
+	 * @return 64 bits hash of the hashed fields
+	 */
+	public long hash(Object[] tuple) {
+		long h = SEED;
+		for(int f : fields) {
+			h = hash(h, tuple[f]);
+		}
+		return mix(h);
+	}
+
+	/** Combine a value into a hash */
+	protected static long hash(long h, Object value) {
+		if(value == null) {
+			return (h ^ 0xff) * PRIME;
+		} else if(value instanceof CharSequence) {
+			CharSequence text = (CharSequence) value;
+			for(int i = 0; i < text.length(); i++) {
+				h = (h ^ text.charAt(i)) * PRIME;
+			}
+			return (h ^ 0xfe) * PRIME;
+		} else if(value instanceof Double || value instanceof Float) {
+			return hash(h, Double.doubleToLongBits(((Number) value).doubleValue()));
+		} else if(value instanceof Number) {
+			return hash(h, ((Number) value).longValue());
+		} else if(value instanceof LocalDate) {
+			return hash(h, ((LocalDate) value).toEpochDay());
+		} else {
+			return hash(h, value.toString());
+		}
+	}
+
+	/** Combine a long into a hash */
+	protected static long hash(long h, long value) {
+		for(int b = 0; b < 8; b++) {
+			h = (h ^ (value & 0xff)) * PRIME;
+			value >>>= 8;
+		}
+		return h;
+	}
+
+	/** Final avalanche (from MurmurHash3) */
+	protected static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
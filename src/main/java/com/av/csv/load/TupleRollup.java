@@ -0,0 +1,228 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * Pre-aggregation of the parsed rows before they are stored
+ * ("rollup ingest"). The rows that have the same values on
+ * all the group fields are combined into one tuple holding,
+ * for each measure, the aggregates of the combined rows
+ * and the number of combined rows.
+ * <p>
+ * Rows are first rolled up by batch in the parser threads, and
+ * the partial groups of a transaction are merged before the commit.
+ * <p>
+ * The rolled up tuples contain the group fields, then one field
+ * per aggregate, then the number of rows of the group, as a long.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class TupleRollup {
+
+	/** Aggregations available for the measures */
+	public enum Aggregation { SUM, MIN, MAX, SQ_SUM }
+
+	/** Indexes of the group fields in the rows */
+	protected final int[] groupFields;
+
+	/** For each aggregate, index of the aggregated field in the rows */
+	protected final int[] measureFields;
+
+	/** Aggregation of each aggregate */
+	protected final Aggregation[] aggregations;
+
+	/** Data type of each aggregate, int, long, float or double */
+	protected final String[] types;
+
+	/** For each aggregate, true when it is computed with integer arithmetic */
+	protected final boolean[] integers;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param groupFields indexes of the group fields in the rows
+	 * @param measureFields for each aggregate, index of the aggregated field in the rows
+	 * @param aggregations aggregation of each aggregate
+	 * @param types data type of each aggregate, int, long, float or double
+	 */
+	public TupleRollup(int[] groupFields, int[] measureFields, Aggregation[] aggregations, String[] types) {
+		if(measureFields.length != aggregations.length || measureFields.length != types.length) {
+			throw new IllegalArgumentException("One field, aggregation and type is expected per aggregate.");
+		}
+		this.groupFields = groupFields;
+		this.measureFields = measureFields;
+		this.aggregations = aggregations;
+		this.types = types;
+		this.integers = new boolean[types.length];
+		for(int a = 0; a < types.length; a++) {
+			boolean integer = "int".equals(types[a]) || "long".equals(types[a]);
+			if(!integer && !"double".equals(types[a]) && !"float".equals(types[a])) {
+				throw new IllegalArgumentException("Unsupported aggregate type: " + types[a]);
+			}
+			integers[a] = integer && aggregations[a] != Aggregation.SQ_SUM;
+		}
+	}
+
+	/** @return number of fields of the rolled up tuples */
+	public int getWidth() {
+		return groupFields.length + measureFields.length + 1;
+	}
+
+	/**
+	 * Combine parsed rows.
+	 * 
+	 * @param rows parsed rows
+	 * @return one rolled up tuple per group
+	 */
+	public List<Object[]> rollup(List<Object[]> rows) {
+		return aggregate(rows, false);
+	}
+
+	/**
+	 * Merge rolled up tuples that belong to the same groups.
+	 * 
+	 * @param tuples rolled up tuples
+	 * @return one rolled up tuple per group
+	 */
+	public List<Object[]> merge(List<Object[]> tuples) {
+		return aggregate(tuples, true);
+	}
+
+	protected List<Object[]> aggregate(List<Object[]> input, boolean rolledUp) {
+		Map<GroupKey, Group> groups = new LinkedHashMap<>();
+		for(Object[] tuple : input) {
+			Object[] key = new Object[groupFields.length];
+			for(int g = 0; g < key.length; g++) {
+				key[g] = tuple[rolledUp ? g : groupFields[g]];
+			}
+			Group group = groups.computeIfAbsent(new GroupKey(key), k -> new Group(measureFields.length));
+			for(int a = 0; a < measureFields.length; a++) {
+				Object value = tuple[rolledUp ? groupFields.length + a : measureFields[a]];
+				if(value != null) {
+					group.add(a, (Number) value, !rolledUp);
+				}
+			}
+			group.count += rolledUp ? ((Number) tuple[tuple.length - 1]).longValue() : 1L;
+		}
+
+		List<Object[]> result = new ArrayList<>(groups.size());
+		for(Map.Entry<GroupKey, Group> entry : groups.entrySet()) {
+			Object[] tuple = new Object[getWidth()];
+			Object[] key = entry.getKey().values;
+			System.arraycopy(key, 0, tuple, 0, key.length);
+			Group group = entry.getValue();
+			for(int a = 0; a < measureFields.length; a++) {
+				tuple[key.length + a] = group.get(a);
+			}
+			tuple[tuple.length - 1] = group.count;
+			result.add(tuple);
+		}
+		return result;
+	}
+
+	/** Values of the group fields of a row */
+	protected static class GroupKey {
+
+		protected final Object[] values;
+
+		protected final int hash;
+
+		protected GroupKey(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof GroupKey && Arrays.equals(values, ((GroupKey) obj).values);
+		}
+	}
+
+	/** Aggregates of a group */
+	protected class Group {
+
+		protected final long[] longs;
+
+		protected final double[] doubles;
+
+		/** True for the aggregates of at least one non null value */
+		protected final boolean[] present;
+
+		protected long count;
+
+		protected Group(int size) {
+			this.longs = new long[size];
+			this.doubles = new double[size];
+			this.present = new boolean[size];
+		}
+
+		/**
+		 * @param a aggregate
+		 * @param value value of a row, or aggregate of a rolled up tuple
+		 * @param raw true for the value of a row, that is squared by SQ_SUM
+		 */
+		protected void add(int a, Number value, boolean raw) {
+			boolean first = !present[a];
+			present[a] = true;
+			if(integers[a]) {
+				long v = value.longValue();
+				switch(aggregations[a]) {
+				case MIN: longs[a] = first ? v : Math.min(longs[a], v); break;
+				case MAX: longs[a] = first ? v : Math.max(longs[a], v); break;
+				default: longs[a] += v;
+				}
+			} else {
+				double v = value.doubleValue();
+				switch(aggregations[a]) {
+				case MIN: doubles[a] = first ? v : Math.min(doubles[a], v); break;
+				case MAX: doubles[a] = first ? v : Math.max(doubles[a], v); break;
+				case SQ_SUM: doubles[a] += raw ? v * v : v; break;
+				default: doubles[a] += v;
+				}
+			}
+		}
+
+		protected Object get(int a) {
+			if(!present[a]) {
+				return null;
+			}
+			double d = doubles[a];
+			switch(types[a]) {
+			case "int": return integers[a] ? (int) longs[a] : (int) d;
+			case "long": return integers[a] ? longs[a] : (long) d;
+			case "float": return (float) d;
+			default: return d;
+			}
+		}
+	}
+
+}
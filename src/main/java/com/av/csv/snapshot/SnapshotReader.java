@@ -0,0 +1,331 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.snapshot;
+
+import static com.av.csv.snapshot.SnapshotWriter.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.av.csv.CSVFormat;
+
+/**
+ * 
+ * Read a snapshot written by a {@link SnapshotWriter}.
+ * The header is read when the snapshot is opened, and the checksums
+ * of the chunks and the number of rows can be {@link #verify() verified}
+ * before the rows are restored. A journal is verified up to its last
+ * checkpoint with {@link #verifyCheckpoints()}, and its rows are read
+ * up to that checkpoint.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class SnapshotReader implements Closeable {
+
+	/** Input */
+	protected final DataInputStream in;
+
+	/** Checksum of the current chunk */
+	protected final CRC32 checksum = new CRC32();
+
+	/** Fingerprint of the input and of the loading settings */
+	protected final String fingerprint;
+
+	/** Offset in the input after the last loaded line */
+	protected final long offset;
+
+	/** CSV format of the input */
+	protected final CSVFormat format;
+
+	/** Names of the store fields */
+	protected final List<String> fields;
+
+	/** Types of the store fields */
+	protected final List<String> types;
+
+	/** Kind of each field */
+	protected final byte[] kinds;
+
+	/** Dictionary of each object field */
+	protected final List<List<Object>> dictionaries = new ArrayList<>();
+
+	/** Number of rows read */
+	protected long rowCount = 0L;
+
+	/** Offset in the input after the rows of the last checkpoint read, -1 when no checkpoint was read */
+	protected long checkpointOffset = -1L;
+
+	/** Number of rows up to the last checkpoint read */
+	protected long checkpointRows = 0L;
+
+	/**
+	 * Open a snapshot and read its header.
+	 * 
+	 * @param file snapshot file
+	 * @throws IOException if the file is not a snapshot
+	 */
+	public SnapshotReader(Path file) throws IOException {
+		this.in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20), checksum));
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is not an AutoPivot snapshot");
+			}
+			int version = in.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported version " + version + " of snapshot " + file);
+			}
+			this.fingerprint = readString();
+			this.offset = in.readLong();
+
+			String separator = readString();
+			boolean quoteProcessing = in.readBoolean();
+			int columnCount = in.readInt();
+			List<String> names = new ArrayList<>(columnCount);
+			List<String> columnTypes = new ArrayList<>(columnCount);
+			List<Integer> sourceIndexes = new ArrayList<>(columnCount);
+			for(int c = 0; c < columnCount; c++) {
+				names.add(readString());
+				columnTypes.add(readString());
+				sourceIndexes.add(in.readInt());
+			}
+			int sourceColumnCount = in.readInt();
+			List<String> candidateKey = readStrings();
+			this.format = new CSVFormat(separator, names, columnTypes, quoteProcessing)
+					.withCandidateKey(candidateKey)
+					.withSourceColumns(sourceIndexes, sourceColumnCount);
+
+			this.fields = readStrings();
+			this.types = readStrings();
+		} catch(IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+		this.kinds = new byte[fields.size()];
+		for(int f = 0; f < kinds.length; f++) {
+			kinds[f] = SnapshotWriter.kind(types.get(f));
+			dictionaries.add(new ArrayList<>());
+		}
+	}
+
+	public String getFingerprint() { return fingerprint; }
+
+	public long getOffset() { return offset; }
+
+	public CSVFormat getFormat() { return format; }
+
+	public List<String> getFields() { return fields; }
+
+	public List<String> getTypes() { return types; }
+
+	/** @return offset in the input after the rows of the last checkpoint read, -1 when no checkpoint was read */
+	public long getCheckpointOffset() { return checkpointOffset; }
+
+	/**
+	 * Read the rows of the snapshot, chunk by chunk. Each chunk is
+	 * checked against its checksum before it is consumed.
+	 * 
+	 * @param consumer consumer of the tuples of each chunk
+	 * @return number of rows read
+	 * @throws IOException if the snapshot is damaged or truncated
+	 */
+	public long read(Consumer<List<Object[]>> consumer) throws IOException {
+		List<Object[]> chunk;
+		while((chunk = readRecord()) != null) {
+			if(!chunk.isEmpty()) {
+				consumer.accept(chunk);
+			}
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Read the first rows of the snapshot, up to a checkpoint.
+	 * 
+	 * @param consumer consumer of the tuples of each chunk
+	 * @param rows number of rows up to the checkpoint
+	 * @return number of rows read
+	 * @throws IOException if the snapshot is damaged or has fewer rows
+	 */
+	public long read(Consumer<List<Object[]>> consumer, long rows) throws IOException {
+		List<Object[]> chunk;
+		while(rowCount < rows && (chunk = readRecord()) != null) {
+			if(!chunk.isEmpty()) {
+				consumer.accept(chunk);
+			}
+		}
+		if(rowCount != rows) {
+			throw new IOException("Corrupted snapshot, " + rowCount + " rows read instead of " + rows);
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Read the whole snapshot without consuming its rows, to check
+	 * the checksums of the chunks and the number of rows.
+	 * 
+	 * @return number of rows of the snapshot
+	 * @throws IOException if the snapshot is damaged or truncated
+	 */
+	public long verify() throws IOException {
+		return read(chunk -> {});
+	}
+
+	/**
+	 * Read a journal without consuming its rows, up to its last valid
+	 * checkpoint. The end of the journal written after that checkpoint,
+	 * truncated or damaged when the process stopped, is ignored.
+	 * 
+	 * @return number of rows up to the last checkpoint, see {@link #getCheckpointOffset()}
+	 */
+	public long verifyCheckpoints() {
+		try {
+			while(readRecord() != null) {
+				continue;
+			}
+		} catch(IOException | RuntimeException e) {
+			// The journal ends after its last checkpoint
+		}
+		return checkpointRows;
+	}
+
+	/**
+	 * Read the next record of the snapshot.
+	 * 
+	 * @return tuples of a chunk, empty after a checkpoint, null at the end of the snapshot
+	 * @throws IOException if the snapshot is damaged or truncated
+	 */
+	protected List<Object[]> readRecord() throws IOException {
+		checksum.reset();
+		int rows = in.readInt();
+		if(rows == CHECKPOINT) {
+			long offset = in.readLong();
+			long rowsBefore = in.readLong();
+			int expected = (int) checksum.getValue();
+			if(in.readInt() != expected || rowsBefore != rowCount) {
+				throw new IOException("Corrupted snapshot, wrong checkpoint after row " + rowCount);
+			}
+			checkpointOffset = offset;
+			checkpointRows = rowCount;
+			return Collections.emptyList();
+		}
+		if(rows <= 0) {
+			long expectedRows = in.readLong();
+			if(expectedRows != rowCount) {
+				throw new IOException("Corrupted snapshot, " + rowCount + " rows read instead of " + expectedRows);
+			}
+			return null;
+		}
+		Object[][] tuples = new Object[rows][kinds.length];
+		for(int f = 0; f < kinds.length; f++) {
+			if(kinds[f] == OBJECT) {
+				readObjects(f, tuples);
+			} else {
+				readNumbers(f, tuples);
+			}
+		}
+		int expected = (int) checksum.getValue();
+		if(in.readInt() != expected) {
+			throw new IOException("Corrupted snapshot, wrong checksum of the chunk after row " + rowCount);
+		}
+		rowCount += rows;
+		return new ArrayList<>(Arrays.asList(tuples));
+	}
+
+	protected void readNumbers(int field, Object[][] tuples) throws IOException {
+		byte[] bitmap = new byte[in.readInt()];
+		in.readFully(bitmap);
+		BitSet nulls = BitSet.valueOf(bitmap);
+		for(int r = 0; r < tuples.length; r++) {
+			Object value;
+			switch(kinds[field]) {
+			case INT: value = in.readInt(); break;
+			case LONG: value = in.readLong(); break;
+			case DOUBLE: value = in.readDouble(); break;
+			default: value = in.readFloat(); break;
+			}
+			tuples[r][field] = nulls.get(r) ? null : value;
+		}
+	}
+
+	protected void readObjects(int field, Object[][] tuples) throws IOException {
+		List<Object> dictionary = dictionaries.get(field);
+		int added = in.readInt();
+		for(int i = 0; i < added; i++) {
+			dictionary.add(readValue());
+		}
+		for(int r = 0; r < tuples.length; r++) {
+			int code = in.readInt();
+			tuples[r][field] = code < 0 ? null : dictionary.get(code);
+		}
+	}
+
+	protected Object readValue() throws IOException {
+		byte tag = in.readByte();
+		switch(tag) {
+		case STRING: return readString();
+		case LOCAL_DATE: return LocalDate.ofEpochDay(in.readLong());
+		case INTEGER: return in.readInt();
+		case LONG_VALUE: return in.readLong();
+		case DOUBLE_VALUE: return in.readDouble();
+		case FLOAT_VALUE: return in.readFloat();
+		case BOOLEAN: return in.readBoolean();
+		case LOCAL_DATE_TIME: return LocalDateTime.parse(readString());
+		case ZONED_DATE_TIME: return ZonedDateTime.parse(readString());
+		default: throw new IOException("Corrupted snapshot, unknown value tag " + tag);
+		}
+	}
+
+	protected String readString() throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	protected List<String> readStrings() throws IOException {
+		int size = in.readInt();
+		List<String> values = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			values.add(readString());
+		}
+		return values;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,416 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.av.csv.CSVFormat;
+
+/**
+ * 
+ * Write a snapshot of the loaded tuples in a compact binary file,
+ * so that the data can be restored without parsing the input again.
+ * <p>
+ * The snapshot starts with a header (fingerprint of the input,
+ * offset of the loading, CSV format and store fields), followed
+ * by chunks of rows stored column by column. Numeric fields are
+ * written as raw values with a null bitmap, the other fields are
+ * dictionary encoded: each distinct value is written once, in the
+ * first chunk where it appears, and the rows store its code.
+ * Each chunk ends with its CRC32 checksum, and the snapshot ends
+ * with its number of rows, so that a damaged or truncated snapshot
+ * is detected before it is restored.
+ * <p>
+ * The snapshot is written in a temporary file which replaces
+ * the snapshot file when it is complete. A journal is instead written
+ * in place while the input is loaded, with a {@link #checkpoint(long) checkpoint}
+ * after each commit, so that the rows up to its last checkpoint can be
+ * restored after the process stopped.
+ * 
+ * @author ActiveViam
+ *
+ */
+public class SnapshotWriter implements Closeable {
+
+	/** Magic number at the start of a snapshot file */
+	public static final int MAGIC = 0x41505331;
+
+	/** Version of the snapshot format */
+	public static final int VERSION = 3;
+
+	/** Marker of a checkpoint, in place of the number of rows of a chunk */
+	static final int CHECKPOINT = -1;
+
+	/** Default number of rows in a chunk */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/** Kinds of fields */
+	static final byte INT = 1, LONG = 2, DOUBLE = 3, FLOAT = 4, OBJECT = 5;
+
+	/** Tags of the dictionary values */
+	static final byte STRING = 1, LOCAL_DATE = 2, INTEGER = 3, LONG_VALUE = 4, DOUBLE_VALUE = 5,
+			FLOAT_VALUE = 6, BOOLEAN = 7, LOCAL_DATE_TIME = 8, ZONED_DATE_TIME = 9;
+
+	/** Snapshot file */
+	protected final Path file;
+
+	/** Temporary file being written */
+	protected final Path temp;
+
+	/** Output */
+	protected final DataOutputStream out;
+
+	/** Checksum of the current chunk */
+	protected final CRC32 checksum = new CRC32();
+
+	/** Kind of each field */
+	protected final byte[] kinds;
+
+	/** Dictionary of each object field, null for numeric fields */
+	protected final List<Map<Object, Integer>> dictionaries = new ArrayList<>();
+
+	/** Number of rows in a chunk */
+	protected final int chunkSize;
+
+	/** Rows of the current chunk */
+	protected final List<Object[]> chunk = new ArrayList<>();
+
+	/** Number of rows written */
+	protected long rowCount = 0L;
+
+	/** True once the snapshot is complete */
+	protected boolean completed = false;
+
+	/** True for a journal, written in place and kept when it is closed */
+	protected boolean journal = false;
+
+	/**
+	 * Constructor, writes the header of the snapshot.
+	 * 
+	 * @param file snapshot file
+	 * @param fingerprint fingerprint of the input and of the loading settings
+	 * @param offset offset in the input after the last loaded line
+	 * @param format CSV format of the input
+	 * @param fields names of the store fields
+	 * @param types types of the store fields
+	 * @throws IOException
+	 */
+	public SnapshotWriter(Path file, String fingerprint, long offset, CSVFormat format,
+			List<String> fields, List<String> types) throws IOException {
+		this(file, fingerprint, offset, format, fields, types, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor, writes the header of the snapshot.
+	 * 
+	 * @param file snapshot file
+	 * @param fingerprint fingerprint of the input and of the loading settings
+	 * @param offset offset in the input after the last loaded line
+	 * @param format CSV format of the input
+	 * @param fields names of the store fields
+	 * @param types types of the store fields
+	 * @param chunkSize number of rows in a chunk
+	 * @throws IOException
+	 */
+	public SnapshotWriter(Path file, String fingerprint, long offset, CSVFormat format,
+			List<String> fields, List<String> types, int chunkSize) throws IOException {
+		this(file, file.resolveSibling(file.getFileName() + ".tmp"), fingerprint, offset, format, fields, types, chunkSize);
+	}
+
+	/**
+	 * Create a journal of the loading of an input, written in place and
+	 * kept when it is closed. The rows of each commit are added, followed
+	 * by a {@link #checkpoint(long) checkpoint}.
+	 * 
+	 * @param file journal file
+	 * @param fingerprint fingerprint of the input and of the loading settings
+	 * @param format CSV format of the input
+	 * @param fields names of the store fields
+	 * @param types types of the store fields
+	 * @return journal
+	 * @throws IOException
+	 */
+	public static SnapshotWriter journal(Path file, String fingerprint, CSVFormat format,
+			List<String> fields, List<String> types) throws IOException {
+		SnapshotWriter journal = new SnapshotWriter(file, file, fingerprint, 0L, format, fields, types, DEFAULT_CHUNK_SIZE);
+		journal.journal = true;
+		return journal;
+	}
+
+	/**
+	 * Constructor, writes the header of the snapshot.
+	 * 
+	 * @param file snapshot file
+	 * @param temp file being written, replaced by the snapshot file when it is complete
+	 * @param fingerprint fingerprint of the input and of the loading settings
+	 * @param offset offset in the input after the last loaded line
+	 * @param format CSV format of the input
+	 * @param fields names of the store fields
+	 * @param types types of the store fields
+	 * @param chunkSize number of rows in a chunk
+	 * @throws IOException
+	 */
+	protected SnapshotWriter(Path file, Path temp, String fingerprint, long offset, CSVFormat format,
+			List<String> fields, List<String> types, int chunkSize) throws IOException {
+		this.file = file;
+		this.temp = temp;
+		this.chunkSize = chunkSize;
+		this.kinds = new byte[fields.size()];
+		for(int f = 0; f < kinds.length; f++) {
+			kinds[f] = kind(types.get(f));
+			dictionaries.add(kinds[f] == OBJECT ? new HashMap<>() : null);
+		}
+
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20), checksum));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(fingerprint);
+		out.writeLong(offset);
+
+		// CSV format
+		writeString(format.getSeparator());
+		out.writeBoolean(format.getQuoteProcessing());
+		out.writeInt(format.getColumnCount());
+		for(int c = 0; c < format.getColumnCount(); c++) {
+			writeString(format.getColumnName(c));
+			writeString(format.getColumnType(c));
+			out.writeInt(format.getSourceColumnIndex(c));
+		}
+		out.writeInt(format.getSourceColumnCount());
+		writeStrings(format.getCandidateKey());
+
+		// Store fields
+		writeStrings(fields);
+		writeStrings(types);
+	}
+
+	/** @return kind of the values of a field type */
+	protected static byte kind(String type) {
+		switch(type.toLowerCase()) {
+		case "int": return INT;
+		case "long": return LONG;
+		case "double": return DOUBLE;
+		case "float": return FLOAT;
+		default: return OBJECT;
+		}
+	}
+
+	/**
+	 * Add a tuple to the snapshot.
+	 * 
+	 * @param tuple tuple, in the order of the store fields
+	 * @throws IOException
+	 */
+	public void add(Object[] tuple) throws IOException {
+		chunk.add(tuple);
+		if(chunk.size() >= chunkSize) {
+			flush();
+		}
+	}
+
+	/** Write the current chunk */
+	public void flush() throws IOException {
+		if(chunk.isEmpty()) {
+			return;
+		}
+		int rows = chunk.size();
+		checksum.reset();
+		out.writeInt(rows);
+		for(int f = 0; f < kinds.length; f++) {
+			if(kinds[f] == OBJECT) {
+				writeObjects(f);
+			} else {
+				writeNumbers(f);
+			}
+		}
+		out.writeInt((int) checksum.getValue());
+		rowCount += rows;
+		chunk.clear();
+	}
+
+	/**
+	 * Write the pending rows and a checkpoint: the rows written so far are
+	 * the rows of the input up to an offset. The checkpoint is flushed to
+	 * the file, so that a journal can be restored up to its last checkpoint.
+	 * 
+	 * @param offset offset in the input after the rows written so far
+	 * @throws IOException
+	 */
+	public void checkpoint(long offset) throws IOException {
+		flush();
+		checksum.reset();
+		out.writeInt(CHECKPOINT);
+		out.writeLong(offset);
+		out.writeLong(rowCount);
+		out.writeInt((int) checksum.getValue());
+		out.flush();
+	}
+
+	/** @return number of rows written, the rows of the current chunk excluded */
+	public long getRowCount() { return rowCount; }
+
+	protected void writeNumbers(int field) throws IOException {
+		int rows = chunk.size();
+		BitSet nulls = new BitSet(rows);
+		for(int r = 0; r < rows; r++) {
+			if(chunk.get(r)[field] == null) {
+				nulls.set(r);
+			}
+		}
+		byte[] bitmap = nulls.toByteArray();
+		out.writeInt(bitmap.length);
+		out.write(bitmap);
+		for(int r = 0; r < rows; r++) {
+			Number value = (Number) chunk.get(r)[field];
+			switch(kinds[field]) {
+			case INT: out.writeInt(value == null ? 0 : value.intValue()); break;
+			case LONG: out.writeLong(value == null ? 0L : value.longValue()); break;
+			case DOUBLE: out.writeDouble(value == null ? 0.0 : value.doubleValue()); break;
+			default: out.writeFloat(value == null ? 0f : value.floatValue()); break;
+			}
+		}
+	}
+
+	protected void writeObjects(int field) throws IOException {
+		Map<Object, Integer> dictionary = dictionaries.get(field);
+		int rows = chunk.size();
+		int[] codes = new int[rows];
+		List<Object> added = new ArrayList<>();
+		for(int r = 0; r < rows; r++) {
+			Object value = chunk.get(r)[field];
+			if(value == null) {
+				codes[r] = -1;
+				continue;
+			}
+			Integer code = dictionary.get(value);
+			if(code == null) {
+				code = dictionary.size();
+				dictionary.put(value, code);
+				added.add(value);
+			}
+			codes[r] = code;
+		}
+
+		// New dictionary values, then the codes of the rows
+		out.writeInt(added.size());
+		for(Object value : added) {
+			writeValue(value);
+		}
+		for(int code : codes) {
+			out.writeInt(code);
+		}
+	}
+
+	protected void writeValue(Object value) throws IOException {
+		if(value instanceof String) {
+			out.writeByte(STRING);
+			writeString((String) value);
+		} else if(value instanceof LocalDate) {
+			out.writeByte(LOCAL_DATE);
+			out.writeLong(((LocalDate) value).toEpochDay());
+		} else if(value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if(value instanceof Long) {
+			out.writeByte(LONG_VALUE);
+			out.writeLong((Long) value);
+		} else if(value instanceof Double) {
+			out.writeByte(DOUBLE_VALUE);
+			out.writeDouble((Double) value);
+		} else if(value instanceof Float) {
+			out.writeByte(FLOAT_VALUE);
+			out.writeFloat((Float) value);
+		} else if(value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if(value instanceof LocalDateTime) {
+			out.writeByte(LOCAL_DATE_TIME);
+			writeString(value.toString());
+		} else if(value instanceof ZonedDateTime) {
+			out.writeByte(ZONED_DATE_TIME);
+			writeString(value.toString());
+		} else {
+			throw new IOException("Cannot write a value of type " + value.getClass().getName() + " in a snapshot");
+		}
+	}
+
+	protected void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	protected void writeStrings(List<String> values) throws IOException {
+		out.writeInt(values.size());
+		for(String value : values) {
+			writeString(value);
+		}
+	}
+
+	/**
+	 * Write the last chunk and replace the snapshot file.
+	 * 
+	 * @return number of rows in the snapshot
+	 * @throws IOException
+	 */
+	public long complete() throws IOException {
+		flush();
+		out.writeInt(0);
+		out.writeLong(rowCount);
+		out.close();
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		completed = true;
+		return rowCount;
+	}
+
+	/** Close the snapshot, an incomplete snapshot is discarded, a journal is kept up to its last checkpoint */
+	@Override
+	public void close() throws IOException {
+		if(!completed) {
+			out.close();
+			if(!journal) {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.autopivot.MaterializationAdvisor.Proposal;
+
+public class TestMaterializationAdvisor {
+
+	protected static final Map<String, List<String>> HIERARCHIES = new LinkedHashMap<>();
+	static {
+		HIERARCHIES.put("AsOfDate", Arrays.asList("AsOfDate"));
+		HIERARCHIES.put("Item", Arrays.asList("Region", "Rep", "Item"));
+		HIERARCHIES.put("Trade", Arrays.asList("Trade"));
+	}
+
+	protected static final Map<String, Map<String, List<String>>> DIMENSIONS = new LinkedHashMap<>();
+	static {
+		Map<String, List<String>> dates = new LinkedHashMap<>();
+		dates.put("AsOfDate", HIERARCHIES.get("AsOfDate"));
+		dates.put("AsOfDate_YMD", Arrays.asList("Year", "Month", "Day"));
+		DIMENSIONS.put("AsOfDate", dates);
+		DIMENSIONS.put("Item", Collections.singletonMap("Item", HIERARCHIES.get("Item")));
+		DIMENSIONS.put("Trade", Collections.singletonMap("Trade", HIERARCHIES.get("Trade")));
+	}
+
+	protected static final Map<String, List<String>> MEASURES = new LinkedHashMap<>();
+	static {
+		MEASURES.put("contributors.COUNT", Arrays.asList("contributors.COUNT"));
+		MEASURES.put("PnL.SUM", Arrays.asList("PnL.SUM"));
+		MEASURES.put("PnL.avg", Arrays.asList("PnL.SUM", "contributors.COUNT"));
+	}
+
+	protected static long cardinality(String level) {
+		switch(level) {
+		case "AsOfDate": return 250;
+		case "Region": return 5;
+		case "Rep": return 100;
+		case "Item": return 1_000_000;
+		default: return 50_000_000;
+		}
+	}
+
+	@Test
+	public void testMdxPattern() {
+		QueryPattern pattern = QueryPattern.fromMdx("SELECT NON EMPTY {[Measures].[PnL.avg]} ON COLUMNS, "
+				+ "NON EMPTY [Item].[Item].[Rep].Members ON ROWS FROM [AUTOPIVOT] "
+				+ "WHERE [AsOfDate].[AsOfDate].[AllMember].[2024-01-02]", DIMENSIONS);
+		Assertions.assertThat(pattern.getLevels()).containsEntry("Item", "Rep").containsEntry("AsOfDate", "AsOfDate");
+		Assertions.assertThat(pattern.getMeasures()).containsExactly("PnL.avg");
+
+		Assertions.assertThat(QueryPattern.fromMdx("SELECT [Trade].[TradeId].[TradeId].Members ON ROWS FROM [AUTOPIVOT]", DIMENSIONS)).isNull();
+	}
+
+	@Test
+	public void testMdxPatternOnDates() {
+		// The date hierarchies are not named after their dimension
+		QueryPattern pattern = QueryPattern.fromMdx("SELECT NON EMPTY {[Measures].[PnL.SUM]} ON COLUMNS, "
+				+ "NON EMPTY [AsOfDate].[AsOfDate_YMD].[Month].Members ON ROWS FROM [AUTOPIVOT] "
+				+ "WHERE [AsOfDate].[AsOfDate_YMD].[AllMember].[2024]", DIMENSIONS);
+		Assertions.assertThat(pattern.getLevels()).hasSize(1).containsEntry("AsOfDate_YMD", "Month");
+
+		// The hierarchy is resolved in its own dimension
+		Assertions.assertThat(QueryPattern.fromMdx("SELECT [Item].[AsOfDate_YMD].[Year].Members ON ROWS FROM [AUTOPIVOT]", DIMENSIONS)).isNull();
+
+		// Depths of the levels of a GetAggregates query
+		Map<String, Map<String, Integer>> depths = new LinkedHashMap<>();
+		depths.put("AsOfDate", Collections.singletonMap("AsOfDate_YMD", 2));
+		depths.put("Item", Collections.singletonMap("Item", 0));
+		QueryPattern query = QueryPattern.fromDepths(depths, new TreeSet<>(Arrays.asList("PnL.SUM")), DIMENSIONS);
+		Assertions.assertThat(query.getLevels()).containsEntry("AsOfDate_YMD", "Day").containsEntry("Item", "Region");
+	}
+
+	@Test
+	public void testAdvise() throws Exception {
+		QueryLog log = new QueryLog();
+		Map<String, String> byRep = new LinkedHashMap<>();
+		byRep.put("Item", "Rep");
+		byRep.put("AsOfDate", "AsOfDate");
+		Map<String, String> byRegion = new LinkedHashMap<>();
+		byRegion.put("Item", "Region");
+		for(int q = 0; q < 10; q++) {
+			log.record(new QueryPattern(byRep, new TreeSet<>(Arrays.asList("PnL.avg"))), 500L);
+			log.record(new QueryPattern(byRegion, new TreeSet<>(Arrays.asList("PnL.SUM"))), 300L);
+		}
+		log.record(new QueryPattern(Collections.singletonMap("Trade", "Trade"), new TreeSet<>(Arrays.asList("PnL.SUM"))), 10_000L);
+
+		MaterializationAdvisor advisor = new MaterializationAdvisor(64L << 20, 3, HIERARCHIES, (hierarchy, level) -> cardinality(level), MEASURES);
+		List<Proposal> proposals = advisor.advise(log.getEntries());
+
+		// The tiny provider by region first, then the provider by rep and date
+		// on the measures the average is computed from, the trades do not fit
+		Assertions.assertThat(proposals).hasSize(2);
+		Assertions.assertThat(proposals.get(0).scope.getLevels()).containsEntry("Item", "Region");
+		Assertions.assertThat(proposals.get(1).scope.getLevels()).containsEntry("Item", "Rep");
+		Assertions.assertThat(proposals.get(1).scope.getMeasures()).containsExactly("PnL.SUM", "contributors.COUNT");
+		Assertions.assertThat(proposals.get(1).queries).isEqualTo(10L);
+
+		// The log is saved and loaded for the next start
+		Path file = Files.createTempFile("queries", ".tsv");
+		try {
+			log.save(file);
+			Assertions.assertThat(QueryLog.load(file).getEntries()).hasSize(3);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
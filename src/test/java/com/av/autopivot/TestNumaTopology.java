@@ -0,0 +1,61 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestNumaTopology {
+
+	@Test
+	public void testCountCpus() {
+		Assertions.assertThat(NumaTopology.countCpus("0-15,32-47")).isEqualTo(32);
+		Assertions.assertThat(NumaTopology.countCpus("3")).isEqualTo(1);
+		Assertions.assertThat(NumaTopology.countCpus("")).isEqualTo(0);
+	}
+
+	@Test
+	public void testReadNodes() throws Exception {
+		Path root = Files.createTempDirectory("numa");
+		String[] cpuLists = { "0-7,16-23", "8-15,24-31", "" };
+		for(int n = 0; n < cpuLists.length; n++) {
+			Path node = Files.createDirectories(root.resolve("node" + n));
+			Files.write(node.resolve("cpulist"), (cpuLists[n] + "\n").getBytes());
+		}
+
+		// The memory only node is ignored
+		NumaTopology topology = NumaTopology.read(root);
+		Assertions.assertThat(topology.getNodeCount()).isEqualTo(2);
+		Assertions.assertThat(topology.getCpuCounts()).containsExactly(16, 16);
+		Assertions.assertThat(topology.alignToNodes(3)).isEqualTo(4);
+		Assertions.assertThat(topology.alignToNodes(8)).isEqualTo(8);
+		Assertions.assertThat(topology.alignToNodes(0)).isEqualTo(2);
+	}
+
+	@Test
+	public void testSingleNodeWithoutSysfs() throws Exception {
+		NumaTopology topology = NumaTopology.read(Files.createTempDirectory("numa").resolve("missing"));
+		Assertions.assertThat(topology.getNodeCount()).isEqualTo(1);
+		Assertions.assertThat(topology.alignToNodes(5)).isEqualTo(5);
+	}
+
+}
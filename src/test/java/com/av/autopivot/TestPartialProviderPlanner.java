@@ -0,0 +1,51 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.util.Arrays;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.autopivot.PartialProviderPlanner.Candidate;
+import com.av.autopivot.PartialProviderPlanner.Plan;
+
+public class TestPartialProviderPlanner {
+
+	@Test
+	public void testDeepestLevelsWithinBudget() {
+		Candidate date = new Candidate("AsOfDate", Arrays.asList("AsOfDate"), new long[] { 250 });
+		Candidate region = new Candidate("Item", Arrays.asList("Region", "Rep", "Item"), new long[] { 5, 100, 1_000_000 });
+		Candidate trade = new Candidate("Trade", Arrays.asList("Trade"), new long[] { 50_000_000 });
+
+		// 100 reps, each in one region, x 250 dates
+		Plan plan = new PartialProviderPlanner(64L << 20, 4).plan(Arrays.asList(date, region, trade));
+		Assertions.assertThat(plan.levels).containsEntry("Item", "Rep").containsEntry("AsOfDate", "AsOfDate").doesNotContainKey("Trade");
+		Assertions.assertThat(plan.points).isEqualTo(25_000L);
+		Assertions.assertThat(plan.bytes).isLessThanOrEqualTo(64L << 20);
+	}
+
+	@Test
+	public void testNothingFits() {
+		Candidate trade = new Candidate("Trade", Arrays.asList("Trade"), new long[] { 50_000_000 });
+		Candidate unknown = new Candidate("Book", Arrays.asList("Book"), new long[] { -1 });
+		Assertions.assertThat(new PartialProviderPlanner(1L << 20, 4).plan(Arrays.asList(trade, unknown))).isNull();
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestRetentionPolicy {
+
+	protected static final List<LocalDate> DATES = Arrays.asList(
+			LocalDate.of(2024, 1, 10),
+			LocalDate.of(2024, 1, 2),
+			LocalDate.of(2024, 1, 9),
+			LocalDate.of(2024, 1, 5));
+
+	@Test
+	public void testKeepLastValues() {
+		Assertions.assertThat(new RetentionPolicy(2, 0).getExpired(DATES))
+			.containsExactly(LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 5));
+		Assertions.assertThat(new RetentionPolicy(10, 0).getExpired(DATES)).isEmpty();
+	}
+
+	@Test
+	public void testKeepLastDays() {
+		// The last 6 days are 2024-01-05 to 2024-01-10
+		Assertions.assertThat(new RetentionPolicy(0, 6).getExpired(DATES))
+			.containsExactly(LocalDate.of(2024, 1, 2));
+		// The strictest limit wins
+		Assertions.assertThat(new RetentionPolicy(1, 6).getExpired(DATES)).hasSize(3);
+	}
+
+}
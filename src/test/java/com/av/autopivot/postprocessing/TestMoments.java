@@ -0,0 +1,50 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.autopivot.postprocessing;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestMoments {
+
+	@Test
+	public void testMeanAndStandardDeviation() {
+		// 2, 4, 4, 4, 5, 5, 7, 9
+		double sum = 40.0;
+		double squareSum = 232.0;
+		Assertions.assertThat(Moments.mean(sum, 8L)).isEqualTo(5.0);
+		Assertions.assertThat(Moments.standardDeviation(squareSum, sum, 8L)).isEqualTo(2.0);
+	}
+
+	@Test
+	public void testConstantValues() {
+		// Three times 0.1, the variance is rounded slightly below zero
+		double sum = 0.1 + 0.1 + 0.1;
+		double squareSum = 0.1 * 0.1 + 0.1 * 0.1 + 0.1 * 0.1;
+		Assertions.assertThat(Moments.standardDeviation(squareSum, sum, 3L)).isEqualTo(0.0);
+	}
+
+	@Test
+	public void testAggregateTypes() {
+		Assertions.assertThat(Moments.toDouble(3L)).isEqualTo(3.0);
+		Assertions.assertThat(Moments.toDouble(2.5f)).isEqualTo(2.5);
+		Assertions.assertThat(Moments.toLong(7)).isEqualTo(7L);
+	}
+
+}
@@ -0,0 +1,44 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestColumnSelector {
+
+	@Test
+	public void testSelectAll() {
+		ColumnSelector selector = ColumnSelector.parse(null, " ");
+		Assertions.assertThat(selector.isAll()).isTrue();
+		Assertions.assertThat(selector.isSelected("AsOfDate")).isTrue();
+	}
+
+	@Test
+	public void testIncludeAndExclude() {
+		ColumnSelector selector = ColumnSelector.parse("AsOfDate, desk*, *PnL*", "*Comment*, Desk?");
+		Assertions.assertThat(selector.isSelected("asofdate")).isTrue();
+		Assertions.assertThat(selector.isSelected("DeskName")).isTrue();
+		Assertions.assertThat(selector.isSelected("Desk1")).isFalse();
+		Assertions.assertThat(selector.isSelected("Daily_PnL.EUR")).isTrue();
+		Assertions.assertThat(selector.isSelected("PnLComment")).isFalse();
+		Assertions.assertThat(selector.isSelected("Book")).isFalse();
+	}
+
+}
@@ -68,4 +68,13 @@ public class TestCsvSplitter {
 	public void testDoubleQuotesWithinField() {
 		Assertions.assertThat(split("a,b\"b,c", ",")).containsExactly("a", "b\"b", "c");
 	}
+
+	@Test
+	public void testSplitSelectedFields() {
+		boolean[] selected = { true, false, true };
+		Assertions.assertThat(split("a,b,c", ",", selected)).containsExactly("a", null, "c");
+		Assertions.assertThat(split("a,\"b, b\",\"c\"", ",", selected)).containsExactly("a", null, "c");
+		Assertions.assertThat(split("a,b,c,d", ",", selected)).containsExactly("a", null, "c", null);
+	}
+
 }
@@ -0,0 +1,215 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.load.CSVLineReader;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+
+public class TestCompression {
+
+	/** Size of the uncompressed content of a BGZF block */
+	protected static final int BLOCK_SIZE = 16 * 1024;
+
+	protected static byte[] content(int lines) {
+		StringBuilder content = new StringBuilder("Id;Desk;Value\n");
+		for(int i = 0; i < lines; i++) {
+			content.append(i).append(";Desk").append(i % 7).append(';').append(i * 0.5).append('\n');
+		}
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	protected static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(OutputStream os = new GZIPOutputStream(bytes)) {
+			os.write(content);
+		}
+		return bytes.toByteArray();
+	}
+
+	protected static byte[] zstd(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(OutputStream os = new ZstdOutputStream(bytes)) {
+			os.write(content);
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Compress in BGZF blocks, gzip members with a 'BC' extra subfield holding the block size */
+	protected static byte[] bgzf(byte[] content) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] deflated = new byte[2 * BLOCK_SIZE];
+		for(int start = 0; start < content.length; start += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, content.length - start);
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			deflater.setInput(content, start, length);
+			deflater.finish();
+			int size = deflater.deflate(deflated);
+			deflater.end();
+			CRC32 crc = new CRC32();
+			crc.update(content, start, length);
+
+			int blockSize = 18 + size + 8;
+			bytes.write(new byte[] { 0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0, 'B', 'C', 2, 0 }, 0, 16);
+			writeShort(bytes, blockSize - 1);
+			bytes.write(deflated, 0, size);
+			writeShort(bytes, (int) crc.getValue());
+			writeShort(bytes, (int) (crc.getValue() >>> 16));
+			writeShort(bytes, length);
+			writeShort(bytes, 0);
+		}
+		return bytes.toByteArray();
+	}
+
+	protected static void writeShort(ByteArrayOutputStream bytes, int value) {
+		bytes.write(value & 0xFF);
+		bytes.write((value >>> 8) & 0xFF);
+	}
+
+	protected static byte[] readAll(InputStream is) throws IOException {
+		try(InputStream input = is) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while((n = input.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, n);
+			}
+			return bytes.toByteArray();
+		}
+	}
+
+	protected static Compression detect(byte[] compressed) {
+		return Compression.detect(compressed, Math.min(Compression.HEADER_SIZE, compressed.length));
+	}
+
+	@Test
+	public void testGzipRoundTrip() throws IOException {
+		byte[] content = content(100);
+		byte[] compressed = gzip(content);
+		Assertions.assertThat(detect(compressed)).isEqualTo(Compression.GZIP);
+		Assertions.assertThat(readAll(Compression.decompress(new ByteArrayInputStream(compressed)))).isEqualTo(content);
+	}
+
+	@Test
+	public void testZstdRoundTrip() throws IOException {
+		byte[] content = content(100);
+		byte[] compressed = zstd(content);
+		Assertions.assertThat(detect(compressed)).isEqualTo(Compression.ZSTD);
+		Assertions.assertThat(readAll(Compression.decompress(new ByteArrayInputStream(compressed)))).isEqualTo(content);
+	}
+
+	@Test
+	public void testPlainTextIsNotDecompressed() throws IOException {
+		byte[] content = content(10);
+		Assertions.assertThat(detect(content)).isEqualTo(Compression.NONE);
+		Assertions.assertThat(readAll(Compression.decompress(new ByteArrayInputStream(content)))).isEqualTo(content);
+	}
+
+	@Test
+	public void testMultiBlockBgzfRoundTrip() throws IOException {
+		byte[] content = content(20_000);
+		byte[] compressed = bgzf(content);
+		Assertions.assertThat(content.length).isGreaterThan(10 * BLOCK_SIZE);
+		Assertions.assertThat(detect(compressed)).isEqualTo(Compression.BGZIP);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			InputStream parallel = Compression.decompress(new ByteArrayInputStream(compressed), executor, 4);
+			Assertions.assertThat(parallel).isInstanceOf(BGZFInputStream.class);
+			Assertions.assertThat(readAll(parallel)).isEqualTo(content);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Also a valid multi member gzip file
+		Assertions.assertThat(readAll(new GZIPInputStream(new ByteArrayInputStream(compressed)))).isEqualTo(content);
+		Assertions.assertThat(readAll(Compression.decompress(new ByteArrayInputStream(compressed)))).isEqualTo(content);
+	}
+
+	@Test
+	public void testLineOffsetsAreDecompressedPositions() throws IOException {
+		byte[] content = content(20_000);
+		String text = new String(content, StandardCharsets.UTF_8);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// The offsets of the lines across the blocks are their positions in the text
+			long expected = 0L;
+			int lines = 0;
+			try(CSVLineReader reader = new CSVLineReader(Compression.decompress(new ByteArrayInputStream(bgzf(content)), executor, 2),
+					StandardCharsets.UTF_8, 0L, false)) {
+				String line;
+				while((line = reader.readLine()) != null) {
+					Assertions.assertThat(reader.getLineOffset()).isEqualTo(expected);
+					Assertions.assertThat(text.indexOf(line + "\n", (int) expected)).isEqualTo((int) expected);
+					expected = reader.getOffset();
+					lines++;
+				}
+			}
+			Assertions.assertThat(lines).isEqualTo(20_001);
+			Assertions.assertThat(expected).isEqualTo(content.length);
+
+			// A loading resumed from the offset of a line in a later block reads that line first
+			int offset = text.indexOf("\n15000;") + 1;
+			InputStream is = Compression.decompress(new ByteArrayInputStream(bgzf(content)), executor, 2);
+			long skipped = 0L;
+			while(skipped < offset) {
+				skipped += is.skip(offset - skipped);
+			}
+			try(CSVLineReader reader = new CSVLineReader(is, StandardCharsets.UTF_8, offset, false)) {
+				Assertions.assertThat(reader.readLine()).isEqualTo("15000;Desk6;7500.0");
+				Assertions.assertThat(reader.getLineOffset()).isEqualTo((long) offset);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCorruptedBgzfBlockIsDetected() throws IOException {
+		byte[] compressed = bgzf(content(5_000));
+		// Flip a bit of the CRC32 of the first block
+		int blockSize = (compressed[16] & 0xFF | (compressed[17] & 0xFF) << 8) + 1;
+		compressed[blockSize - 8] ^= 1;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			InputStream is = Compression.decompress(new ByteArrayInputStream(compressed), executor, 1);
+			Assertions.assertThatThrownBy(() -> readAll(is)).isInstanceOf(ZipException.class).hasMessageContaining("CRC mismatch");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.function.IntFunction;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.discover.ColumnClassifier.Role;
+
+public class TestColumnClassifier {
+
+	protected static ColumnStatistics statistics(int rows, IntFunction<String> values) {
+		ColumnStatistics statistics = new ColumnStatistics();
+		for(int row = 0; row < rows; row++) {
+			statistics.add(values.apply(row));
+		}
+		return statistics;
+	}
+
+	@Test
+	public void testIdentifiersAreDrillthroughFields() {
+		ColumnClassifier classifier = new ColumnClassifier();
+		Assertions.assertThat(classifier.classify("String", statistics(20_000, row -> "T" + row)).role).isEqualTo(Role.DRILLTHROUGH);
+		Assertions.assertThat(classifier.classify("int", statistics(20_000, row -> String.valueOf(row))).role).isEqualTo(Role.DRILLTHROUGH);
+	}
+
+	@Test
+	public void testIntegerAmountsAreMeasures() {
+		ColumnStatistics amounts = statistics(20_000, row -> String.valueOf((row * 7919) % 5000));
+		Assertions.assertThat(amounts.isNumerical()).isTrue();
+		Assertions.assertThat(amounts.getMaxNumber()).isEqualTo(4999.0);
+		Assertions.assertThat(new ColumnClassifier().classify("int", amounts).role).isEqualTo(Role.MEASURE);
+	}
+
+	@Test
+	public void testFreeTextAndLargeHierarchies() {
+		String text = "a comment long enough to be considered free text rather than a member of a level";
+		Assertions.assertThat(new ColumnClassifier().classify("String", statistics(20_000, row -> text + (row % 2000))).role)
+			.isEqualTo(Role.DRILLTHROUGH);
+		ColumnClassifier classifier = new ColumnClassifier(1000L, 0.9, 100L, 64.0);
+		Assertions.assertThat(classifier.classify("String", statistics(20_000, row -> "C" + (row % 5000))).role).isEqualTo(Role.DRILLTHROUGH);
+		Assertions.assertThat(classifier.classify("String", statistics(20_000, row -> "C" + (row % 500))).role).isEqualTo(Role.HIERARCHY);
+	}
+
+	@Test
+	public void testFewValuesAreHierarchies() {
+		Assertions.assertThat(new ColumnClassifier().classify("int", statistics(100, row -> String.valueOf(2000 + row))).role)
+			.isEqualTo(Role.HIERARCHY);
+	}
+
+}
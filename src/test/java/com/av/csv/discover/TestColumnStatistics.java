@@ -0,0 +1,40 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestColumnStatistics {
+
+	@Test
+	public void testEstimateDistinctCount() {
+		ColumnStatistics desks = new ColumnStatistics();
+		ColumnStatistics trades = new ColumnStatistics();
+		for(int row = 0; row < 5000; row++) {
+			desks.add("Desk" + (row % 50));
+			trades.add("T" + row);
+		}
+		// All the desks are in the sample, the trades grow with the number of rows
+		Assertions.assertThat(desks.estimateDistinctCount(1_000_000L)).isEqualTo(50L);
+		Assertions.assertThat(trades.estimateDistinctCount(1_000_000L)).isBetween(50_000L, 1_000_000L);
+		Assertions.assertThat(trades.estimateDistinctCount(1000L)).isEqualTo(5000L);
+	}
+
+}
@@ -0,0 +1,63 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestFunctionalDependencies {
+
+	@Test
+	public void testChainedDependencies() {
+		// Region > Rep > Item, and Desk that is independent
+		List<ColumnStatistics> statistics = Arrays.asList(new ColumnStatistics(), new ColumnStatistics(), new ColumnStatistics(), new ColumnStatistics());
+		FunctionalDependencies dependencies = new FunctionalDependencies(new int[] {0, 1, 2, 3});
+		for(int row = 0; row < 1000; row++) {
+			int item = row % 40;
+			String[] values = { "Item" + item, "Rep" + (item / 4), "Region" + (item / 20), "Desk" + (row % 3) };
+			for(int c = 0; c < values.length; c++) {
+				statistics.get(c).add(values[c]);
+			}
+			dependencies.add(values);
+		}
+
+		Assertions.assertThat(dependencies.determines(0, 1)).isTrue();
+		Assertions.assertThat(dependencies.determines(1, 0)).isFalse();
+		Assertions.assertThat(dependencies.determines(0, 3)).isFalse();
+		Assertions.assertThat(dependencies.getHierarchies(statistics)).containsExactly(Arrays.asList(2, 1, 0));
+	}
+
+	@Test
+	public void testUniqueValuesAreNotChained() {
+		List<ColumnStatistics> statistics = Arrays.asList(new ColumnStatistics(), new ColumnStatistics());
+		FunctionalDependencies dependencies = new FunctionalDependencies(new int[] {0, 1});
+		for(int row = 0; row < 100; row++) {
+			String[] values = { "Trade" + row, "Desk" + (row % 5) };
+			statistics.get(0).add(values[0]);
+			statistics.get(1).add(values[1]);
+			dependencies.add(values);
+		}
+		Assertions.assertThat(dependencies.determines(0, 1)).isTrue();
+		Assertions.assertThat(dependencies.getHierarchies(statistics)).isEmpty();
+	}
+
+}
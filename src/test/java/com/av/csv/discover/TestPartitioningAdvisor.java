@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.discover;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+import com.av.csv.discover.PartitioningAdvisor.Choice;
+
+public class TestPartitioningAdvisor {
+
+	@Test
+	public void testSkewedAndUniqueFieldsAreAvoided() {
+		List<String> names = Arrays.asList("Flag", "TradeId", "Desk");
+		List<ColumnStatistics> statistics = Arrays.asList(new ColumnStatistics(), new ColumnStatistics(), new ColumnStatistics());
+		for(int row = 0; row < 10_000; row++) {
+			statistics.get(0).add(row % 10 == 0 ? "N" : "Y");
+			statistics.get(1).add("T" + row);
+			statistics.get(2).add("Desk" + (row % 200));
+		}
+		CSVFormat format = new CSVFormat(",", names, Arrays.asList("String", "String", "String"), false).withStatistics(statistics);
+
+		Choice choice = new PartitioningAdvisor().choose(format, names, 8);
+		Assertions.assertThat(choice.field).isEqualTo("Desk");
+		Assertions.assertThat(choice.partitionCount).isBetween(2, 8);
+	}
+
+	@Test
+	public void testNoStatistics() {
+		CSVFormat format = new CSVFormat(",", Arrays.asList("A"), Arrays.asList("String"), false);
+		Assertions.assertThat(new PartitioningAdvisor().choose(format, Arrays.asList("A"), 8)).isNull();
+	}
+
+}
@@ -0,0 +1,123 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+import com.quartetfs.fwk.Registry;
+import com.quartetfs.fwk.contributions.impl.ClasspathContributionProvider;
+
+public class TestCSVFileFollower {
+
+	static {
+		Registry.setContributionProvider(new ClasspathContributionProvider("com.qfs", "com.quartetfs"));
+	}
+
+	/** Rows (Id, Desk, Value) */
+	protected static final CSVFormat FORMAT = new CSVFormat(";",
+			Arrays.asList("Id", "Desk", "Value"), Arrays.asList("int", "String", "double"), false);
+
+	protected static final String HEADER = "Id;Desk;Value\n";
+
+	protected static CSVLoader createLoader(ExecutorService executor, List<Object[]> committed) {
+		CSVLoader loader = new CSVLoader(new CSVRowParser(FORMAT, FORMAT.getColumnNames()), tuples -> {}, StandardCharsets.UTF_8, executor, 2);
+		loader.addCommitListener((tuples, offset) -> committed.addAll(tuples));
+		return loader;
+	}
+
+	protected static void append(Path file, String text) throws IOException {
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+	}
+
+	@Test
+	public void testAppendedLinesAreCommitted() throws IOException {
+		Path file = Files.createTempFile("follow", ".csv");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Files.write(file, (HEADER + "0;Equity;1.5\n").getBytes(StandardCharsets.UTF_8));
+			List<Object[]> committed = Collections.synchronizedList(new ArrayList<>());
+			CSVFileFollower follower = new CSVFileFollower(file, createLoader(executor, committed), Files.size(file), 10L);
+			Assertions.assertThat(follower.poll()).isEqualTo(0L);
+
+			// The last line is still being written, it is loaded once complete
+			String complete = "1;Rates;2.5\n2;Equity;3.5\n";
+			append(file, complete + "3;Cre");
+			long start = follower.getOffset();
+			Assertions.assertThat(follower.poll()).isEqualTo((long) complete.length());
+			Assertions.assertThat(follower.getOffset()).isEqualTo(start + complete.length());
+			Assertions.assertThat(committed).hasSize(2);
+			Assertions.assertThat(committed.get(1)).containsExactly(2, "Equity", 3.5);
+
+			append(file, "dit;4.5\n");
+			Assertions.assertThat(follower.poll()).isEqualTo((long) "3;Credit;4.5\n".length());
+			Assertions.assertThat(committed).hasSize(3);
+			Assertions.assertThat(committed.get(2)).containsExactly(3, "Credit", 4.5);
+			Assertions.assertThat(follower.getOffset()).isEqualTo(Files.size(file));
+			Assertions.assertThat(follower.poll()).isEqualTo(0L);
+		} finally {
+			executor.shutdownNow();
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testStopOnTruncation() throws Exception {
+		Path file = Files.createTempFile("follow", ".csv");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Files.write(file, HEADER.getBytes(StandardCharsets.UTF_8));
+			List<Object[]> committed = Collections.synchronizedList(new ArrayList<>());
+			CSVFileFollower follower = new CSVFileFollower(file, createLoader(executor, committed), Files.size(file), 10L);
+			Thread thread = new Thread(follower, "follower");
+			thread.setDaemon(true);
+			thread.start();
+
+			append(file, "0;Equity;1.5\n1;Rates;2.5\n");
+			long deadline = System.currentTimeMillis() + 10_000L;
+			while(committed.size() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+			Assertions.assertThat(committed).hasSize(2);
+
+			// A truncated file is no longer append-only, following stops
+			Files.write(file, HEADER.getBytes(StandardCharsets.UTF_8));
+			thread.join(10_000L);
+			Assertions.assertThat(thread.isAlive()).isFalse();
+			Assertions.assertThat(committed).hasSize(2);
+		} finally {
+			executor.shutdownNow();
+			Files.delete(file);
+		}
+	}
+
+}
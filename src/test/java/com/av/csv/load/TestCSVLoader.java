@@ -0,0 +1,252 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+import com.quartetfs.fwk.Registry;
+import com.quartetfs.fwk.contributions.impl.ClasspathContributionProvider;
+
+public class TestCSVLoader {
+
+	static {
+		Registry.setContributionProvider(new ClasspathContributionProvider("com.qfs", "com.quartetfs"));
+	}
+
+	/** Rows (Id, Desk, Value) */
+	protected static final CSVFormat FORMAT = new CSVFormat(";",
+			Arrays.asList("Id", "Desk", "Value"), Arrays.asList("int", "String", "double"), false);
+
+	/** Records the commits of a loader */
+	protected static class RecordingListener implements ICommitListener {
+
+		protected final List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+
+		protected final List<Object[]> tuples = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void committed(List<Object[]> committed, long offset) {
+			offsets.add(offset);
+			tuples.addAll(committed);
+		}
+
+		protected long lastOffset() {
+			return offsets.isEmpty() ? 0L : offsets.get(offsets.size() - 1);
+		}
+	}
+
+	protected static CSVLoader createLoader(ExecutorService executor, ITupleWriter writer, RecordingListener listener) {
+		CSVLoader loader = new CSVLoader(new CSVRowParser(FORMAT, FORMAT.getColumnNames()), writer, StandardCharsets.UTF_8, executor, 4);
+		loader.setBatchSize(50);
+		loader.setCommitSize(100);
+		loader.addCommitListener(listener);
+		return loader;
+	}
+
+	/** Content with a header, the value of one line out of ten is invalid */
+	protected static byte[] content(int lines, boolean finalNewline) {
+		StringBuilder content = new StringBuilder("Id;Desk;Value");
+		for(int i = 0; i < lines; i++) {
+			content.append('\n').append(i).append(";Desk").append(i % 3).append(';').append(i % 10 == 3 ? "x" : String.valueOf(i * 0.5));
+		}
+		if(finalNewline) {
+			content.append('\n');
+		}
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/** Check that the offsets increase and are all at the start of a line */
+	protected static void assertLineBoundaries(List<Long> offsets, byte[] content) {
+		long previous = 0L;
+		for(long offset : offsets) {
+			Assertions.assertThat(offset).isGreaterThan(previous);
+			Assertions.assertThat(offset == content.length || content[(int) offset - 1] == '\n').isTrue();
+			previous = offset;
+		}
+	}
+
+	@Test
+	public void testCommitsInOrderOfOffset() throws IOException {
+		byte[] content = content(10_000, true);
+		RecordingListener listener = new RecordingListener();
+		AtomicInteger written = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		CSVLoader loader = createLoader(executor, tuples -> written.addAndGet(tuples.size()), listener);
+		long offset;
+		try {
+			offset = loader.load(new ByteArrayInputStream(content), 0L, true, false);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Assertions.assertThat(offset).isEqualTo((long) content.length);
+		Assertions.assertThat(listener.lastOffset()).isEqualTo(offset);
+		Assertions.assertThat(listener.offsets.size()).isGreaterThan(10);
+		assertLineBoundaries(listener.offsets, content);
+
+		// Batches parsed in parallel are committed in the order of the input
+		Assertions.assertThat(written.get()).isEqualTo(9_000);
+		Assertions.assertThat(listener.tuples).hasSize(9_000);
+		int previous = -1;
+		for(Object[] tuple : listener.tuples) {
+			Assertions.assertThat((Integer) tuple[0]).isGreaterThan(previous);
+			previous = (Integer) tuple[0];
+		}
+		Assertions.assertThat(loader.getErrorCount()).isEqualTo(1_000L);
+	}
+
+	@Test
+	public void testLineSpanningBatchBoundary() throws IOException {
+		byte[] content = content(500, true);
+		// The input delivers a few bytes at a time and is idle in between,
+		// the lines are split between reads while batches are committed
+		InputStream trickle = new ByteArrayInputStream(content) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 7));
+			}
+
+			@Override
+			public synchronized int available() {
+				return 0;
+			}
+		};
+		RecordingListener listener = new RecordingListener();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		CSVLoader loader = createLoader(executor, tuples -> {}, listener);
+		loader.setCommitOnIdle(true);
+		long offset;
+		try {
+			offset = loader.load(trickle, 0L, true, false);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Assertions.assertThat(offset).isEqualTo((long) content.length);
+		assertLineBoundaries(listener.offsets, content);
+		Assertions.assertThat(listener.tuples).hasSize(450);
+		Object[] last = listener.tuples.get(listener.tuples.size() - 1);
+		Assertions.assertThat(last).containsExactly(499, "Desk1", 249.5);
+		Assertions.assertThat(loader.getErrorCount()).isEqualTo(50L);
+	}
+
+	@Test
+	public void testMissingFinalNewline() throws IOException {
+		byte[] content = content(100, false);
+		int lastLine = new String(content, StandardCharsets.UTF_8).lastIndexOf('\n') + 1;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			// The last line is complete at the end of a file
+			RecordingListener listener = new RecordingListener();
+			long offset = createLoader(executor, tuples -> {}, listener).load(new ByteArrayInputStream(content), 0L, true, false);
+			Assertions.assertThat(offset).isEqualTo((long) content.length);
+			Assertions.assertThat(listener.tuples).hasSize(90);
+			Assertions.assertThat(listener.tuples.get(89)).containsExactly(99, "Desk0", 49.5);
+
+			// A followed file may still be writing its last line, it is loaded later
+			RecordingListener following = new RecordingListener();
+			offset = createLoader(executor, tuples -> {}, following).load(new ByteArrayInputStream(content), 0L, true, true);
+			Assertions.assertThat(offset).isEqualTo((long) lastLine);
+			Assertions.assertThat(following.lastOffset()).isEqualTo((long) lastLine);
+			Assertions.assertThat(following.tuples).hasSize(89);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRollbackCounts() throws IOException {
+		byte[] content = content(1_000, true);
+		RecordingListener listener = new RecordingListener();
+		AtomicInteger writes = new AtomicInteger();
+		List<Object[]> stored = Collections.synchronizedList(new ArrayList<>());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CSVLoader loader = createLoader(executor, tuples -> {
+				if(writes.incrementAndGet() == 3) {
+					throw new IllegalStateException("Transaction failed");
+				}
+				stored.addAll(tuples);
+			}, listener);
+			// The filter is evaluated first, filtered lines are not rejected
+			loader.setFilter(RowFilter.compile("Desk != Desk2", new CSVRowParser(FORMAT, FORMAT.getColumnNames())));
+
+			Assertions.assertThatThrownBy(() -> loader.load(new ByteArrayInputStream(content), 0L, true, false))
+				.isInstanceOf(IllegalStateException.class);
+			Assertions.assertThat(listener.offsets).hasSize(2);
+			long checkpoint = listener.lastOffset();
+			int committedLines = lineCount(content, checkpoint);
+
+			// The lines read after the last commit are no longer counted
+			Assertions.assertThat(loader.getErrorCount()).isGreaterThan(rejectedLines(committedLines));
+			loader.rollback();
+			Assertions.assertThat(loader.getErrorCount()).isEqualTo(rejectedLines(committedLines));
+			Assertions.assertThat(loader.getFilteredCount()).isEqualTo(filteredLines(committedLines));
+
+			// Resumed from the checkpoint, each line is counted once
+			InputStream is = new ByteArrayInputStream(content);
+			Assertions.assertThat(is.skip(checkpoint)).isEqualTo(checkpoint);
+			long offset = loader.load(is, checkpoint, false, false);
+			Assertions.assertThat(offset).isEqualTo((long) content.length);
+			Assertions.assertThat(loader.getErrorCount()).isEqualTo(rejectedLines(1_000));
+			Assertions.assertThat(loader.getFilteredCount()).isEqualTo(filteredLines(1_000));
+			Assertions.assertThat((long) stored.size()).isEqualTo(1_000L - rejectedLines(1_000) - filteredLines(1_000));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** @return number of rows before an offset, the header excluded */
+	protected static int lineCount(byte[] content, long offset) {
+		int lines = 0;
+		for(int i = 0; i < offset; i++) {
+			if(content[i] == '\n') {
+				lines++;
+			}
+		}
+		return lines - 1;
+	}
+
+	/** @return number of lines of Desk2 among the first rows */
+	protected static long filteredLines(int rows) {
+		return IntStream.range(0, rows).filter(i -> i % 3 == 2).count();
+	}
+
+	/** @return number of rows with an invalid value among the first rows, the filtered rows excluded */
+	protected static long rejectedLines(int rows) {
+		return IntStream.range(0, rows).filter(i -> i % 10 == 3 && i % 3 != 2).count();
+	}
+
+}
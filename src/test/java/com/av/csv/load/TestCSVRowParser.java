@@ -0,0 +1,53 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestCSVRowParser {
+
+	@Test
+	public void testIntegerValidation() {
+		Assertions.assertThat(CSVRowParser.isInteger("123")).isTrue();
+		Assertions.assertThat(CSVRowParser.isInteger("-42")).isTrue();
+		Assertions.assertThat(CSVRowParser.isInteger("+7")).isTrue();
+		Assertions.assertThat(CSVRowParser.isInteger("-")).isFalse();
+		Assertions.assertThat(CSVRowParser.isInteger("12a")).isFalse();
+		Assertions.assertThat(CSVRowParser.isInteger("1.5")).isFalse();
+	}
+
+	@Test
+	public void testDecimalValidation() {
+		Assertions.assertThat(CSVRowParser.isDecimal("1.5")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("-.5")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("3.")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("1e10")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("2.5E-3")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("2.5d")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("NaN")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal("-Infinity")).isTrue();
+		Assertions.assertThat(CSVRowParser.isDecimal(".")).isFalse();
+		Assertions.assertThat(CSVRowParser.isDecimal("1e")).isFalse();
+		Assertions.assertThat(CSVRowParser.isDecimal("1.2.3")).isFalse();
+		Assertions.assertThat(CSVRowParser.isDecimal("N/A")).isFalse();
+		Assertions.assertThat(CSVRowParser.isDecimal("12,5")).isFalse();
+	}
+
+}
@@ -0,0 +1,126 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.Arrays;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+import com.quartetfs.fwk.Registry;
+import com.quartetfs.fwk.contributions.impl.ClasspathContributionProvider;
+
+public class TestRowFilter {
+
+	static {
+		Registry.setContributionProvider(new ClasspathContributionProvider("com.qfs", "com.quartetfs"));
+	}
+
+	/** Rows (AsOfDate, Desk, Book, Quantity, Price) */
+	protected static final CSVRowParser PARSER = new CSVRowParser(
+			new CSVFormat(",",
+					Arrays.asList("AsOfDate", "Desk", "Book", "Quantity", "Price"),
+					Arrays.asList("LocalDate[yyyy-MM-dd]", "String", "String", "int", "double"),
+					false),
+			Arrays.asList("AsOfDate", "Desk", "Book", "Quantity", "Price"));
+
+	protected static boolean test(String expression, String... fields) {
+		return RowFilter.compile(expression, PARSER).test(fields);
+	}
+
+	@Test
+	public void testPrecedence() {
+		// AND binds tighter than OR
+		String expression = "Desk = Equity OR Desk = Rates AND Quantity > 10";
+		Assertions.assertThat(test(expression, "2024-01-02", "Equity", "B1", "1", "1.0")).isTrue();
+		Assertions.assertThat(test(expression, "2024-01-02", "Rates", "B1", "1", "1.0")).isFalse();
+		Assertions.assertThat(test(expression, "2024-01-02", "Rates", "B1", "20", "1.0")).isTrue();
+
+		String grouped = "(Desk = Equity OR Desk = Rates) AND Quantity > 10";
+		Assertions.assertThat(test(grouped, "2024-01-02", "Equity", "B1", "1", "1.0")).isFalse();
+		Assertions.assertThat(test(grouped, "2024-01-02", "Equity", "B1", "20", "1.0")).isTrue();
+
+		// NOT binds tighter than AND
+		String negated = "NOT Desk = Equity AND Quantity > 10";
+		Assertions.assertThat(test(negated, "2024-01-02", "Rates", "B1", "20", "1.0")).isTrue();
+		Assertions.assertThat(test(negated, "2024-01-02", "Equity", "B1", "20", "1.0")).isFalse();
+		Assertions.assertThat(test("NOT (Desk = Equity OR Quantity > 10)", "2024-01-02", "Rates", "B1", "20", "1.0")).isFalse();
+	}
+
+	@Test
+	public void testQuotedLiterals() {
+		Assertions.assertThat(test("Book = 'Fx Options'", "2024-01-02", "Fx", "Fx Options", "1", "1.0")).isTrue();
+		Assertions.assertThat(test("Book IN (\"A,B\", 'Test')", "2024-01-02", "Fx", "A,B", "1", "1.0")).isTrue();
+		Assertions.assertThat(test("Book IN (\"A,B\", 'Test')", "2024-01-02", "Fx", "A", "1", "1.0")).isFalse();
+		// A quoted keyword is a literal
+		Assertions.assertThat(test("Book = 'AND'", "2024-01-02", "Fx", "AND", "1", "1.0")).isTrue();
+		// Keywords and column names are case insensitive, texts are not
+		Assertions.assertThat(test("desk in ('Equity') and book is not null", "2024-01-02", "Equity", "B1", "1", "1.0")).isTrue();
+		Assertions.assertThat(test("Desk = equity", "2024-01-02", "Equity", "B1", "1", "1.0")).isFalse();
+	}
+
+	@Test
+	public void testNullAndEmptyValues() {
+		Assertions.assertThat(test("Book IS NULL", "2024-01-02", "Equity", "", "1", "1.0")).isTrue();
+		Assertions.assertThat(test("Book IS NOT NULL", "2024-01-02", "Equity", "", "1", "1.0")).isFalse();
+		Assertions.assertThat(test("Quantity IS NULL", "2024-01-02", "Equity", "B1", "", "1.0")).isTrue();
+		// An empty field only matches IS NULL
+		Assertions.assertThat(test("Book != Test", "2024-01-02", "Equity", "", "1", "1.0")).isFalse();
+		Assertions.assertThat(test("Book NOT IN (Test)", "2024-01-02", "Equity", "", "1", "1.0")).isFalse();
+		Assertions.assertThat(test("Quantity < 5", "2024-01-02", "Equity", "B1", "", "1.0")).isFalse();
+		Assertions.assertThat(test("NOT Quantity < 5", "2024-01-02", "Equity", "B1", "", "1.0")).isTrue();
+	}
+
+	@Test
+	public void testDateAndNumberComparisons() {
+		Assertions.assertThat(test("AsOfDate >= 2024-01-15", "2024-02-01", "Equity", "B1", "1", "1.0")).isTrue();
+		Assertions.assertThat(test("AsOfDate >= 2024-01-15", "2024-01-14", "Equity", "B1", "1", "1.0")).isFalse();
+		Assertions.assertThat(test("AsOfDate = 2024-01-15", "2024-01-15", "Equity", "B1", "1", "1.0")).isTrue();
+		// Compared by value, not as texts
+		Assertions.assertThat(test("Price > 9.5", "2024-01-02", "Equity", "B1", "1", "10")).isTrue();
+		Assertions.assertThat(test("Quantity = 007", "2024-01-02", "Equity", "B1", "7", "1.0")).isTrue();
+		Assertions.assertThat(test("Quantity <> 7", "2024-01-02", "Equity", "B1", "7", "1.0")).isFalse();
+		Assertions.assertThat(test("Quantity <= 7 AND Quantity >= 7", "2024-01-02", "Equity", "B1", "7", "1.0")).isTrue();
+		Assertions.assertThat(test("Quantity IN (1, 2, 3)", "2024-01-02", "Equity", "B1", "2", "1.0")).isTrue();
+	}
+
+	@Test
+	public void testMalformedExpressions() {
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Trader = Bob", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown column 'Trader'");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Book = 'Fx", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unterminated literal");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("(Desk = Equity", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Expected ')'");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Desk = Equity Rates", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unexpected 'Rates'");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Desk =", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unexpected end of expression");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Desk ! Equity", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown operator '!'");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Quantity > abc", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Invalid literal 'abc'");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Book = ''", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Empty literal");
+		Assertions.assertThatThrownBy(() -> RowFilter.compile("Book IS Test", PARSER))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Expected 'NULL'");
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.av.csv.load;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestRowHashIndex {
+
+	@Test
+	public void testPutReturnsPreviousRowHash() {
+		RowHashIndex index = new RowHashIndex();
+		Assertions.assertThat(index.put(42L, 1L)).isEqualTo(RowHashIndex.EMPTY);
+		Assertions.assertThat(index.put(42L, 2L)).isEqualTo(1L);
+		Assertions.assertThat(index.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testGrowKeepsEntries() {
+		RowHashIndex index = new RowHashIndex(4);
+		for(long k = 0; k < 10_000; k++) {
+			index.put(k * 31, k);
+		}
+		Assertions.assertThat(index.size()).isEqualTo(10_000);
+		for(long k = 0; k < 10_000; k++) {
+			Assertions.assertThat(index.put(k * 31, k)).isEqualTo(k);
+		}
+	}
+
+	@Test
+	public void testMarks() {
+		RowHashIndex index = new RowHashIndex();
+		index.put(1L, 10L);
+		index.put(2L, 20L);
+		index.clearMarks();
+		index.put(2L, 21L);
+		Assertions.assertThat(index.isMarked(1L)).isFalse();
+		Assertions.assertThat(index.isMarked(2L)).isTrue();
+		Assertions.assertThat(index.isMarked(3L)).isFalse();
+	}
+
+	@Test
+	public void testRemoveKeepsCollidingEntries() {
+		RowHashIndex index = new RowHashIndex(16);
+		// Same slot modulo the capacity
+		index.put(64L, 1L);
+		index.put(128L, 2L);
+		index.put(192L, 3L);
+		index.remove(128L);
+		Assertions.assertThat(index.size()).isEqualTo(2);
+		Assertions.assertThat(index.put(192L, 3L)).isEqualTo(3L);
+		Assertions.assertThat(index.put(64L, 1L)).isEqualTo(1L);
+		Assertions.assertThat(index.put(128L, 2L)).isEqualTo(RowHashIndex.EMPTY);
+	}
+
+	@Test
+	public void testTupleHashDependsOnOrderAndValues() {
+		TupleHasher hasher = TupleHasher.allFields(2);
+		Assertions.assertThat(hasher.hash(new Object[] {"a", "b"})).isNotEqualTo(hasher.hash(new Object[] {"b", "a"}));
+		Assertions.assertThat(hasher.hash(new Object[] {"ab", ""})).isNotEqualTo(hasher.hash(new Object[] {"a", "b"}));
+		Assertions.assertThat(hasher.hash(new Object[] {1, null})).isEqualTo(hasher.hash(new Object[] {1L, null}));
+	}
+}
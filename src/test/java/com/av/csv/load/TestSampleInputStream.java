@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestSampleInputStream {
+
+	@Test
+	public void testSampleContainsCompleteLines() throws Exception {
+		Path file = Files.createTempFile("sample", ".csv");
+		try {
+			StringBuilder content = new StringBuilder("Header\n");
+			for(int i = 0; i < 100_000; i++) {
+				content.append(String.format("line%06d;%d\n", i, i % 7));
+			}
+			Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+			List<String> lines = new ArrayList<>();
+			try(SampleInputStream sample = new SampleInputStream(file, 0.05, new Random(42), 1024);
+					BufferedReader reader = new BufferedReader(new InputStreamReader(sample, StandardCharsets.UTF_8))) {
+				String line;
+				while((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+
+			// About 5% of the lines, complete and in the order of the file
+			Assertions.assertThat(lines.size()).isBetween(4_000, 5_500);
+			Assertions.assertThat(lines).doesNotContain("Header");
+			Assertions.assertThat(lines.stream().allMatch(line -> line.matches("line\\d{6};\\d"))).isTrue();
+			Assertions.assertThat(lines).isSorted();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+import com.av.csv.discover.CSVDiscovery;
+import com.quartetfs.fwk.Registry;
+import com.quartetfs.fwk.contributions.impl.ClasspathContributionProvider;
+
+public class TestStreamInput {
+
+	static {
+		Registry.setContributionProvider(new ClasspathContributionProvider("com.qfs", "com.quartetfs"));
+	}
+
+	@Test
+	public void testDiscoverThenLoadTheSameStream() throws IOException {
+		// More lines than the prefix buffered for the discovery
+		int rows = 3 * StreamInput.DEFAULT_PREFIX_LINES;
+		StringBuilder content = new StringBuilder("Id;AsOfDate;Desk;Value\n");
+		for(int i = 0; i < rows; i++) {
+			content.append(i).append(";2024-01-").append(String.format("%02d", 1 + i % 28))
+				.append(";Desk").append(i % 5).append(';').append(i * 0.25).append('\n');
+		}
+		byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+		InputStream stdin = System.in;
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			System.setIn(new ByteArrayInputStream(bytes));
+			StreamInput input = new StreamInput(StreamInput.STDIN);
+			Assertions.assertThat(input.isStream()).isTrue();
+
+			CSVFormat format = new CSVDiscovery().discover(input.getPrefix(), StreamInput.STDIN, StandardCharsets.UTF_8);
+			Assertions.assertThat(format.getColumnNames()).containsExactly("Id", "AsOfDate", "Desk", "Value");
+			Assertions.assertThat(format.getColumnType(0)).isEqualTo("int");
+			Assertions.assertThat(format.getColumnType(3)).isEqualTo("double");
+
+			List<Object[]> loaded = Collections.synchronizedList(new ArrayList<>());
+			CSVLoader loader = new CSVLoader(new CSVRowParser(format, format.getColumnNames()), loaded::addAll,
+					StandardCharsets.UTF_8, executor, 2);
+			long offset;
+			try(InputStream is = input.replay()) {
+				offset = loader.load(is, 0L, true, false);
+			}
+
+			// No byte of the buffered prefix is lost nor read twice
+			Assertions.assertThat(offset).isEqualTo((long) bytes.length);
+			Assertions.assertThat(loaded).hasSize(rows);
+			Assertions.assertThat(loaded.get(0)).containsExactly(0, LocalDate.of(2024, 1, 1), "Desk0", 0.0);
+			Assertions.assertThat(loaded.stream().mapToInt(tuple -> (Integer) tuple[0]).sum()).isEqualTo(rows * (rows - 1) / 2);
+			Assertions.assertThat(loader.getErrorCount()).isEqualTo(0L);
+
+			Assertions.assertThatThrownBy(input::replay).isInstanceOf(IOException.class).hasMessageContaining("only be read once");
+		} finally {
+			System.setIn(stdin);
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class TestTupleComparator {
+
+	@Test
+	public void testSortByPriorityNullsFirst() {
+		TupleComparator comparator = new TupleComparator(new int[] { 1, 0 });
+		List<Object[]> sorted = comparator.sort(Arrays.asList(
+				new Object[] { "b", 2 },
+				new Object[] { "a", 2 },
+				new Object[] { "c", null },
+				new Object[] { "a", 1 }));
+		Assertions.assertThat(sorted.get(0)).containsExactly("c", null);
+		Assertions.assertThat(sorted.get(1)).containsExactly("a", 1);
+		Assertions.assertThat(sorted.get(2)).containsExactly("a", 2);
+		Assertions.assertThat(sorted.get(3)).containsExactly("b", 2);
+	}
+
+}
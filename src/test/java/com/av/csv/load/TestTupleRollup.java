@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.load;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.load.TupleRollup.Aggregation;
+
+public class TestTupleRollup {
+
+	/** Rows (desk, quantity, price), rolled up by desk */
+	protected TupleRollup createRollup() {
+		return new TupleRollup(
+				new int[] { 0 },
+				new int[] { 1, 2, 2, 2, 2 },
+				new Aggregation[] { Aggregation.SUM, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.SQ_SUM },
+				new String[] { "long", "double", "double", "double", "double" });
+	}
+
+	@Test
+	public void testRollup() {
+		List<Object[]> groups = createRollup().rollup(Arrays.asList(
+				new Object[] { "A", 1, 2.0 },
+				new Object[] { "B", 5, 1.0 },
+				new Object[] { "A", 3, 4.0 }));
+		Assertions.assertThat(groups).hasSize(2);
+		Assertions.assertThat(groups.get(0)).containsExactly("A", 4L, 6.0, 2.0, 4.0, 20.0, 2L);
+		Assertions.assertThat(groups.get(1)).containsExactly("B", 5L, 1.0, 1.0, 1.0, 1.0, 1L);
+	}
+
+	@Test
+	public void testMergeCombinesPartialGroups() {
+		TupleRollup rollup = createRollup();
+		List<Object[]> first = rollup.rollup(Arrays.asList(
+				new Object[] { "A", 1, 2.0 },
+				new Object[] { "A", 3, 4.0 }));
+		List<Object[]> second = rollup.rollup(Arrays.<Object[]>asList(
+				new Object[] { "A", 2, -1.0 }));
+		List<Object[]> merged = rollup.merge(Arrays.asList(first.get(0), second.get(0)));
+		Assertions.assertThat(merged).hasSize(1);
+		Assertions.assertThat(merged.get(0)).containsExactly("A", 6L, 5.0, -1.0, 4.0, 21.0, 3L);
+	}
+
+	@Test
+	public void testNullValuesAreCounted() {
+		List<Object[]> groups = createRollup().rollup(Arrays.asList(
+				new Object[] { null, null, null },
+				new Object[] { null, 2, null }));
+		Assertions.assertThat(groups).hasSize(1);
+		Assertions.assertThat(groups.get(0)).containsExactly(null, 2L, null, null, null, null, 2L);
+	}
+
+}
@@ -0,0 +1,117 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.av.csv.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.av.csv.CSVFormat;
+
+public class TestSnapshotReader {
+
+	protected Path writeSnapshot() throws IOException {
+		Path file = Files.createTempDirectory("snapshot").resolve("data.snapshot");
+		CSVFormat format = new CSVFormat(",", Arrays.asList("Date", "Desk", "Value"), Arrays.asList("LocalDate[yyyy-MM-dd]", "String", "double"), false);
+		try(SnapshotWriter writer = new SnapshotWriter(file, "fingerprint", 42L, format,
+				format.getColumnNames(), Arrays.asList("LocalDate", "String", "double"), 2)) {
+			writer.add(new Object[] { LocalDate.of(2024, 1, 2), "Equity", 1.5 });
+			writer.add(new Object[] { LocalDate.of(2024, 1, 2), "Rates", null });
+			writer.add(new Object[] { LocalDate.of(2024, 1, 3), "Equity", 3.0 });
+			writer.complete();
+		}
+		return file;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Path file = writeSnapshot();
+		List<Object[]> tuples = new ArrayList<>();
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			Assertions.assertThat(reader.getOffset()).isEqualTo(42L);
+			Assertions.assertThat(reader.getFormat().getColumnTypes()).containsExactly("LocalDate[yyyy-MM-dd]", "String", "double");
+			Assertions.assertThat(reader.read(tuples::addAll)).isEqualTo(3L);
+		}
+		Assertions.assertThat(tuples.get(1)).containsExactly(LocalDate.of(2024, 1, 2), "Rates", null);
+		Assertions.assertThat(tuples.get(2)).containsExactly(LocalDate.of(2024, 1, 3), "Equity", 3.0);
+	}
+
+	@Test
+	public void testDamagedSnapshotIsDetected() throws IOException {
+		Path file = writeSnapshot();
+		byte[] bytes = Files.readAllBytes(file);
+		// Flip a bit of the last value of the last chunk
+		bytes[bytes.length - 20] ^= 1;
+		Files.write(file, bytes);
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			Assertions.assertThatThrownBy(reader::verify).isInstanceOf(IOException.class).hasMessageContaining("checksum");
+		}
+	}
+
+	@Test
+	public void testTruncatedSnapshotIsDetected() throws IOException {
+		Path file = writeSnapshot();
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			Assertions.assertThatThrownBy(reader::verify).isInstanceOf(IOException.class);
+		}
+	}
+
+	@Test
+	public void testJournalIsRestoredUpToItsLastCheckpoint() throws IOException {
+		Path file = Files.createTempDirectory("snapshot").resolve("data.journal");
+		CSVFormat format = new CSVFormat(",", Arrays.asList("Desk", "Value"), Arrays.asList("String", "double"), false);
+		try(SnapshotWriter journal = SnapshotWriter.journal(file, "fingerprint", format,
+				format.getColumnNames(), Arrays.asList("String", "double"))) {
+			journal.add(new Object[] { "Equity", 1.0 });
+			journal.add(new Object[] { "Rates", 2.0 });
+			journal.checkpoint(100L);
+			journal.add(new Object[] { "Equity", 3.0 });
+			journal.checkpoint(150L);
+			// A commit interrupted while it is written
+			journal.add(new Object[] { "Credit", 4.0 });
+			journal.flush();
+		}
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+
+		long rows;
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			rows = reader.verifyCheckpoints();
+			Assertions.assertThat(reader.getCheckpointOffset()).isEqualTo(150L);
+		}
+		Assertions.assertThat(rows).isEqualTo(3L);
+
+		List<Object[]> tuples = new ArrayList<>();
+		try(SnapshotReader reader = new SnapshotReader(file)) {
+			Assertions.assertThat(reader.read(tuples::addAll, rows)).isEqualTo(3L);
+		}
+		Assertions.assertThat(tuples).hasSize(3);
+		Assertions.assertThat(tuples.get(2)).containsExactly("Equity", 3.0);
+	}
+
+}